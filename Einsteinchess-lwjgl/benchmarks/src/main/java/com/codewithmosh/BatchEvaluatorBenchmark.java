@@ -0,0 +1,91 @@
+package com.codewithmosh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * n-tuple 评估：逐个评估、标量批量评估、向量批量评估，结果为每个局面的平均耗时
+ * 每次调用评估 BenchmarkPositions 中的全部局面，批量评估按 batch 分批（含填充结构数组的时间）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@OperationsPerInvocation(BenchmarkPositions.COUNT)
+public class BatchEvaluatorBenchmark {
+    @Param({"8", "16", "64"})
+    private int batch;
+
+    private BenchmarkPositions positions;
+    private NTupleEvaluator evaluator;
+    private BatchEvaluator scalar;
+    private BatchEvaluator vector;
+    private PositionBatch block;
+    private float[] out;
+
+    @Setup
+    public void setup() {
+        positions = new BenchmarkPositions(42);
+        // 随机权重：全零权重会让所有查表落在同一处，低估缓存未命中
+        float[] weights = new float[NTupleEvaluator.WEIGHTS];
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (float) (random.nextDouble() - 0.5) * 0.1f;
+        }
+        evaluator = new NTupleEvaluator(weights);
+        scalar = new ScalarBatchEvaluator(weights);
+        vector = BatchEvaluator.create(evaluator);
+        if (!vector.name().startsWith("vector")) {
+            throw new IllegalStateException("没有加载 jdk.incubator.vector 模块");
+        }
+        block = new PositionBatch(batch);
+        out = new float[batch];
+    }
+
+    @Benchmark
+    public float single() {
+        float total = 0;
+        for (GameState state : positions.states) {
+            total += evaluator.evaluate(state);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public float scalarBatch() {
+        return run(scalar);
+    }
+
+    @Benchmark
+    public float vectorBatch() {
+        return run(vector);
+    }
+
+    private float run(BatchEvaluator batchEvaluator) {
+        float total = 0;
+        for (int start = 0; start < BenchmarkPositions.COUNT; start += batch) {
+            block.clear();
+            for (int i = start; i < start + batch; i++) {
+                block.add(positions.states[i]);
+            }
+            batchEvaluator.evaluate(block, out);
+            total += out[0];
+        }
+        return total;
+    }
+}
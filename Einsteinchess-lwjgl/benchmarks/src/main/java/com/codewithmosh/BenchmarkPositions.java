@@ -0,0 +1,39 @@
+package com.codewithmosh;
+
+/**
+ * 基准测试用的固定局面集合
+ * 用固定种子随机对弈，按步数均匀抽取开局、中局和残局，每次运行得到的局面完全相同
+ * 可以指定棋盘变体，标准棋盘的局面和以前一样
+ */
+final class BenchmarkPositions {
+    static final int COUNT = 1024; // 2 的幂，循环下标用 & (COUNT - 1)
+
+    final GameState[] states = new GameState[COUNT];
+    final int[] rolls = new int[COUNT];
+
+    BenchmarkPositions(long seed) {
+        this(seed, Variant.STANDARD);
+    }
+
+    BenchmarkPositions(long seed, Variant variant) {
+        Dice dice = new Dice(seed);
+        RandomStrategy random = new RandomStrategy(seed);
+        GameState state = new GameState(variant);
+        int filled = 0;
+        while (filled < COUNT) {
+            state.reset();
+            while (!state.isGameOver() && filled < COUNT) {
+                int roll = dice.roll(variant.pieces());
+                states[filled] = state.copy();
+                rolls[filled] = roll;
+                filled++;
+                int move = random.chooseMove(state, roll);
+                if (move == Move.NONE) {
+                    state.pass();
+                } else {
+                    state.makeMove(move);
+                }
+            }
+        }
+    }
+}
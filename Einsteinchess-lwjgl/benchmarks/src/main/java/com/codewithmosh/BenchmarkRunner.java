@@ -0,0 +1,47 @@
+package com.codewithmosh;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ * 接受 JMH 的全部命令行参数（例如只跑搜索：java -jar benchmarks.jar Search），
+ * 总是开启 GC 分析器报告每次操作的分配字节数，结果写入 jmh-result.json 便于版本间对比。
+ * -h、-l、-lp、-lprof、-lrf 和 org.openjdk.jmh.Main 一样只输出帮助或列表，不运行
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldList()) {
+            new Runner(commandLine).list();
+            return;
+        }
+        if (commandLine.shouldListWithParams()) {
+            new Runner(commandLine).listWithParams(commandLine);
+            return;
+        }
+        if (commandLine.shouldListProfilers()) {
+            commandLine.listProfilers();
+            return;
+        }
+        if (commandLine.shouldListResultFormats()) {
+            commandLine.listResultFormats();
+            return;
+        }
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLine.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLine.getResult().orElse("jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
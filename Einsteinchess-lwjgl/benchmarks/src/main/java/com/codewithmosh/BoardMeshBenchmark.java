@@ -0,0 +1,61 @@
+package com.codewithmosh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 棋盘网格顶点的生成：每次新建数组、复用数组、写入堆外缓冲
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardMeshBenchmark {
+    @Param({"5", "8"})
+    public int gridSize;
+
+    private float[] vertices;
+    private FloatBuffer direct;
+
+    @Setup
+    public void setup() {
+        vertices = new float[BoardMesh.floatCount(gridSize)];
+        direct = ByteBuffer.allocateDirect(BoardMesh.floatCount(gridSize) * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @Benchmark
+    public float[] newArray() {
+        return BoardMesh.gridLines(gridSize);
+    }
+
+    @Benchmark
+    public float[] reuseArray() {
+        BoardMesh.gridLines(gridSize, vertices, 0);
+        return vertices;
+    }
+
+    @Benchmark
+    public FloatBuffer directBuffer() {
+        direct.clear();
+        BoardMesh.gridLines(gridSize, direct);
+        direct.flip();
+        return direct;
+    }
+}
@@ -0,0 +1,77 @@
+package com.codewithmosh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 掷骰子：Dice 与几种常见写法的对比
+ * newRandomPerRoll 是 ChessGame 以前每次掷骰都 new Random() 的写法
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiceBenchmark {
+    private static final int BULK = 256;
+
+    private Dice dice;
+    private Random random;
+    private SplittableRandom splittable;
+    private final byte[] buffer = new byte[BULK];
+
+    @Setup
+    public void setup() {
+        dice = new Dice(42);
+        random = new Random(42);
+        splittable = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public int diceRoll() {
+        return dice.roll();
+    }
+
+    @Benchmark
+    public int newRandomPerRoll() {
+        return new Random().nextInt(6) + 1;
+    }
+
+    @Benchmark
+    public int sharedRandom() {
+        return random.nextInt(6) + 1;
+    }
+
+    @Benchmark
+    public int splittableRandom() {
+        return splittable.nextInt(6) + 1;
+    }
+
+    @Benchmark
+    public int threadLocalRandom() {
+        return ThreadLocalRandom.current().nextInt(6) + 1;
+    }
+
+    /**
+     * 一次预生成 256 个点数
+     */
+    @Benchmark
+    public byte[] diceFill() {
+        dice.fill(buffer, 0, BULK);
+        return buffer;
+    }
+}
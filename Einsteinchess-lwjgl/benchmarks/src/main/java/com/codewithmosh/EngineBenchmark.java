@@ -0,0 +1,77 @@
+package com.codewithmosh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 规则引擎的热点：着法生成、走棋/悔棋、整局随机对弈
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+    private BenchmarkPositions positions;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private int next;
+
+    private final GameState playoutState = new GameState();
+    private RandomStrategy playoutStrategy;
+    private Dice playoutDice;
+
+    @Setup
+    public void setup() {
+        positions = new BenchmarkPositions(42);
+        playoutStrategy = new RandomStrategy(42);
+        playoutDice = new Dice(42);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (BenchmarkPositions.COUNT - 1);
+        return next;
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        int i = nextIndex();
+        return MoveGenerator.generate(positions.states[i], positions.rolls[i], moves);
+    }
+
+    /**
+     * 生成着法后逐个走棋再悔棋，返回哈希防止被消除
+     */
+    @Benchmark
+    public long makeUnmake() {
+        int i = nextIndex();
+        GameState state = positions.states[i];
+        int count = MoveGenerator.generate(state, positions.rolls[i], moves);
+        long hash = 0;
+        for (int m = 0; m < count; m++) {
+            int undo = state.makeMove(moves[m]);
+            hash ^= state.hash();
+            state.unmakeMove(undo);
+        }
+        return hash;
+    }
+
+    /**
+     * 从开局随机下完一整局
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int randomPlayout() {
+        return SimulationRunner.play(playoutState, playoutStrategy, playoutStrategy, playoutDice);
+    }
+}
@@ -0,0 +1,83 @@
+package com.codewithmosh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 固定深度的期望极小化极大搜索
+ * 主指标是每秒搜索次数，辅助计数器 nodes 换算成每秒节点数
+ * 每次搜索前在 Level.Invocation 的 setup 里清空置换表，清空的时间不计入结果；
+ * 表的大小按深度 4 的节点数选择，清空它不会把其他数据挤出缓存
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int TABLE_MEGABYTES = 4;
+
+    @Param({"2", "3", "4"})
+    public int depth;
+
+    @Param({"false", "true"})
+    public boolean transposition;
+
+    private BenchmarkPositions positions;
+    private ExpectiminimaxSearch search;
+    private TranspositionTable table;
+    private int next;
+
+    /**
+     * 每秒节点数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        positions = new BenchmarkPositions(7);
+        table = transposition ? new TranspositionTable(TABLE_MEGABYTES) : null;
+        search = new ExpectiminimaxSearch(new HeuristicEvaluator(), table, depth, 0);
+    }
+
+    /**
+     * 每次从空表开始，结果不受前一次搜索影响
+     */
+    @Setup(Level.Invocation)
+    public void nextPosition() {
+        next = (next + 1) & (BenchmarkPositions.COUNT - 1);
+        if (table != null) {
+            table.clear();
+        }
+    }
+
+    @Benchmark
+    public int search(Counters counters) {
+        int move = search.chooseMove(positions.states[next], positions.rolls[next]);
+        counters.nodes += search.getNodes();
+        return move;
+    }
+}
@@ -0,0 +1,99 @@
+package com.codewithmosh;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 棋盘变大时规则引擎的吞吐量：着法生成、走棋/悔棋、整局随机对弈和固定模拟次数的蒙特卡洛搜索
+ * 所有变体都用同样的位图和查找表，着法生成的耗时应该基本不随棋盘变大，整局的耗时随对局步数增长
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariantScalingBenchmark {
+    private static final int SEARCH_PLAYOUTS = 1000;
+
+    @Param({"5x5/6", "6x6/6", "6x6/8", "7x7/8", "8x8/8"})
+    private String variant;
+
+    private BenchmarkPositions positions;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private int next;
+
+    private GameState playoutState;
+    private RandomStrategy playoutStrategy;
+    private Dice playoutDice;
+    private MctsSearch search;
+
+    @Setup
+    public void setup() {
+        Variant v = Variant.parse(variant);
+        positions = new BenchmarkPositions(42, v);
+        playoutState = new GameState(v);
+        playoutStrategy = new RandomStrategy(42);
+        playoutDice = new Dice(42);
+        search = new MctsSearch(MctsSearch.Mode.TREE_PARALLEL, 1, SEARCH_PLAYOUTS, 0, 1 << 16, 42);
+    }
+
+    @TearDown
+    public void tearDown() {
+        search.close();
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (BenchmarkPositions.COUNT - 1);
+        return next;
+    }
+
+    @Benchmark
+    public int generateMoves() {
+        int i = nextIndex();
+        return MoveGenerator.generate(positions.states[i], positions.rolls[i], moves);
+    }
+
+    @Benchmark
+    public long makeUnmake() {
+        int i = nextIndex();
+        GameState state = positions.states[i];
+        int count = MoveGenerator.generate(state, positions.rolls[i], moves);
+        long hash = 0;
+        for (int m = 0; m < count; m++) {
+            int undo = state.makeMove(moves[m]);
+            hash ^= state.hash();
+            state.unmakeMove(undo);
+        }
+        return hash;
+    }
+
+    /**
+     * 从开局随机下完一整局
+     */
+    @Benchmark
+    public int randomPlayout() {
+        return SimulationRunner.play(playoutState, playoutStrategy, playoutStrategy, playoutDice);
+    }
+
+    /**
+     * 对固定局面做 SEARCH_PLAYOUTS 次模拟的搜索
+     */
+    @Benchmark
+    public int mctsSearch() {
+        int i = nextIndex();
+        return search.chooseMove(positions.states[i], positions.rolls[i]);
+    }
+}
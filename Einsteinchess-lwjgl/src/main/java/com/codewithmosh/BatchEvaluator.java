@@ -0,0 +1,29 @@
+package com.codewithmosh;
+
+/**
+ * 一次评估一批局面的 n-tuple 网络，结果和 NTupleEvaluator.evaluate 逐个评估逐位相同：
+ * 权重按同样的顺序累加，tanh 都用 Math.tanh
+ *
+ * create 在 JVM 加载了 jdk.incubator.vector 模块时（启动参数 --add-modules jdk.incubator.vector）
+ * 返回向量实现，否则返回标量实现；向量实现的类只在模块存在时才会被加载。
+ * 实例带有临时缓冲，一个实例只能在一个线程里使用，权重数组可以共享
+ */
+public interface BatchEvaluator {
+    /**
+     * 评估 batch 中的所有局面，第 i 个局面的结果写入 out[i]
+     */
+    void evaluate(PositionBatch batch, float[] out);
+
+    String name();
+
+    static BatchEvaluator create(NTupleEvaluator evaluator) {
+        if (isVectorAvailable()) {
+            return new VectorBatchEvaluator(evaluator.weights());
+        }
+        return new ScalarBatchEvaluator(evaluator.weights());
+    }
+
+    static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+}
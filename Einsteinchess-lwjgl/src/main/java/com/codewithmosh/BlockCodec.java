@@ -0,0 +1,81 @@
+package com.codewithmosh;
+
+import org.lwjgl.util.lz4.LZ4;
+import org.lwjgl.util.zstd.Zstd;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 对局记录数据块的压缩和解压，调用 LWJGL 的 lz4 / zstd 绑定
+ * 所有缓冲区都必须是直接缓冲区，处理的是 position 到 limit 之间的数据
+ */
+final class BlockCodec {
+    private static final int ZSTD_LEVEL = 3;
+
+    private BlockCodec() {
+    }
+
+    /**
+     * 压缩后的最大字节数
+     */
+    static int bound(GameRecord.Compression compression, int rawBytes) {
+        switch (compression) {
+            case LZ4:
+                return LZ4.LZ4_compressBound(rawBytes);
+            case ZSTD:
+                return Math.toIntExact(Zstd.ZSTD_compressBound(rawBytes));
+            default:
+                return rawBytes;
+        }
+    }
+
+    /**
+     * 压缩 src 到 dst，返回压缩后的字节数，不改变两个缓冲区的位置
+     */
+    static int compress(GameRecord.Compression compression, ByteBuffer src, ByteBuffer dst) throws IOException {
+        switch (compression) {
+            case LZ4: {
+                int size = LZ4.LZ4_compress_default(src, dst);
+                if (size <= 0) {
+                    throw new IOException("LZ4 压缩失败");
+                }
+                return size;
+            }
+            case ZSTD: {
+                long size = Zstd.ZSTD_compress(dst, src, ZSTD_LEVEL);
+                if (Zstd.ZSTD_isError(size)) {
+                    throw new IOException("Zstd 压缩失败: " + Zstd.ZSTD_getErrorName(size));
+                }
+                return (int) size;
+            }
+            default:
+                dst.duplicate().put(src.duplicate());
+                return src.remaining();
+        }
+    }
+
+    /**
+     * 解压 src 到 dst，rawBytes 为原始字节数
+     */
+    static void decompress(GameRecord.Compression compression, ByteBuffer src, ByteBuffer dst, int rawBytes) throws IOException {
+        switch (compression) {
+            case LZ4: {
+                int size = LZ4.LZ4_decompress_safe(src, dst);
+                if (size != rawBytes) {
+                    throw new IOException("LZ4 数据块损坏");
+                }
+                break;
+            }
+            case ZSTD: {
+                long size = Zstd.ZSTD_decompress(dst, src);
+                if (Zstd.ZSTD_isError(size) || size != rawBytes) {
+                    throw new IOException("Zstd 数据块损坏");
+                }
+                break;
+            }
+            default:
+                dst.duplicate().put(src.duplicate());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.codewithmosh;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 棋盘网格线的顶点数据
+ * 只做数值计算，不依赖 OpenGL，渲染器和基准测试共用
+ *
+ * 坐标是标准化设备坐标 [-1, 1]，每条线两个端点，每个端点 (x, y) 两个 float，
+ * 先是从下到上的水平线，再是从左到右的垂直线，用 GL_LINES 绘制
+ */
+public final class BoardMesh {
+    public static final int FLOATS_PER_VERTEX = 2;
+
+    private BoardMesh() {
+    }
+
+    /**
+     * gridSize × gridSize 棋盘的顶点数
+     */
+    public static int vertexCount(int gridSize) {
+        return (gridSize + 1) * 4;
+    }
+
+    public static int floatCount(int gridSize) {
+        return vertexCount(gridSize) * FLOATS_PER_VERTEX;
+    }
+
+    /**
+     * 新建一个数组并填入网格线
+     */
+    public static float[] gridLines(int gridSize) {
+        float[] vertices = new float[floatCount(gridSize)];
+        gridLines(gridSize, vertices, 0);
+        return vertices;
+    }
+
+    /**
+     * 把网格线写入 vertices[offset...]，返回写入的 float 数
+     */
+    public static int gridLines(int gridSize, float[] vertices, int offset) {
+        float cellSize = 2.0f / gridSize;
+        int index = offset;
+
+        // 水平线
+        for (int i = 0; i <= gridSize; i++) {
+            float y = -1.0f + i * cellSize;
+            vertices[index++] = -1.0f;        // 左端点x
+            vertices[index++] = y;            // 左端点y
+            vertices[index++] = 1.0f;         // 右端点x
+            vertices[index++] = y;            // 右端点y
+        }
+
+        // 垂直线
+        for (int i = 0; i <= gridSize; i++) {
+            float x = -1.0f + i * cellSize;
+            vertices[index++] = x;            // 上端点x
+            vertices[index++] = -1.0f;        // 上端点y
+            vertices[index++] = x;            // 下端点x
+            vertices[index++] = 1.0f;         // 下端点y
+        }
+        return index - offset;
+    }
+
+    /**
+     * 把网格线写入缓冲区（可以是堆外缓冲），从当前位置开始，写完后位置后移
+     */
+    public static void gridLines(int gridSize, FloatBuffer vertices) {
+        float cellSize = 2.0f / gridSize;
+        for (int i = 0; i <= gridSize; i++) {
+            float y = -1.0f + i * cellSize;
+            vertices.put(-1.0f).put(y).put(1.0f).put(y);
+        }
+        for (int i = 0; i <= gridSize; i++) {
+            float x = -1.0f + i * cellSize;
+            vertices.put(x).put(-1.0f).put(x).put(1.0f);
+        }
+    }
+}
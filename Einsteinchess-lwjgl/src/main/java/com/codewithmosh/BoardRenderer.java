@@ -0,0 +1,124 @@
+package com.codewithmosh;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * 棋盘渲染器
+ * 棋盘格子在构造时交给后端一次；每帧把存活的棋子写进同一个实例缓冲，一次绘制调用画完，渲染过程不分配内存
+ * 设置了状态栏时，它的文字在棋子之后再用一次绘制调用画出
+ */
+public class BoardRenderer implements AutoCloseable {
+    private static final float CELL_GAP = 1.0f; // 格子之间露出的缝，充当网格线
+    private static final float PIECE_INSET = 10.0f; // 棋子比格子小一圈
+    private static final float SELECTED_INSET = 4.0f; // 选中的棋子画得大一些
+
+    private final RenderBackend backend;
+    private final float cellSize;
+    private final float margin;
+    private final FloatBuffer instances;
+    private Hud hud; // 可以为 null
+
+    public BoardRenderer(RenderBackend backend, float cellSize, float margin) {
+        this.backend = backend;
+        this.cellSize = cellSize;
+        this.margin = margin;
+        int capacity = Math.max(GameState.CELLS, 2 * GameState.PIECES);
+        instances = ByteBuffer.allocateDirect(capacity * RenderBackend.INSTANCE_FLOATS * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+        // 棋盘格子
+        for (int y = 0; y < GameState.SIZE; y++) {
+            for (int x = 0; x < GameState.SIZE; x++) {
+                put(x, y, CELL_GAP, 0.5f, 0.5f, 0.5f);
+            }
+        }
+        instances.flip();
+        backend.setBoard(instances, GameState.CELLS);
+        instances.clear();
+    }
+
+    /**
+     * 画一帧
+     *
+     * @param selectedPiece 当前走棋方选中的棋子，没有时为 -1
+     */
+    public void render(GameState state, int selectedPiece) {
+        render(state, selectedPiece, Move.NONE, 1);
+    }
+
+    /**
+     * 画一帧，刚走的一步棋按进度画在起点和终点之间
+     *
+     * @param lastMove 正在播放动画的着法，没有时为 Move.NONE
+     * @param progress 动画进度，0 在起点，1 在终点
+     */
+    public void render(GameState state, int selectedPiece, int lastMove, float progress) {
+        backend.beginFrame();
+        backend.drawBoard();
+
+        instances.clear();
+        int count = putPieces(state, GameState.RED, 1.0f, 0.0f, 0.0f, selectedPiece, lastMove, progress) // 红色
+                + putPieces(state, GameState.BLUE, 0.0f, 0.0f, 1.0f, selectedPiece, lastMove, progress); // 蓝色
+        instances.flip();
+        backend.drawInstances(instances, count);
+
+        if (hud != null) {
+            hud.draw(backend, state);
+        }
+        backend.endFrame();
+    }
+
+    /**
+     * 设置状态栏并上传它的字形图集，null 表示不画状态栏
+     */
+    public void setHud(Hud hud) {
+        this.hud = hud;
+        if (hud != null) {
+            GlyphAtlas atlas = hud.getAtlas();
+            backend.setGlyphAtlas(atlas.bitmap(), atlas.width(), atlas.height());
+        }
+    }
+
+    public Hud getHud() {
+        return hud;
+    }
+
+    private int putPieces(GameState state, int side, float r, float g, float b, int selectedPiece,
+                          int lastMove, float progress) {
+        int count = 0;
+        for (int i = 0; i < GameState.PIECES; i++) {
+            if (state.isAlive(side, i)) {
+                boolean selected = i == selectedPiece && side == state.sideToMove();
+                float x = state.pieceX(side, i);
+                float y = state.pieceY(side, i);
+                if (lastMove != Move.NONE && progress < 1 && Move.side(lastMove) == side && Move.piece(lastMove) == i) {
+                    float fromX = GameState.cellX(Move.from(lastMove));
+                    float fromY = GameState.cellY(Move.from(lastMove));
+                    x = fromX + (x - fromX) * progress;
+                    y = fromY + (y - fromY) * progress;
+                }
+                put(x, y, selected ? SELECTED_INSET : PIECE_INSET, r, g, b);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void put(float x, float y, float inset, float r, float g, float b) {
+        instances.put(x * cellSize + margin + inset)
+                .put(y * cellSize + margin + inset)
+                .put(cellSize - 2 * inset)
+                .put(r).put(g).put(b);
+    }
+
+    public RenderBackend getBackend() {
+        return backend;
+    }
+
+    @Override
+    public void close() {
+        backend.close();
+    }
+}
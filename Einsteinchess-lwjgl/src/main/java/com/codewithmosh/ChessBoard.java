@@ -6,38 +6,51 @@ import java.util.List;
 /**
  * 棋盘类
  * 负责管理棋盘状态和棋子的渲染
+ *
+ * 规则和局面都由 GameState 负责，这里只是按它的布局生成用于渲染的棋子对象，
+ * 棋盘大小和棋子数由 Variant 决定
  */
 public class ChessBoard {
-    private final int SIZE = 8; // 棋盘大小
+    private final GameState state; // 棋盘状态
     private ChessPiece[][] board; // 棋盘数组
     private List<ChessPiece> redPieces; // 红方棋子列表
     private List<ChessPiece> bluePieces; // 蓝方棋子列表
 
+    /**
+     * 标准棋盘
+     */
+    public ChessBoard() {
+        this(Variant.STANDARD);
+    }
+
+    public ChessBoard(Variant variant) {
+        state = new GameState(variant);
+    }
+
     /**
      * 初始化棋盘
      */
     public void initializeBoard(Player redPlayer, Player bluePlayer) {
-        board = new ChessPiece[SIZE][SIZE];
+        Variant variant = state.variant();
+        state.reset();
+        board = new ChessPiece[variant.size()][variant.size()];
         redPieces = new ArrayList<>();
         bluePieces = new ArrayList<>();
 
-        // 初始化红方棋子
-        for (int i = 0; i < 2; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                ChessPiece piece = new ChessPiece("红方棋子", i, j);
-                redPieces.add(piece);
-                board[i][j] = piece;
+        for (int side = 0; side < 2; side++) {
+            List<ChessPiece> pieces = side == GameState.RED ? redPieces : bluePieces;
+            for (int i = 0; i < variant.pieces(); i++) {
+                int x = state.pieceX(side, i);
+                int y = state.pieceY(side, i);
+                ChessPiece piece = new ChessPiece(side == GameState.RED ? "红方棋子" : "蓝方棋子", x, y);
+                pieces.add(piece);
+                board[y][x] = piece;
             }
         }
+    }
 
-        // 初始化蓝方棋子
-        for (int i = SIZE - 1; i >= SIZE - 2; i--) {
-            for (int j = 0; j < SIZE; j++) {
-                ChessPiece piece = new ChessPiece("蓝方棋子", i, j);
-                bluePieces.add(piece);
-                board[i][j] = piece;
-            }
-        }
+    public GameState getState() {
+        return state;
     }
 
     /**
@@ -45,10 +58,10 @@ public class ChessBoard {
      */
     public void render() {
         // 渲染棋盘的逻辑
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (board[i][j] != null) {
-                    board[i][j].render();
+        for (ChessPiece[] row : board) {
+            for (ChessPiece piece : row) {
+                if (piece != null) {
+                    piece.render();
                 }
             }
         }
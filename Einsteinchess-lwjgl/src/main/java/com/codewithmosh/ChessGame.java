@@ -6,8 +6,11 @@ import org.lwjgl.opengl.*;
 import org.lwjgl.system.*;
 import org.lwjgl.system.MemoryStack;
 
+import java.io.IOException;
 import java.nio.*;
-import java.util.Random;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import static org.lwjgl.glfw.Callbacks.*;
 import static org.lwjgl.glfw.GLFW.*;
@@ -19,20 +22,36 @@ public class ChessGame {
     private long window;
     private final int WIDTH = 800;
     private final int HEIGHT = 800;
-    private final int GRID_SIZE = 5;
     private final float CELL_SIZE = 100.0f;
     private final float MARGIN = 50.0f; // 边缘留白
 
-    // 游戏状态
-    private boolean redTurn = true;
-    private int diceValue = 0;
-    private boolean gameOver = false;
-
-    // 棋子位置
-    private int[][] redPieces = new int[6][2];  // [棋子编号][x,y]
-    private int[][] bluePieces = new int[6][2]; // [棋子编号][x,y]
-    private boolean[] redActive = new boolean[6];
-    private boolean[] blueActive = new boolean[6];
+    // 游戏逻辑在单独的线程里运行，这里只把按键放进它的命令队列、画它发布的快照
+    private GameLogic logic;
+    private Tablebase tablebase; // 残局库，文件不存在时为 null
+    private PositionStore positionStore; // 局面库，没有指定时为 null
+    private BoardRenderer boardRenderer;
+    private Hud hud; // 找不到字体时为 null，只在控制台输出
+
+    // 状态栏字体，-Deinstein.hud.font=... 没有指定时依次找这些系统字体
+    private static final String[] HUD_FONTS = {
+            "C:/Windows/Fonts/arial.ttf",
+            "/System/Library/Fonts/Supplemental/Arial.ttf",
+            "/Library/Fonts/Arial.ttf",
+            "/usr/share/fonts/truetype/dejavu/DejaVuSans.ttf",
+            "/usr/share/fonts/TTF/DejaVuSans.ttf",
+            "/usr/share/fonts/dejavu/DejaVuSans.ttf",
+    };
+
+    // 电脑对手：-Deinstein.ai=red|blue 打开，对方走完后在后台预读六种点数
+    private PonderingService ponder;
+
+    // 按需渲染：局面或界面状态变化时才重画
+    private static final double MOVE_ANIMATION_SECONDS = 0.2;
+    private RenderLoop renderLoop;
+    private long viewVersion; // 窗口需要重画的次数，只在渲染线程里修改
+    private int animatedMove = Move.NONE;
+    private long animatedMoveCount; // 已经开始播放动画的步数
+    private double animationStart;
 
     public static void main(String[] args) {
         new ChessGame().run();
@@ -44,10 +63,29 @@ public class ChessGame {
         init();
         loop();
 
+        logic.close();
+        System.out.println("共绘制 " + renderLoop.getPacer().getFrames() + " 帧");
+        System.out.print(Metrics.global().report());
+        boardRenderer.close();
         glfwFreeCallbacks(window);
         glfwDestroyWindow(window);
         glfwTerminate();
         glfwSetErrorCallback(null).free();
+
+        if (tablebase != null) {
+            try {
+                tablebase.close();
+            } catch (IOException e) {
+                System.err.println("关闭残局库失败: " + e.getMessage());
+            }
+        }
+        if (positionStore != null) {
+            positionStore.close();
+        }
+        if (ponder != null) {
+            System.out.printf("电脑预读命中 %d 次，现场搜索 %d 次%n", ponder.getHits(), ponder.getMisses());
+            ponder.close();
+        }
     }
 
     private void init() {
@@ -60,36 +98,46 @@ public class ChessGame {
         glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
         glfwWindowHint(GLFW_RESIZABLE, GLFW_FALSE);
 
-        // 使用OpenGL 2.1兼容模式
-        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 2);
-        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 1);
+        // 使用OpenGL 3.3核心模式
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
 
         window = glfwCreateWindow(WIDTH, HEIGHT, "爱恩斯坦棋", NULL, NULL);
         if (window == NULL)
             throw new RuntimeException("无法创建GLFW窗口");
 
+        // 按键只转成命令放进队列，由逻辑线程执行，回调本身不碰游戏状态
         glfwSetKeyCallback(window, (window, key, scancode, action, mods) -> {
             if (key == GLFW_KEY_ESCAPE && action == GLFW_RELEASE)
                 glfwSetWindowShouldClose(window, true);
 
-            if (!gameOver && action == GLFW_RELEASE) {
+            if (action == GLFW_RELEASE) {
                 if (key == GLFW_KEY_SPACE) {
-                    rollDice();
+                    logic.submit(GameCommand.roll());
+                }
+
+                // 有两个棋子可走时用数字键选择
+                if (key >= GLFW_KEY_1 && key <= GLFW_KEY_6) {
+                    logic.submit(GameCommand.select(key - GLFW_KEY_1));
                 }
 
                 // 选择移动方向
-                if (diceValue > 0) {
-                    if (key == GLFW_KEY_RIGHT || key == GLFW_KEY_D) {
-                        moveInDirection(redTurn ? 0 : 0); // 红方向右，蓝方向左
-                    } else if (key == GLFW_KEY_DOWN || key == GLFW_KEY_S) {
-                        moveInDirection(redTurn ? 1 : 1); // 红方向下，蓝方向上
-                    } else if (key == GLFW_KEY_PAGE_DOWN) {
-                        moveInDirection(redTurn ? 2 : 2); // 红方向右下，蓝方向左上
-                    }
+                if (key == GLFW_KEY_RIGHT || key == GLFW_KEY_D) {
+                    logic.submit(GameCommand.move(0)); // 红方向右，蓝方向左
+                } else if (key == GLFW_KEY_DOWN || key == GLFW_KEY_S) {
+                    logic.submit(GameCommand.move(1)); // 红方向下，蓝方向上
+                } else if (key == GLFW_KEY_PAGE_DOWN) {
+                    logic.submit(GameCommand.move(2)); // 红方向右下，蓝方向左上
                 }
             }
         });
 
+        // 窗口被遮挡后重新露出时需要重画
+        glfwSetWindowRefreshCallback(window, window -> viewVersion++);
+        renderLoop = new RenderLoop(new GlfwWindowSystem(window), new FramePacer(60, -1));
+
         try (MemoryStack stack = stackPush()) {
             IntBuffer pWidth = stack.mallocInt(1);
             IntBuffer pHeight = stack.mallocInt(1);
@@ -106,164 +154,137 @@ public class ChessGame {
 
         GL.createCapabilities();
 
-        // 设置2D渲染
-        glMatrixMode(GL_PROJECTION);
-        glLoadIdentity();
-        glOrtho(0, WIDTH, HEIGHT, 0, -1, 1);
-        glMatrixMode(GL_MODELVIEW);
-        glLoadIdentity();
+        // 设置2D渲染，棋盘格子只上传一次，棋子和状态栏文字每帧各一次实例化绘制
+        boardRenderer = new BoardRenderer(new GlRenderBackend(WIDTH, HEIGHT, 2 * GameState.PIECES, Hud.MAX_GLYPHS),
+                CELL_SIZE, MARGIN);
+        loadHud();
 
         // 启用混合
         glEnable(GL_BLEND);
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
 
+        loadTablebase();
+        loadPositionStore();
         initializeGame();
     }
 
-    private void initializeGame() {
-        // 初始化红方棋子（左上角）
-        redPieces[0] = new int[]{0, 0}; // 1号棋子
-        redPieces[1] = new int[]{1, 0}; // 2号棋子
-        redPieces[2] = new int[]{0, 1}; // 3号棋子
-        redPieces[3] = new int[]{1, 1}; // 4号棋子
-        redPieces[4] = new int[]{0, 2}; // 5号棋子
-        redPieces[5] = new int[]{2, 0}; // 6号棋子
-
-        // 初始化蓝方棋子（右下角）
-        bluePieces[0] = new int[]{4, 4}; // 1号棋子
-        bluePieces[1] = new int[]{3, 4}; // 2号棋子
-        bluePieces[2] = new int[]{4, 3}; // 3号棋子
-        bluePieces[3] = new int[]{3, 3}; // 4号棋子
-        bluePieces[4] = new int[]{4, 2}; // 5号棋子
-        bluePieces[5] = new int[]{2, 4}; // 6号棋子
-
-        // 设置所有棋子为活跃状态
-        for (int i = 0; i < 6; i++) {
-            redActive[i] = true;
-            blueActive[i] = true;
+    /**
+     * 在棋盘下方显示状态栏，字形图集缓存在 -Deinstein.hud.cache=...（默认 hud-atlas.bin），
+     * 字号用 -Deinstein.hud.size 指定
+     */
+    private void loadHud() {
+        Path font = null;
+        String configured = System.getProperty("einstein.hud.font");
+        if (configured != null) {
+            font = Paths.get(configured);
+        } else {
+            for (String candidate : HUD_FONTS) {
+                if (Files.exists(Paths.get(candidate))) {
+                    font = Paths.get(candidate);
+                    break;
+                }
+            }
+        }
+        if (font == null || !Files.exists(font)) {
+            System.err.println("找不到状态栏字体，可以用 -Deinstein.hud.font=... 指定 TrueType 字体");
+            return;
+        }
+        Path cache = Paths.get(System.getProperty("einstein.hud.cache", "hud-atlas.bin"));
+        float size = Integer.getInteger("einstein.hud.size", 20);
+        try {
+            GlyphAtlas atlas = GlyphAtlas.loadOrBake(font, size, cache);
+            hud = new Hud(atlas, MARGIN, MARGIN + GameState.SIZE * CELL_SIZE + 20);
+            boardRenderer.setHud(hud);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("无法加载状态栏字体 " + font + ": " + e.getMessage());
         }
     }
 
-    private void rollDice() {
-        Random random = new Random();
-        diceValue = random.nextInt(6) + 1;
-        System.out.println((redTurn ? "红方" : "蓝方") + "掷出了 " + diceValue);
-
-        // 检查是否有对应编号的棋子
-        boolean hasPiece = false;
-        for (int i = 0; i < 6; i++) {
-            if ((i + 1 == diceValue) && (redTurn? redActive[i] : blueActive[i])) {
-                hasPiece = true;
-                break;
-            }
+    /**
+     * 加载残局库，路径可以用 -Deinstein.tablebase=... 指定
+     */
+    private void loadTablebase() {
+        Path path = Paths.get(System.getProperty("einstein.tablebase", "einstein-2.tb"));
+        if (!Files.exists(path)) {
+            return;
         }
-
-        if (!hasPiece) {
-            System.out.println("没有可移动的棋子，轮到对方。");
-            redTurn = !redTurn; // 切换回合
-            diceValue = 0;
+        try {
+            tablebase = Tablebase.open(path);
+            System.out.println("已加载残局库: " + path);
+        } catch (IOException e) {
+            System.err.println("无法加载残局库 " + path + ": " + e.getMessage());
         }
     }
 
-    private void moveInDirection(int direction) {
-        // 根据方向移动棋子
-        int[][] pieces = redTurn ? redPieces : bluePieces;
-        boolean[] active = redTurn ? redActive : blueActive;
-
-        for (int i = 0; i < 6; i++) {
-            if ((i + 1 == diceValue) && active[i]) {
-                int[] newPos = new int[]{pieces[i][0], pieces[i][1]};
-
-                // 计算新位置
-                if (redTurn) {
-                    // 红方：右、下、右下
-                    switch (direction) {
-                        case 0: newPos[0]++; break; // 右
-                        case 1: newPos[1]++; break; // 下
-                        case 2: newPos[0]++; newPos[1]++; break; // 右下
-                    }
-                } else {
-                    // 蓝方：左、上、左上
-                    switch (direction) {
-                        case 0: newPos[0]--; break; // 左
-                        case 1: newPos[1]--; break; // 上
-                        case 2: newPos[0]--; newPos[1]--; break; // 左上
-                    }
-                }
-
-                // 检查是否在棋盘范围内
-                if (newPos[0] >= 0 && newPos[0] < GRID_SIZE &&
-                        newPos[1] >= 0 && newPos[1] < GRID_SIZE) {
-
-                    // 检查是否有对方棋子
-                    boolean captured = false;
-                    int[][] otherPieces = redTurn ? bluePieces : redPieces;
-                    boolean[] otherActive = redTurn ? blueActive : redActive;
-
-                    for (int j = 0; j < 6; j++) {
-                        if (otherActive[j] && otherPieces[j][0] == newPos[0] && otherPieces[j][1] == newPos[1]) {
-                            captured = true;
-                            otherActive[j] = false; // 捕获对方棋子
-                            System.out.println((redTurn ? "红方" : "蓝方") + "捕获了对方的棋子！");
-                            break;
-                        }
-                    }
-
-                    // 移动棋子
-                    pieces[i][0] = newPos[0];
-                    pieces[i][1] = newPos[1];
-                    System.out.println((redTurn ? "红方" : "蓝方") + "移动了棋子到 (" + newPos[0] + ", " + newPos[1] + ")");
-                    break;
-                } else {
-                    System.out.println("移动超出棋盘范围！");
-                }
-            }
+    /**
+     * 以只读方式打开 -Deinstein.store=... 指定的局面库，分析任务可以同时继续写入
+     */
+    private void loadPositionStore() {
+        String path = System.getProperty("einstein.store");
+        if (path == null || !Files.exists(Paths.get(path))) {
+            return;
         }
+        try {
+            positionStore = new LmdbPositionStore(Paths.get(path), LmdbPositionStore.DEFAULT_MAP_SIZE, true);
+            System.out.println("已打开局面库: " + path);
+        } catch (IllegalStateException e) {
+            System.err.println("无法打开局面库 " + path + ": " + e.getMessage());
+        }
+    }
 
-        // 切换回合
-        redTurn = !redTurn;
-        diceValue = 0;
+    /**
+     * 创建游戏逻辑线程，按 -Deinstein.ai=red|blue 创建电脑对手
+     * -Deinstein.ai.depth 最大搜索深度，-Deinstein.ai.millis 每步时间，
+     * -Deinstein.ponder.millis 六种点数合计的预读时间（默认每步时间的 6 倍，0 关闭预读）
+     */
+    private void initializeGame() {
+        // 用 -Deinstein.seed=... 指定种子可以复盘同一局的骰子序列
+        String seed = System.getProperty("einstein.seed");
+        Dice dice = seed != null ? new Dice(Long.parseLong(seed)) : new Dice();
+        WindowSystem windowSystem = renderLoop.getWindowSystem();
+        logic = new GameLogic(dice, windowSystem::wakeUp);
+        logic.setTablebase(tablebase);
+        logic.setPositionStore(positionStore);
+
+        String side = System.getProperty("einstein.ai");
+        if (side != null) {
+            int aiSide = side.equalsIgnoreCase("red") ? GameState.RED : GameState.BLUE;
+            int depth = Integer.getInteger("einstein.ai.depth", 12);
+            long millis = Long.getLong("einstein.ai.millis", 1000);
+            long ponderMillis = Long.getLong("einstein.ponder.millis", millis * GameState.PIECES);
+            ExpectiminimaxSearch search = new ExpectiminimaxSearch(new HeuristicEvaluator(), new TranspositionTable(64), depth, millis);
+            search.setTablebase(tablebase);
+            search.setPositionStore(positionStore);
+            ponder = new PonderingService(search, ponderMillis, millis);
+            logic.setAi(aiSide, ponder, ponderMillis > 0);
+            System.out.println("电脑执" + (aiSide == GameState.RED ? "红" : "蓝") + (ponderMillis > 0 ? "，对方走棋后预读六种点数" : ""));
+        }
+        logic.start();
     }
 
     private void loop() {
-        while (!glfwWindowShouldClose(window)) {
-            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
-            render();
-            glfwSwapBuffers(window);
-            glfwPollEvents();
-        }
+        // 没有变化时线程在 glfwWaitEvents 中睡眠，空闲时几乎不占用 CPU；逻辑线程发布快照后会叫醒它
+        renderLoop.run(() -> logic.snapshot().version() + viewVersion, this::render);
     }
 
     private void render() {
-        // 渲染棋盘
-        glBegin(GL_QUADS);
-        glColor3f(0.5f, 0.5f, 0.5f);
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                glVertex2f(i * CELL_SIZE + MARGIN, j * CELL_SIZE + MARGIN);
-                glVertex2f((i + 1) * CELL_SIZE + MARGIN, j * CELL_SIZE + MARGIN);
-                glVertex2f((i + 1) * CELL_SIZE + MARGIN, (j + 1) * CELL_SIZE + MARGIN);
-                glVertex2f(i * CELL_SIZE + MARGIN, (j + 1) * CELL_SIZE + MARGIN);
-            }
+        // 只读逻辑线程发布的快照，电脑搜索时也不会阻塞
+        GameSnapshot snapshot = logic.snapshot();
+        double now = renderLoop.getWindowSystem().time();
+        if (snapshot.moveCount() != animatedMoveCount) {
+            // 有新的一步，刚走的棋子从起点滑到终点
+            animatedMoveCount = snapshot.moveCount();
+            animatedMove = snapshot.lastMove();
+            animationStart = now;
+            renderLoop.getPacer().requestAnimation(now, MOVE_ANIMATION_SECONDS);
         }
-        glEnd();
-
-        // 渲染棋子
-        renderPieces(redPieces, redActive, new float[]{1.0f, 0.0f, 0.0f}); // 红色
-        renderPieces(bluePieces, blueActive, new float[]{0.0f, 0.0f, 1.0f}); // 蓝色
-    }
-
-    private void renderPieces(int[][] pieces, boolean[] active, float[] color) {
-        glColor3f(color[0], color[1], color[2]);
-        for (int i = 0; i < pieces.length; i++) {
-            if (active[i]) {
-                glBegin(GL_QUADS);
-                glVertex2f(pieces[i][0] * CELL_SIZE + MARGIN, pieces[i][1] * CELL_SIZE + MARGIN);
-                glVertex2f((pieces[i][0] + 1) * CELL_SIZE + MARGIN, pieces[i][1] * CELL_SIZE + MARGIN);
-                glVertex2f((pieces[i][0] + 1) * CELL_SIZE + MARGIN, (pieces[i][1] + 1) * CELL_SIZE + MARGIN);
-                glVertex2f(pieces[i][0] * CELL_SIZE + MARGIN, (pieces[i][1] + 1) * CELL_SIZE + MARGIN);
-                glEnd();
-            }
+        float progress = (float) Math.min(1.0, (now - animationStart) / MOVE_ANIMATION_SECONDS);
+        if (hud != null) {
+            hud.setDice(snapshot.dice());
+            hud.setAiSide(snapshot.aiSide());
+            hud.setAiThinking(snapshot.aiThinking());
+            hud.setAiStats(snapshot.aiAnswerNanos(), snapshot.ponderHits(), snapshot.ponderMisses());
         }
+        boardRenderer.render(snapshot.state(), snapshot.selectedPiece(), animatedMove, progress);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,98 @@
+package com.codewithmosh;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * 单生产者单消费者的无锁环形队列，元素是 GameCommand 编码的 int
+ *
+ * 生产者只写 tail，消费者只写 head，两边用 release/acquire 发布位置，不需要锁和 CAS；
+ * 各自缓存对方上次的位置，只有看起来满了或空了时才去读对方的变量。
+ * 只能有一个线程 offer、一个线程 poll
+ */
+public final class CommandQueue {
+    public static final int EMPTY = -1; // 命令都不是负数
+
+    private static final VarHandle HEAD;
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(CommandQueue.class, "head", long.class);
+            TAIL = lookup.findVarHandle(CommandQueue.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int[] buffer;
+    private final int mask;
+    private long head; // 下一个要读的位置，只有消费者写
+    private long tail; // 下一个要写的位置，只有生产者写
+    private long cachedHead; // 生产者看到的 head
+    private long cachedTail; // 消费者看到的 tail
+
+    /**
+     * @param capacity 向上取到 2 的幂
+     */
+    public CommandQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("队列容量不对: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new int[size];
+        mask = size - 1;
+    }
+
+    /**
+     * 生产者调用，队列满时返回 false
+     */
+    public boolean offer(int command) {
+        if (command < 0) {
+            throw new IllegalArgumentException("命令不能是负数: " + command);
+        }
+        long t = tail;
+        if (t - cachedHead == buffer.length) {
+            cachedHead = (long) HEAD.getAcquire(this);
+            if (t - cachedHead == buffer.length) {
+                return false;
+            }
+        }
+        buffer[(int) t & mask] = command;
+        TAIL.setRelease(this, t + 1);
+        return true;
+    }
+
+    /**
+     * 消费者调用，队列空时返回 EMPTY
+     */
+    public int poll() {
+        long h = head;
+        if (h == cachedTail) {
+            cachedTail = (long) TAIL.getAcquire(this);
+            if (h == cachedTail) {
+                return EMPTY;
+            }
+        }
+        int command = buffer[(int) h & mask];
+        HEAD.setRelease(this, h + 1);
+        return command;
+    }
+
+    /**
+     * 近似的元素个数，任何线程都可以调用
+     */
+    public int size() {
+        long h = (long) HEAD.getAcquire(this);
+        long t = (long) TAIL.getAcquire(this);
+        return (int) Math.max(0, t - h);
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
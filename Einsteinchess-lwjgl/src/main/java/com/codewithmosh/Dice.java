@@ -1,25 +1,139 @@
 package com.codewithmosh;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
 
 /**
  * 骰子类
  * 负责掷骰子的逻辑
+ *
+ * 基于 L64X128MixRandom 可分裂随机数生成器，每个实例记住自己的种子，
+ * 用同一个种子重新创建就能得到完全相同的点数序列，用来复盘对局。
+ * 一个 64 位随机数一次拆出 23 个点数，掷骰几乎没有开销；实例不是线程安全的，每局或每个线程各用一个
  */
 public class Dice {
-    private Random random;
+    public static final String ALGORITHM = "L64X128MixRandom";
+
+    private static final RandomGeneratorFactory<RandomGenerator.SplittableGenerator> FACTORY =
+            RandomGeneratorFactory.of(ALGORITHM);
+
+    private static final int ROLLS_PER_WORD = 23;
+    private static final long WORD_RANGE = pow6(ROLLS_PER_WORD); // 6^23
+    private static final long LIMIT = (Long.MAX_VALUE / WORD_RANGE) * WORD_RANGE; // 拒绝采样的上限，保证均匀
+
+    private final long seed;
+    private final RandomGenerator.SplittableGenerator random;
+    private long pending; // 还没用掉的点数，按六进制存放
+    private int available;
 
     /**
-     * 构造函数
+     * 构造函数，使用随机种子
      */
     public Dice() {
-        random = new Random();
+        this(mix(System.nanoTime() ^ Thread.currentThread().getId() * 0x9E3779B97F4A7C15L));
+    }
+
+    /**
+     * 使用指定种子，同一个种子总是得到同一个点数序列
+     */
+    public Dice(long seed) {
+        this.seed = seed;
+        this.random = FACTORY.create(seed);
+    }
+
+    /**
+     * 第 gameIndex 局的骰子，用主种子和局号就能复盘任意一局
+     */
+    public static Dice forGame(long masterSeed, long gameIndex) {
+        return new Dice(gameSeed(masterSeed, gameIndex));
+    }
+
+    /**
+     * 由主种子和局号推导出的单局种子
+     */
+    public static long gameSeed(long masterSeed, long gameIndex) {
+        return mix(masterSeed + (gameIndex + 1) * 0x9E3779B97F4A7C15L);
     }
 
     /**
      * 掷骰子
      */
     public int roll() {
-        return random.nextInt(6) + 1; // 返回1到6的随机数
+        if (available == 0) {
+            refill();
+        }
+        int value = (int) (pending % 6);
+        pending /= 6;
+        available--;
+        return value + 1; // 返回1到6的随机数
+    }
+
+    /**
+     * 掷一个 faces 面的骰子，用于棋子数不是 6 的变体；六面时与 roll() 相同
+     */
+    public int roll(int faces) {
+        return faces == 6 ? roll() : 1 + random.nextInt(faces);
+    }
+
+    /**
+     * 批量生成点数，写入 buffer[offset, offset + length)，与连续调用 roll() 的结果相同
+     */
+    public void fill(byte[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            buffer[i] = (byte) roll();
+        }
+    }
+
+    /**
+     * 批量生成点数，写入 buffer[offset, offset + length)，与连续调用 roll() 的结果相同
+     */
+    public void fill(int[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            buffer[i] = roll();
+        }
+    }
+
+    /**
+     * 分出一个独立的骰子，它的种子取自当前序列，因此同样可以复盘
+     */
+    public Dice split() {
+        return new Dice(random.nextLong());
+    }
+
+    /**
+     * 从头重放同一个点数序列
+     */
+    public Dice replay() {
+        return new Dice(seed);
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    private void refill() {
+        long bits;
+        do {
+            bits = random.nextLong() >>> 1;
+        } while (bits >= LIMIT);
+        pending = bits % WORD_RANGE;
+        available = ROLLS_PER_WORD;
+    }
+
+    private static long pow6(int n) {
+        long value = 1;
+        for (int i = 0; i < n; i++) {
+            value *= 6;
+        }
+        return value;
+    }
+
+    /**
+     * SplitMix64 的混合函数，把相邻的输入打散
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 }
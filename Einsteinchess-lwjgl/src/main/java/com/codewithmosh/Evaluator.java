@@ -0,0 +1,13 @@
+package com.codewithmosh;
+
+/**
+ * 局面评估接口
+ * 返回当前走棋方（即将掷骰的一方）的局面分，范围必须在 [-1, 1] 之内，
+ * 1 表示必胜，-1 表示必败；搜索里的 Star1/Star2 剪枝依赖这个上下界
+ */
+public interface Evaluator {
+    float WIN = 1.0f;
+    float LOSS = -1.0f;
+
+    float evaluate(GameState state);
+}
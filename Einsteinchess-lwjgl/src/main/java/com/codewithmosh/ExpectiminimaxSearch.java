@@ -0,0 +1,448 @@
+package com.codewithmosh;
+
+/**
+ * 期望极大极小搜索（负极大值形式）
+ * 决策节点做 alpha-beta，机会节点（掷骰）用 Star1/Star2 剪枝，
+ * 迭代加深并在时间预算用完时返回上一轮完整搜索的结果
+ *
+ * 一个实例只能在一个线程里使用
+ */
+public class ExpectiminimaxSearch implements MoveStrategy {
+    private static final int MAX_PLY = 128;
+    private static final int CHECK_INTERVAL = 1023; // 每隔多少个节点检查一次时间
+    private static final float LOWER = Evaluator.LOSS;
+    private static final float UPPER = Evaluator.WIN;
+    private static final int STORE_PLY = 2; // 只在靠近根的几层查局面库，更深的节点查询开销大于收益
+
+    private final Evaluator evaluator;
+    private final TranspositionTable table; // 可以为 null，也可以由多个搜索线程共享
+    private final int maxDepth;
+    private long budgetNanos;
+    private Tablebase tablebase; // 可以为 null
+    private PositionStore store; // 可以为 null
+    private final PositionStore.Entry storeEntry = new PositionStore.Entry();
+
+    // 每一层的着法和点数分组缓冲，搜索过程中不分配内存
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+    private final float[][] probes = new float[MAX_PLY][Variant.MAX_PIECES];
+
+    private GameState state;
+    private long deadline;
+    private boolean aborted;
+    private volatile boolean stopped; // 其他线程要求停止，见 stop
+
+    // 统计信息
+    private long nodes;
+    private long elapsedNanos;
+    private int completedDepth;
+    private float lastValue;
+    private long storeHits;
+
+    /**
+     * 构造函数
+     *
+     * @param maxDepth     最大搜索深度（层数，一层为一次走棋）
+     * @param budgetMillis 每步时间预算，0 表示只受深度限制
+     */
+    public ExpectiminimaxSearch(Evaluator evaluator, int maxDepth, long budgetMillis) {
+        this(evaluator, null, maxDepth, budgetMillis);
+    }
+
+    /**
+     * 构造使用置换表的搜索，同一个置换表可以交给多个线程里的搜索实例共用
+     */
+    public ExpectiminimaxSearch(Evaluator evaluator, TranspositionTable table, int maxDepth, long budgetMillis) {
+        if (maxDepth < 1 || maxDepth >= MAX_PLY) {
+            throw new IllegalArgumentException("搜索深度必须在 1 到 " + (MAX_PLY - 1) + " 之间");
+        }
+        this.evaluator = evaluator;
+        this.table = table;
+        this.maxDepth = maxDepth;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+    }
+
+    @Override
+    public int chooseMove(GameState state, int roll) {
+        GameEvents.Search event = new GameEvents.Search();
+        event.begin();
+        int best = search(state, roll);
+        GameEvents.searchFinished(event, this, roll, completedDepth, nodes, elapsedNanos);
+        return best;
+    }
+
+    private int search(GameState state, int roll) {
+        this.state = state;
+        nodes = 0;
+        completedDepth = 0;
+        aborted = false;
+        long start = System.nanoTime();
+        deadline = budgetNanos > 0 ? start + budgetNanos : Long.MAX_VALUE;
+
+        int[] rootMoves = moves[0];
+        int count = MoveGenerator.generate(state, roll, rootMoves);
+        lastValue = 0;
+        if (count == 0) {
+            // 只能停一手，局面分是停一手之后对方的局面分取负
+            state.pass();
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                float value = -chance(1, depth - 1, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+                if (aborted) {
+                    break;
+                }
+                lastValue = value;
+                completedDepth = depth;
+                if (value >= UPPER || value <= LOWER) {
+                    break;
+                }
+            }
+            state.unpass();
+            elapsedNanos = System.nanoTime() - start;
+            return Move.NONE;
+        }
+        orderMoves(rootMoves, count);
+        int best = rootMoves[0];
+
+        // 局面库里有至少同样深度的分析结果时直接使用着法；库里只有掷骰前的平均分，不知道这个点数的分数
+        if (store != null && state.variant().isStandard() && store.lookup(state, storeEntry) && storeEntry.depth() >= maxDepth) {
+            int known = storeEntry.move(state, roll);
+            for (int i = 0; i < count; i++) {
+                if (rootMoves[i] == known) {
+                    storeHits++;
+                    completedDepth = storeEntry.depth();
+                    elapsedNanos = System.nanoTime() - start;
+                    return known;
+                }
+            }
+        }
+
+        // 第一步就能直接获胜时无需搜索；只有一步可走时也要搜索，才能得到这个点数的局面分
+        if (isWinning(best)) {
+            lastValue = UPPER;
+        } else {
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                float alpha = Float.NEGATIVE_INFINITY;
+                int iterationBest = Move.NONE;
+                for (int i = 0; i < count; i++) {
+                    int undo = state.makeMove(rootMoves[i]);
+                    float value = -chance(1, depth - 1, Float.NEGATIVE_INFINITY, -alpha);
+                    state.unmakeMove(undo);
+                    if (aborted) {
+                        break;
+                    }
+                    if (value > alpha) {
+                        alpha = value;
+                        iterationBest = rootMoves[i];
+                    }
+                }
+                if (aborted) {
+                    break;
+                }
+                best = iterationBest;
+                lastValue = alpha;
+                completedDepth = depth;
+                moveToFront(rootMoves, count, best);
+                if (alpha >= UPPER || alpha <= LOWER) {
+                    break; // 胜负已定，再加深也没有意义
+                }
+            }
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return best;
+    }
+
+    /**
+     * 机会节点：当前走棋方即将掷骰
+     */
+    private float chance(int ply, int depth, float alpha, float beta) {
+        if (state.isGameOver()) {
+            return state.winner() == state.sideToMove() ? UPPER : LOWER;
+        }
+        if (tablebase != null) {
+            float probability = tablebase.probe(state);
+            if (probability != Tablebase.NOT_FOUND) {
+                return 2 * probability - 1; // 残局库给出的是精确胜率
+            }
+        }
+        if (depth == 0) {
+            nodes++;
+            return evaluator.evaluate(state);
+        }
+        if (store != null && ply <= STORE_PLY && state.variant().isStandard() && store.lookup(state, storeEntry) && storeEntry.depth() >= depth) {
+            storeHits++;
+            return storeEntry.value();
+        }
+        if ((++nodes & CHECK_INTERVAL) == 0 && (System.nanoTime() > deadline || stopped)) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        long key = state.hash();
+        if (table != null) {
+            long data = table.probe(key);
+            if (data != 0 && TranspositionTable.depth(data) >= depth) {
+                float value = TranspositionTable.value(data);
+                int type = TranspositionTable.type(data);
+                if (type == TranspositionTable.EXACT
+                        || (type == TranspositionTable.LOWER && value >= beta)
+                        || (type == TranspositionTable.UPPER && value <= alpha)) {
+                    return value;
+                }
+            }
+        }
+        float value = expectation(ply, depth, alpha, beta);
+        if (table != null && !aborted) {
+            table.store(key, depth, boundType(value, alpha, beta), value, Move.NONE);
+        }
+        return value;
+    }
+
+    /**
+     * 机会节点的期望值计算，带 Star1/Star2 剪枝
+     */
+    private float expectation(int ply, int depth, float alpha, float beta) {
+        // 掷出不同点数但可走棋子相同的情况合并成一个分支，分组由 Variant 预先算好
+        Variant variant = state.variant();
+        int alive = state.aliveMask(state.sideToMove());
+        int branches = variant.branches[alive];
+        int base = alive * variant.pieces;
+        byte[] branchRolls = variant.branchRolls;
+        float[] branchWeights = variant.branchWeights;
+
+        // Star2：每个分支先只试第一步，得到决策节点值的下界
+        float[] lowerBounds = probes[ply];
+        float lowerSum = 0;
+        float remaining = 1.0f;
+        for (int i = 0; i < branches; i++) {
+            float p = branchWeights[base + i];
+            remaining -= p;
+            float b = (beta - lowerSum - remaining * LOWER) / p;
+            float w = probe(ply, branchRolls[base + i], depth, Math.min(b, UPPER));
+            lowerBounds[i] = w;
+            lowerSum += p * w;
+            if (w >= b) {
+                return lowerSum + remaining * LOWER;
+            }
+        }
+
+        // Star1：用已搜分支的值、其余分支的上界和探测得到的下界缩小每个分支的窗口
+        float sum = 0;
+        float lowerRest = lowerSum;
+        remaining = 1.0f;
+        for (int i = 0; i < branches; i++) {
+            float p = branchWeights[base + i];
+            remaining -= p;
+            lowerRest -= p * lowerBounds[i];
+            float a = (alpha - sum - remaining * UPPER) / p;
+            float b = (beta - sum - lowerRest) / p;
+            float value = decision(ply, branchRolls[base + i], depth, Math.max(a, LOWER), Math.min(b, UPPER));
+            sum += p * value;
+            if (value <= a) {
+                return sum + remaining * UPPER;
+            }
+            if (value >= b) {
+                return sum + lowerRest;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 决策节点：走棋方在掷出 roll 后选择最好的着法
+     */
+    private float decision(int ply, int roll, int depth, float alpha, float beta) {
+        int[] list = moves[ply];
+        int count = MoveGenerator.generate(state, roll, list);
+        orderMoves(list, count);
+
+        long key = state.hash() ^ Zobrist.roll(roll);
+        if (table != null) {
+            long data = table.probe(key);
+            if (data != 0) {
+                if (TranspositionTable.depth(data) >= depth) {
+                    float value = TranspositionTable.value(data);
+                    int type = TranspositionTable.type(data);
+                    if (type == TranspositionTable.EXACT
+                            || (type == TranspositionTable.LOWER && value >= beta)
+                            || (type == TranspositionTable.UPPER && value <= alpha)) {
+                        return value;
+                    }
+                }
+                moveToFront(list, count, TranspositionTable.move(data));
+            }
+        }
+
+        float originalAlpha = alpha;
+        float best = Float.NEGATIVE_INFINITY;
+        int bestMove = Move.NONE;
+        for (int i = 0; i < count; i++) {
+            int undo = state.makeMove(list[i]);
+            float value = -chance(ply + 1, depth - 1, -beta, -alpha);
+            state.unmakeMove(undo);
+            if (value > best) {
+                best = value;
+                bestMove = list[i];
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (table != null && !aborted) {
+            table.store(key, depth, boundType(best, originalAlpha, beta), best, bestMove);
+        }
+        return best;
+    }
+
+    private static int boundType(float value, float alpha, float beta) {
+        if (value <= alpha) {
+            return TranspositionTable.UPPER;
+        }
+        return value >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+    }
+
+    /**
+     * Star2 探测：只搜索排序后的第一步，结果是决策节点值的下界
+     */
+    private float probe(int ply, int roll, int depth, float beta) {
+        int[] list = moves[ply];
+        int count = MoveGenerator.generate(state, roll, list);
+        orderMoves(list, count);
+        int undo = state.makeMove(list[0]);
+        float value = -chance(ply + 1, depth - 1, -beta, -LOWER);
+        state.unmakeMove(undo);
+        return value;
+    }
+
+    /**
+     * 简单的着法排序：直接获胜的着法最先，其次是吃对方棋子和斜走
+     */
+    private void orderMoves(int[] list, int count) {
+        for (int i = 1; i < count; i++) {
+            int move = list[i];
+            int score = moveScore(move);
+            int j = i - 1;
+            while (j >= 0 && moveScore(list[j]) < score) {
+                list[j + 1] = list[j];
+                j--;
+            }
+            list[j + 1] = move;
+        }
+    }
+
+    private int moveScore(int move) {
+        int side = Move.side(move);
+        int to = Move.to(move);
+        if (to == state.variant().goal(side)) {
+            return 100;
+        }
+        int score = Move.direction(move) == 2 ? 2 : 0;
+        long enemy = state.occupancy(GameState.opponent(side));
+        if ((enemy & (1L << to)) != 0) {
+            score += 10;
+        }
+        return score;
+    }
+
+    private boolean isWinning(int move) {
+        int side = Move.side(move);
+        int to = Move.to(move);
+        if (to == state.variant().goal(side)) {
+            return true;
+        }
+        long enemy = state.occupancy(GameState.opponent(side));
+        return enemy == 1L << to;
+    }
+
+    private static void moveToFront(int[] list, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == move) {
+                System.arraycopy(list, 0, list, 1, i);
+                list[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 设置残局库，局面在库中时直接使用精确值（只有标准棋盘）
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * 设置局面库（热启动）：根节点有足够深的分析结果时直接采用库中的着法，
+     * 靠近根的机会节点有足够深的结果时直接使用库中的局面分；其他变体不查局面库
+     */
+    public void setPositionStore(PositionStore store) {
+        this.store = store;
+    }
+
+    /**
+     * 累计命中局面库的次数
+     */
+    public long getStoreHits() {
+        return storeHits;
+    }
+
+    /**
+     * 修改每步时间预算，0 表示只受深度限制
+     */
+    public void setBudgetMillis(long budgetMillis) {
+        budgetNanos = budgetMillis * 1_000_000L;
+    }
+
+    /**
+     * 可以从其他线程调用：正在进行的搜索尽快结束，返回已完整完成的深度里的最佳着法，
+     * 在 resume 之前之后的搜索也一样立即结束
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    public void resume() {
+        stopped = false;
+    }
+
+    /**
+     * 上一次搜索访问的节点数
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * 上一次搜索完整完成的深度
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * 上一次搜索的根节点评估值（走棋方视角），直接获胜时为 Evaluator.WIN；
+     * 直接采用局面库的着法或者搜索在完成第一层之前超时时为 0
+     */
+    public float getLastValue() {
+        return lastValue;
+    }
+
+    /**
+     * 上一次搜索每秒访问的节点数
+     */
+    public double getNodesPerSecond() {
+        return elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String name() {
+        return "expectiminimax(" + maxDepth + ")";
+    }
+}
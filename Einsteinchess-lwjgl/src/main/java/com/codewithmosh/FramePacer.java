@@ -0,0 +1,75 @@
+package com.codewithmosh;
+
+/**
+ * 帧节奏控制
+ *
+ * 内容版本变化时立即画一帧；有动画时按最高帧率连续画，直到动画结束；
+ * 其余时间什么都不画，渲染线程在等待事件中睡眠
+ */
+public class FramePacer {
+    private static final double TOLERANCE = 1e-6; // 时钟的舍入误差，提前这么一点也算到了下一帧
+    private final double frameInterval;
+    private final double idleTimeout;
+    private long renderedVersion = Long.MIN_VALUE;
+    private double lastFrameTime = Double.NEGATIVE_INFINITY;
+    private double animateUntil = Double.NEGATIVE_INFINITY;
+    private long frames;
+
+    /**
+     * @param maxFps      动画时的最高帧率
+     * @param idleTimeout 空闲时最长等待多少秒醒来检查一次，小于 0 表示一直等到有事件
+     */
+    public FramePacer(double maxFps, double idleTimeout) {
+        if (maxFps <= 0) {
+            throw new IllegalArgumentException("帧率必须大于 0");
+        }
+        this.frameInterval = 1.0 / maxFps;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * 从现在起连续画 seconds 秒
+     */
+    public void requestAnimation(double now, double seconds) {
+        animateUntil = Math.max(animateUntil, now + seconds);
+    }
+
+    public boolean isAnimating(double now) {
+        return now < animateUntil;
+    }
+
+    /**
+     * 这一刻是否需要画一帧
+     */
+    public boolean shouldRender(long version, double now) {
+        if (version != renderedVersion) {
+            return true;
+        }
+        // 动画结束后再补一帧，保证停在最终的画面上
+        boolean animating = now < animateUntil || lastFrameTime < animateUntil;
+        return animating && now + TOLERANCE >= lastFrameTime + frameInterval;
+    }
+
+    public void frameRendered(long version, double now) {
+        renderedVersion = version;
+        lastFrameTime = now;
+        frames++;
+    }
+
+    /**
+     * 可以等待事件多久：动画时等到下一帧，空闲时等 idleTimeout
+     */
+    public double waitTimeout(double now) {
+        if (now < animateUntil || lastFrameTime < animateUntil) {
+            return Math.max(0, lastFrameTime + frameInterval - now);
+        }
+        return idleTimeout;
+    }
+
+    /**
+     * 已经画出的帧数
+     */
+    public long getFrames() {
+        return frames;
+    }
+}
@@ -0,0 +1,35 @@
+package com.codewithmosh;
+
+/**
+ * 输入命令的 int 编码，放进 CommandQueue 时不产生对象
+ *
+ * 0-3 种类，4 以上参数（棋子编号或方向）
+ */
+public final class GameCommand {
+    public static final int ROLL = 1; // 掷骰子
+    public static final int SELECT = 2; // 选择棋子，参数为棋子编号 0-5
+    public static final int MOVE = 3; // 选中的棋子朝某个方向走，参数为方向 0-2
+
+    private GameCommand() {
+    }
+
+    public static int roll() {
+        return ROLL;
+    }
+
+    public static int select(int piece) {
+        return SELECT | piece << 4;
+    }
+
+    public static int move(int direction) {
+        return MOVE | direction << 4;
+    }
+
+    public static int kind(int command) {
+        return command & 0xF;
+    }
+
+    public static int argument(int command) {
+        return command >>> 4;
+    }
+}
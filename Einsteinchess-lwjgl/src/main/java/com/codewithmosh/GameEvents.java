@@ -0,0 +1,167 @@
+package com.codewithmosh;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder 自定义事件
+ *
+ * 用 -XX:StartFlightRecording 或 jcmd JFR.start 开始记录后，在 JDK Mission Control 的
+ * “爱恩斯坦棋”分类下查看。没有在记录时 shouldCommit 直接返回 false，事件对象会被 JIT 消除，
+ * 可以一直留在生产代码里。事件都不采集调用栈，开销只有几十纳秒
+ */
+public final class GameEvents {
+    private static final String CATEGORY = "爱恩斯坦棋";
+
+    private static final Metrics.Counter SEARCH_NODES = Metrics.global().counter("search.nodes");
+    private static final Metrics.Counter SEARCH_NANOS = Metrics.global().counter("search.nanos");
+    private static final Metrics.Histogram SEARCH_LATENCY = Metrics.global().histogram("search.latency");
+    private static final Metrics.Histogram MOVE_LATENCY = Metrics.global().histogram("move.latency");
+    private static final Metrics.Counter ROLLS = Metrics.global().counter("dice.rolls");
+
+    static {
+        Metrics.global().gauge("search.nodesPerSecond", () -> SEARCH_NODES.get() * 1e9 / Math.max(1, SEARCH_NANOS.get()));
+    }
+
+    private GameEvents() {
+    }
+
+    @Name("einstein.DiceRoll")
+    @Label("掷骰")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class DiceRoll extends Event {
+        @Label("走棋方")
+        int side;
+
+        @Label("点数")
+        int roll;
+
+        @Label("可走着法数")
+        int moves;
+    }
+
+    @Name("einstein.Move")
+    @Label("走棋")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class MoveApplied extends Event {
+        @Label("走棋方")
+        int side;
+
+        @Label("棋子")
+        int piece;
+
+        @Label("起点")
+        int from;
+
+        @Label("终点")
+        int to;
+
+        @Label("吃子")
+        @Description("被吃棋子 side*6+编号，没有吃子为 -1")
+        int captured;
+
+        @Label("步数")
+        int ply;
+
+        @Label("掷骰到走棋")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+    }
+
+    @Name("einstein.Search")
+    @Label("搜索")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Search extends Event {
+        @Label("策略")
+        String strategy;
+
+        @Label("点数")
+        int roll;
+
+        @Label("完成深度")
+        int depth;
+
+        @Label("节点数")
+        long nodes;
+
+        @Label("节点/秒")
+        double nodesPerSecond;
+    }
+
+    @Name("einstein.Frame")
+    @Label("绘制一帧")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static final class Frame extends Event {
+        @Label("帧号")
+        long frame;
+
+        @Label("内容版本")
+        long version;
+
+        @Label("帧间隔")
+        @Timespan(Timespan.NANOSECONDS)
+        long sinceLast;
+    }
+
+    public static void diceRolled(int side, int roll, int moves) {
+        ROLLS.increment();
+        DiceRoll event = new DiceRoll();
+        if (event.shouldCommit()) {
+            event.side = side;
+            event.roll = roll;
+            event.moves = moves;
+            event.commit();
+        }
+    }
+
+    /**
+     * 搜索结束：提交 begin 过的事件，并记录 search.* 指标
+     *
+     * @param nodes 期望极大极小搜索为节点数，蒙特卡洛树搜索为模拟次数
+     */
+    public static void searchFinished(Search event, MoveStrategy strategy, int roll, int depth, long nodes, long elapsedNanos) {
+        SEARCH_NODES.add(nodes);
+        SEARCH_NANOS.add(elapsedNanos);
+        SEARCH_LATENCY.record(elapsedNanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.strategy = strategy.name();
+            event.roll = roll;
+            event.depth = depth;
+            event.nodes = nodes;
+            event.nodesPerSecond = elapsedNanos == 0 ? 0 : nodes * 1e9 / elapsedNanos;
+            event.commit();
+        }
+    }
+
+    /**
+     * 走了一步，记录事件和 move.latency 指标
+     *
+     * @param move    makeMove 返回的着法
+     * @param ply     走完后的步数
+     * @param latency 从掷骰到走棋的纳秒数（玩家思考或者客户端往返的时间）
+     */
+    public static void moveApplied(int move, int ply, long latency) {
+        MOVE_LATENCY.record(latency);
+        MoveApplied event = new MoveApplied();
+        if (event.shouldCommit()) {
+            event.side = Move.side(move);
+            event.piece = Move.piece(move);
+            event.from = Move.from(move);
+            event.to = Move.to(move);
+            event.captured = Move.isCapture(move) ? Move.capturedSide(move) * GameState.PIECES + Move.capturedPiece(move) : -1;
+            event.ply = ply;
+            event.latency = latency;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 游戏逻辑线程
+ *
+ * 输入线程把 GameCommand 放进单生产者单消费者队列，逻辑线程按顺序执行：掷骰、选子、走棋，
+ * 轮到电脑时也在这个线程里搜索。每次状态变化后新建一个 GameSnapshot，通过 volatile 引用发布，
+ * 再调用 onPublish 叫醒渲染线程。渲染线程只读快照，电脑思考几秒钟也不会卡住画面。
+ * 没有命令时线程 park 睡眠，submit 之后 unpark
+ *
+ * 不依赖窗口，可以直接 submit 命令、读快照来测试
+ */
+public class GameLogic implements AutoCloseable {
+    public static final int QUEUE_CAPACITY = 64;
+
+    private final CommandQueue commands = new CommandQueue(QUEUE_CAPACITY);
+    private final Runnable onPublish;
+    private volatile GameSnapshot snapshot;
+    private volatile boolean running;
+    private Thread thread;
+    private long dropped; // 只有生产者写
+
+    // 以下只在逻辑线程里访问（start 之前由构造线程设置）
+    private final GameState state = new GameState();
+    private final Dice dice;
+    private final int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+    private final GameRecord record = new GameRecord();
+    private final PositionStore.Entry storeEntry = new PositionStore.Entry();
+    private int diceValue;
+    private long rolledAt; // 掷骰的时间（纳秒），用于统计走棋延迟
+    private int selectedPiece = -1; // 本回合选中的棋子
+    private int legalCount;
+    private boolean gameOver;
+    private int lastMove = Move.NONE;
+    private long moveCount;
+    private long version;
+    private Tablebase tablebase; // 可以为 null
+    private PositionStore positionStore; // 可以为 null
+    private int aiSide = GameState.NONE;
+    private PonderingService ponder;
+    private boolean pondering;
+    private boolean aiThinking;
+    private long aiAnswerNanos = -1;
+
+    /**
+     * @param onPublish 每次发布快照后在逻辑线程里调用，用来叫醒渲染线程，必须是线程安全的
+     */
+    public GameLogic(Dice dice, Runnable onPublish) {
+        this.dice = dice;
+        this.onPublish = onPublish;
+    }
+
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    public void setPositionStore(PositionStore positionStore) {
+        this.positionStore = positionStore;
+    }
+
+    /**
+     * 电脑对手，需要在 start 之前设置
+     *
+     * @param pondering 对方走棋后是否在后台预读
+     */
+    public void setAi(int side, PonderingService ponder, boolean pondering) {
+        this.aiSide = side;
+        this.ponder = ponder;
+        this.pondering = pondering;
+    }
+
+    /**
+     * 开始新的一局并启动逻辑线程
+     */
+    public void start() {
+        // 红方棋子在左上角，蓝方棋子在右下角
+        state.reset();
+        System.out.println("本局骰子种子: " + dice.seed());
+        record.begin(dice.seed());
+        updatePondering();
+        publish();
+        running = true;
+        thread = new Thread(this::run, "game-logic");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 输入线程调用，队列满时丢掉这个命令并返回 false；只能有一个线程调用
+     */
+    public boolean submit(int command) {
+        if (!commands.offer(command)) {
+            dropped++;
+            return false;
+        }
+        LockSupport.unpark(thread); // 许可会保留，逻辑线程还没 park 时也不会漏掉
+        return true;
+    }
+
+    /**
+     * 最新的快照，任何线程都可以调用
+     */
+    public GameSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 队列满时丢掉的命令数
+     */
+    public long getDroppedCommands() {
+        return dropped;
+    }
+
+    private void run() {
+        while (running) {
+            int command = commands.poll();
+            if (command == CommandQueue.EMPTY) {
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                execute(command);
+            } catch (RuntimeException e) {
+                System.err.println("执行命令失败: " + e);
+            }
+            publish();
+        }
+    }
+
+    private void execute(int command) {
+        if (gameOver) {
+            return;
+        }
+        int argument = GameCommand.argument(command);
+        switch (GameCommand.kind(command)) {
+            case GameCommand.ROLL:
+                if (diceValue == 0) {
+                    rollDice();
+                }
+                break;
+            case GameCommand.SELECT:
+                // 有两个棋子可走时用数字键选择
+                if (diceValue > 0) {
+                    selectPiece(argument);
+                }
+                break;
+            case GameCommand.MOVE:
+                if (diceValue > 0) {
+                    moveInDirection(argument);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("未知命令: " + command);
+        }
+    }
+
+    private void publish() {
+        snapshot = new GameSnapshot(++version, state.copy(), diceValue, diceValue > 0 ? selectedPiece : -1, lastMove,
+                moveCount, aiSide, aiThinking, aiAnswerNanos,
+                ponder == null ? 0 : ponder.getHits(), ponder == null ? 0 : ponder.getMisses());
+        onPublish.run();
+    }
+
+    /**
+     * 轮到电脑时在后台预读，不是电脑的回合时停止预读
+     */
+    private void updatePondering() {
+        if (ponder == null) {
+            return;
+        }
+        if (pondering && !gameOver && state.sideToMove() == aiSide) {
+            ponder.ponder(state);
+        } else {
+            ponder.cancel();
+        }
+    }
+
+    private String sideName() {
+        return state.isRedTurn() ? "红方" : "蓝方";
+    }
+
+    private void rollDice() {
+        diceValue = dice.roll();
+        rolledAt = System.nanoTime();
+        System.out.println(sideName() + "掷出了 " + diceValue);
+
+        // 点数对应的棋子不在时，可以走比它大或比它小的最近的棋子
+        legalCount = MoveGenerator.generate(state, diceValue, legalMoves);
+        GameEvents.diceRolled(state.sideToMove(), diceValue, legalCount);
+        if (legalCount == 0) {
+            System.out.println("没有可移动的棋子，轮到对方。");
+            record.addPass(diceValue);
+            state.pass(); // 切换回合
+            diceValue = 0;
+            updatePondering();
+            return;
+        }
+
+        if (state.sideToMove() == aiSide) {
+            // 先发布点数和"思考中"，画面在搜索期间照常刷新
+            aiThinking = true;
+            publish();
+            int move;
+            try {
+                move = ponder.answer(state, diceValue);
+            } catch (RuntimeException e) {
+                // 搜索失败时退回到掷骰之前，再掷一次骰子就会重新搜索
+                diceValue = 0;
+                selectedPiece = -1;
+                legalCount = 0;
+                throw e;
+            } finally {
+                aiThinking = false;
+            }
+            aiAnswerNanos = ponder.getLastAnswerNanos();
+            System.out.printf("电脑用时 %.1f 毫秒%n", aiAnswerNanos / 1e6);
+            selectedPiece = Move.piece(move);
+            applyMove(move);
+            return;
+        }
+
+        int alive = state.aliveMask(state.sideToMove());
+        selectedPiece = MoveGenerator.movablePiece(alive, diceValue, 0);
+        if (MoveGenerator.movableCount(alive, diceValue) > 1) {
+            int other = MoveGenerator.movablePiece(alive, diceValue, 1);
+            System.out.println("可以移动 " + (selectedPiece + 1) + " 号或 " + (other + 1) + " 号棋子，按数字键选择，当前选中 "
+                    + (selectedPiece + 1) + " 号");
+        }
+        if (positionStore != null && positionStore.lookup(state, storeEntry)) {
+            int hint = storeEntry.move(state, diceValue);
+            if (hint != Move.NONE) {
+                System.out.printf("局面库建议：%d 号棋子走到 %s（搜索深度 %d，局面分 %.2f）%n", Move.piece(hint) + 1,
+                        GameState.cellName(Move.to(hint)), storeEntry.depth(), storeEntry.value());
+            }
+        }
+    }
+
+    private void selectPiece(int piece) {
+        int alive = state.aliveMask(state.sideToMove());
+        if ((MoveGenerator.movableMask(alive, diceValue) & (1 << piece)) != 0) {
+            selectedPiece = piece;
+            System.out.println(sideName() + "选中了 " + (piece + 1) + " 号棋子");
+        }
+    }
+
+    private void moveInDirection(int direction) {
+        // 根据方向移动棋子
+        int move = Move.NONE;
+        for (int i = 0; i < legalCount; i++) {
+            if (Move.piece(legalMoves[i]) == selectedPiece && Move.direction(legalMoves[i]) == direction) {
+                move = legalMoves[i];
+                break;
+            }
+        }
+        if (move == Move.NONE) {
+            System.out.println("移动超出棋盘范围！");
+            return;
+        }
+        applyMove(move);
+    }
+
+    private void applyMove(int move) {
+        String side = sideName();
+        move = state.makeMove(move);
+        GameEvents.moveApplied(move, state.ply(), System.nanoTime() - rolledAt);
+        record.addMove(diceValue, move);
+        lastMove = move;
+        moveCount++;
+        if (Move.isCapture(move)) {
+            System.out.println(side + (Move.capturedSide(move) == Move.side(move) ? "吃掉了自己的棋子！" : "捕获了对方的棋子！"));
+        }
+        System.out.println(side + "移动了棋子到 " + GameState.cellName(Move.to(move)));
+
+        if (state.isGameOver()) {
+            gameOver = true;
+            System.out.println((state.winner() == GameState.RED ? "红方" : "蓝方") + "获胜！");
+            record.finish(state.winner());
+            saveRecord();
+        } else if (tablebase != null && tablebase.covers(state)) {
+            System.out.printf("残局库：%s胜率 %.1f%%%n", sideName(), tablebase.probe(state) * 100);
+        }
+        diceValue = 0;
+        selectedPiece = -1;
+        legalCount = 0;
+        updatePondering();
+    }
+
+    /**
+     * 对局结束后追加到 -Deinstein.record=... 指定的记录文件
+     */
+    private void saveRecord() {
+        String path = System.getProperty("einstein.record");
+        if (path == null) {
+            return;
+        }
+        try (GameRecordWriter writer = GameRecordWriter.open(Paths.get(path), GameRecord.Compression.NONE)) {
+            writer.write(record);
+        } catch (IOException e) {
+            System.err.println("无法保存对局记录 " + path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 停止逻辑线程，正在进行的电脑搜索会先完成
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        if (ponder != null) {
+            ponder.cancel();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.codewithmosh;
+
+import java.util.Arrays;
+
+/**
+ * 一局棋的紧凑记录，可以复用
+ *
+ * 每一步只占一个字节：
+ * 0-2 点数 - 1
+ * 3-5 棋子编号
+ * 6-7 方向，PASS 表示没有棋子可走、停一手
+ * 双方轮流走棋，起止格子都可以从开局推出来，因此不需要保存
+ *
+ * 写入文件时每局的格式（小端）：
+ * 8 字节骰子种子，2 字节步数，1 字节结果（获胜方，未结束为 0xFF），然后每步一个字节
+ */
+public class GameRecord {
+    public static final int PASS = 3;
+    public static final int HEADER_BYTES = 11;
+    public static final int MAX_PLIES = 0xFFFF;
+    public static final int UNFINISHED = 0xFF;
+
+    /**
+     * 数据块的压缩方式
+     */
+    public enum Compression {
+        NONE, LZ4, ZSTD
+    }
+
+    private long seed;
+    private byte[] plies = new byte[128];
+    private int count;
+    private int winner = GameState.NONE;
+
+    /**
+     * 开始记录新的一局
+     */
+    public void begin(long seed) {
+        this.seed = seed;
+        count = 0;
+        winner = GameState.NONE;
+    }
+
+    /**
+     * 记录一步棋，move 为 MoveGenerator 生成或 makeMove 返回的着法
+     */
+    public void addMove(int roll, int move) {
+        add(encode(roll, Move.piece(move), Move.direction(move)));
+    }
+
+    /**
+     * 记录停一手
+     */
+    public void addPass(int roll) {
+        add(encode(roll, 0, PASS));
+    }
+
+    void add(byte ply) {
+        if (count == MAX_PLIES) {
+            throw new IllegalStateException("对局步数超过 " + MAX_PLIES);
+        }
+        if (count == plies.length) {
+            plies = Arrays.copyOf(plies, Math.min(plies.length * 2, MAX_PLIES));
+        }
+        plies[count++] = ply;
+    }
+
+    public void finish(int winner) {
+        this.winner = winner;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int plyCount() {
+        return count;
+    }
+
+    public byte ply(int index) {
+        return plies[index];
+    }
+
+    /**
+     * 获胜方，未结束时为 GameState.NONE
+     */
+    public int winner() {
+        return winner;
+    }
+
+    /**
+     * 写入文件时占用的字节数
+     */
+    public int encodedBytes() {
+        return HEADER_BYTES + count;
+    }
+
+    byte[] plies() {
+        return plies;
+    }
+
+    public static byte encode(int roll, int piece, int direction) {
+        return (byte) ((roll - 1) | piece << 3 | direction << 6);
+    }
+
+    public static int roll(byte ply) {
+        return (ply & 0x7) + 1;
+    }
+
+    public static int piece(byte ply) {
+        return (ply >> 3) & 0x7;
+    }
+
+    public static int direction(byte ply) {
+        return (ply >> 6) & 0x3;
+    }
+
+    public static boolean isPass(byte ply) {
+        return direction(ply) == PASS;
+    }
+
+    /**
+     * 在 state 上走一步记录中的棋，返回 makeMove 的结果，停一手返回 Move.NONE
+     *
+     * @throws IllegalArgumentException 记录中的着法在当前局面不合法
+     */
+    public static int apply(GameState state, byte ply) {
+        if (isPass(ply)) {
+            state.pass();
+            return Move.NONE;
+        }
+        int move = state.move(piece(ply), direction(ply));
+        if (move == Move.NONE || (MoveGenerator.movableMask(state.aliveMask(state.sideToMove()), roll(ply)) & (1 << piece(ply))) == 0) {
+            throw new IllegalArgumentException("记录中的着法不合法: 点数 " + roll(ply) + "，棋子 " + (piece(ply) + 1)
+                    + "，方向 " + direction(ply));
+        }
+        return state.makeMove(move);
+    }
+
+    /**
+     * 从开局重放前 plies 步
+     */
+    public void replay(GameState state, int plies) {
+        state.reset();
+        for (int i = 0; i < plies; i++) {
+            apply(state, this.plies[i]);
+        }
+    }
+}
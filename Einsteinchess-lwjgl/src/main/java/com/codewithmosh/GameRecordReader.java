@@ -0,0 +1,199 @@
+package com.codewithmosh;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 对局记录文件的流式读取器
+ *
+ * 像游标一样逐局前进，数据直接从解压后的数据块里读取，不为每局创建对象，
+ * 扫描几百万局只占用两个数据块大小的内存
+ *
+ * 用法：GameRecordReader 文件 —— 统计文件中的对局
+ */
+public class GameRecordReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final GameRecord.Compression compression;
+    private final ByteBuffer blockHeader = ByteBuffer.allocateDirect(GameRecordWriter.BLOCK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer stored = ByteBuffer.allocateDirect(GameRecordWriter.DEFAULT_BLOCK_BYTES);
+    private ByteBuffer block = ByteBuffer.allocateDirect(GameRecordWriter.DEFAULT_BLOCK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private int blockRemaining; // 当前数据块里还没读的对局数
+
+    // 当前对局
+    private long seed;
+    private int plyCount;
+    private int winner;
+    private int pliesOffset;
+
+    private GameRecordReader(FileChannel channel, GameRecord.Compression compression) {
+        this.channel = channel;
+        this.compression = compression;
+    }
+
+    public static GameRecordReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GameRecordReader(channel, readHeader(channel, path));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 校验文件头，返回压缩方式，读完后通道位于第一个数据块
+     */
+    static GameRecord.Compression readHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GameRecordWriter.FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel.position(0), header);
+        int compression = header.getInt(8);
+        if (header.getInt(0) != GameRecordWriter.MAGIC || header.getInt(4) != GameRecordWriter.VERSION
+                || compression < 0 || compression >= GameRecord.Compression.values().length) {
+            throw new IOException("不是对局记录文件: " + path);
+        }
+        return GameRecord.Compression.values()[compression];
+    }
+
+    /**
+     * 读满 buffer 的 position 到 limit，然后 flip
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("对局记录文件不完整");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * 前进到下一局，没有更多对局时返回 false
+     */
+    public boolean next() throws IOException {
+        while (blockRemaining == 0) {
+            if (!readBlock()) {
+                return false;
+            }
+        }
+        seed = block.getLong();
+        plyCount = block.getShort() & 0xFFFF;
+        int result = block.get() & 0xFF;
+        winner = result == GameRecord.UNFINISHED ? GameState.NONE : result;
+        pliesOffset = block.position();
+        block.position(pliesOffset + plyCount);
+        blockRemaining--;
+        return true;
+    }
+
+    private boolean readBlock() throws IOException {
+        blockHeader.clear();
+        if (channel.read(blockHeader) <= 0) {
+            return false;
+        }
+        while (blockHeader.hasRemaining()) {
+            if (channel.read(blockHeader) < 0) {
+                throw new EOFException("对局记录文件不完整");
+            }
+        }
+        int rawBytes = blockHeader.getInt(0);
+        int storedBytes = blockHeader.getInt(4);
+        int records = blockHeader.getInt(8);
+        if (rawBytes < 0 || storedBytes < 0 || records < 0) {
+            throw new IOException("对局记录数据块损坏");
+        }
+        if (block.capacity() < rawBytes) {
+            block = ByteBuffer.allocateDirect(rawBytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        block.clear().limit(rawBytes);
+        if (compression == GameRecord.Compression.NONE) {
+            if (storedBytes != rawBytes) {
+                throw new IOException("对局记录数据块损坏");
+            }
+            readFully(channel, block);
+        } else {
+            if (stored.capacity() < storedBytes) {
+                stored = ByteBuffer.allocateDirect(storedBytes);
+            }
+            stored.clear().limit(storedBytes);
+            readFully(channel, stored);
+            BlockCodec.decompress(compression, stored, block, rawBytes);
+        }
+        blockRemaining = records;
+        return true;
+    }
+
+    public GameRecord.Compression compression() {
+        return compression;
+    }
+
+    public long seed() {
+        return seed;
+    }
+
+    public int plyCount() {
+        return plyCount;
+    }
+
+    /**
+     * 获胜方，未结束时为 GameState.NONE
+     */
+    public int winner() {
+        return winner;
+    }
+
+    /**
+     * 当前对局的第 index 步，用 GameRecord 的静态方法解码
+     */
+    public byte ply(int index) {
+        return block.get(pliesOffset + index);
+    }
+
+    /**
+     * 把当前对局复制到 record 中，需要保留这一局时使用
+     */
+    public void copyTo(GameRecord record) {
+        record.begin(seed);
+        for (int i = 0; i < plyCount; i++) {
+            record.add(ply(i));
+        }
+        record.finish(winner);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "games.ezgr");
+        long start = System.nanoTime();
+        long games = 0;
+        long plies = 0;
+        long redWins = 0;
+        long passes = 0;
+        try (GameRecordReader reader = open(path)) {
+            while (reader.next()) {
+                games++;
+                plies += reader.plyCount();
+                if (reader.winner() == GameState.RED) {
+                    redWins++;
+                }
+                for (int i = 0; i < reader.plyCount(); i++) {
+                    if (GameRecord.isPass(reader.ply(i))) {
+                        passes++;
+                    }
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d 局，平均 %.1f 步，停一手 %d 次，红方胜率 %.2f%%，扫描用时 %.2f 秒（%.0f 局/秒）%n",
+                games, (double) plies / Math.max(1, games), passes, 100.0 * redWins / Math.max(1, games),
+                seconds, games / Math.max(seconds, 1e-9));
+    }
+}
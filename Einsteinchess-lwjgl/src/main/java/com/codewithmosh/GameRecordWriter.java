@@ -0,0 +1,145 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 对局记录文件的写入器
+ *
+ * 对局先攒进内存中的数据块，块满时（可选压缩后）一次写入文件，
+ * 写入是线程安全的，多个模拟线程可以共用一个写入器
+ *
+ * 文件格式（小端）：
+ * 0  int  魔数 "EZGR"
+ * 4  int  版本
+ * 8  int  压缩方式（GameRecord.Compression 的序号）
+ * 12 int  保留
+ * 之后是若干数据块，每块：int 原始字节数，int 存储字节数，int 对局数，然后是存储的数据
+ */
+public class GameRecordWriter implements AutoCloseable {
+    public static final int MAGIC = 0x52475A45; // "EZGR"
+    public static final int VERSION = 1;
+    public static final int FILE_HEADER_BYTES = 16;
+    public static final int BLOCK_HEADER_BYTES = 12;
+    public static final int DEFAULT_BLOCK_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final GameRecord.Compression compression;
+    private final ByteBuffer block;
+    private final ByteBuffer compressed;
+    private final ByteBuffer blockHeader = ByteBuffer.allocateDirect(BLOCK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    private int blockRecords;
+    private long records;
+    private long bytesWritten;
+
+    private GameRecordWriter(FileChannel channel, GameRecord.Compression compression, int blockBytes) {
+        if (blockBytes < GameRecord.HEADER_BYTES + GameRecord.MAX_PLIES) {
+            throw new IllegalArgumentException("数据块太小: " + blockBytes);
+        }
+        this.channel = channel;
+        this.compression = compression;
+        block = ByteBuffer.allocateDirect(blockBytes).order(ByteOrder.LITTLE_ENDIAN);
+        compressed = compression == GameRecord.Compression.NONE ? null
+                : ByteBuffer.allocateDirect(BlockCodec.bound(compression, blockBytes));
+    }
+
+    public static GameRecordWriter open(Path path, GameRecord.Compression compression) throws IOException {
+        return open(path, compression, DEFAULT_BLOCK_BYTES);
+    }
+
+    /**
+     * 打开记录文件，文件已存在时在末尾追加，此时压缩方式必须和文件一致
+     */
+    public static GameRecordWriter open(Path path, GameRecord.Compression compression, int blockBytes) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (channel.size() == 0) {
+                header.putInt(MAGIC).putInt(VERSION).putInt(compression.ordinal()).putInt(0).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } else {
+                GameRecord.Compression existing = GameRecordReader.readHeader(channel, path);
+                if (existing != compression) {
+                    throw new IOException("记录文件 " + path + " 使用的压缩方式是 " + existing + "，不是 " + compression);
+                }
+                channel.position(channel.size());
+            }
+            return new GameRecordWriter(channel, compression, blockBytes);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 追加一局
+     */
+    public synchronized void write(GameRecord record) throws IOException {
+        if (block.remaining() < record.encodedBytes()) {
+            flush();
+        }
+        int winner = record.winner();
+        block.putLong(record.seed())
+                .putShort((short) record.plyCount())
+                .put((byte) (winner == GameState.NONE ? GameRecord.UNFINISHED : winner))
+                .put(record.plies(), 0, record.plyCount());
+        blockRecords++;
+        records++;
+    }
+
+    /**
+     * 把当前数据块写入文件
+     */
+    public synchronized void flush() throws IOException {
+        if (blockRecords == 0) {
+            return;
+        }
+        block.flip();
+        int rawBytes = block.remaining();
+        ByteBuffer payload = block;
+        if (compressed != null) {
+            compressed.clear();
+            int size = BlockCodec.compress(compression, block, compressed);
+            compressed.limit(size);
+            payload = compressed;
+        }
+        blockHeader.clear();
+        blockHeader.putInt(rawBytes).putInt(payload.remaining()).putInt(blockRecords).flip();
+        ByteBuffer[] buffers = {blockHeader, payload};
+        while (payload.hasRemaining()) {
+            bytesWritten += channel.write(buffers);
+        }
+        block.clear();
+        blockRecords = 0;
+    }
+
+    public GameRecord.Compression compression() {
+        return compression;
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    /**
+     * 已写入文件的字节数，不含文件头和还在内存中的数据块
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package com.codewithmosh;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多局对弈服务器，同时托管很多互相独立的对局
+ *
+ * 文本协议，每行一条命令，每条命令回复一行：
+ * NEW                  新建一局，回复 "NEW 编号"
+ * ROLL 编号            为走棋方掷骰子，见 GameSession.roll
+ * MOVE 编号 棋子 方向   走棋，棋子为 1-6，方向为 0-2，见 GameSession.move
+ * STATE 编号           查询局面
+ * QUIT 编号            结束并删除一局
+ * WATCH 编号           观战，见 watch，对局结束前这个连接不再接受命令
+ * WATCHERS 编号        查询观战者，回复 "WATCHERS 人数 最大落后步数 落后/快照次数..."
+ * HINT 编号            查询局面库中的分析结果，见 GameSession.hint，需要用 --store 指定局面库
+ * METRICS              回复 "METRICS 指标; 指标; ..."，内容同 Metrics.report
+ * BYE                  断开连接
+ * 出错时回复 "ERR 原因"。除了 WATCH，带编号的命令只能用于本连接 NEW 出来的对局；连接断开时删除它创建的所有对局
+ *
+ * 每个连接一个线程：运行在支持虚拟线程的 JDK 上时用虚拟线程，否则用缓存线程池
+ *
+ * 用法：GameServer --port 7777 --shards 64 --max-sessions 100000 [--store 局面库文件]
+ */
+public class GameServer implements AutoCloseable {
+    private static final long WATCH_POLL_MILLIS = 1000;
+    private static final Metrics.Histogram COMMAND_LATENCY = Metrics.global().histogram("server.command");
+
+    private final SessionRegistry sessions;
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicLong commands = new AtomicLong();
+    private volatile PositionStore store; // 可以为 null
+    private volatile boolean closed;
+
+    public GameServer(String host, int port, int shards, int maxSessions) throws IOException {
+        sessions = new SessionRegistry(shards, maxSessions);
+        serverSocket = new ServerSocket(port, 4096, InetAddress.getByName(host));
+        connections = newConnectionExecutor("einstein-connection");
+        acceptor = new Thread(this::acceptLoop, "einstein-acceptor");
+        acceptor.start();
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 7777;
+        int shards = 64;
+        int maxSessions = 100_000;
+        String storePath = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[i + 1];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--shards":
+                    shards = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--max-sessions":
+                    maxSessions = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--store":
+                    storePath = args[i + 1];
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        GameServer server = new GameServer(host, port, shards, maxSessions);
+        if (storePath != null) {
+            // 只读打开，分析任务可以同时写入
+            server.setPositionStore(new LmdbPositionStore(Paths.get(storePath), LmdbPositionStore.DEFAULT_MAP_SIZE, true));
+        }
+        System.out.println("服务器已启动: " + host + ":" + server.getPort() + "，分片数 " + server.sessions.shardCount()
+                + "，" + (hasVirtualThreads() ? "虚拟线程" : "平台线程"));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        while (!server.closed) {
+            Thread.sleep(10_000);
+            System.out.println("连接 " + server.getOpenConnections() + "，对局 " + server.getSessionCount()
+                    + "，命令 " + server.getCommands());
+            System.out.print(Metrics.global().report());
+        }
+    }
+
+    /**
+     * 每个任务一个线程的执行器：有虚拟线程时用虚拟线程（通过反射调用，在 JDK 17 上也能编译运行），
+     * 否则用缓存线程池的守护线程
+     */
+    static ExecutorService newConnectionExecutor(String name) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, name + "-" + counter.incrementAndGet(), 256 * 1024);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    static boolean hasVirtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                connections.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("接受连接失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        openConnections.incrementAndGet();
+        List<Long> owned = new ArrayList<>();
+        StringBuilder out = new StringBuilder(64);
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedOutputStream output = new BufferedOutputStream(socket.getOutputStream());
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                out.setLength(0);
+                if (line.startsWith("WATCH ")) {
+                    watch(line, out, writer, output);
+                    commands.incrementAndGet();
+                    continue;
+                }
+                long start = System.nanoTime();
+                boolean keepOpen = handle(line, owned, out);
+                COMMAND_LATENCY.record(System.nanoTime() - start);
+                out.append('\n');
+                writer.append(out);
+                writer.flush();
+                commands.incrementAndGet();
+                if (!keepOpen) {
+                    break;
+                }
+            }
+        } catch (SocketException e) {
+            // 客户端断开或服务器关闭
+        } catch (IOException e) {
+            System.err.println("连接出错: " + e.getMessage());
+        } finally {
+            for (long id : owned) {
+                sessions.remove(id);
+            }
+            sockets.remove(socket);
+            openConnections.decrementAndGet();
+        }
+    }
+
+    /**
+     * 处理一条命令，返回是否保持连接
+     */
+    private boolean handle(String line, List<Long> owned, StringBuilder out) {
+        String[] parts = line.trim().split(" ");
+        String command = parts[0];
+        try {
+            switch (command) {
+                case "NEW": {
+                    GameSession session = sessions.create();
+                    if (session == null) {
+                        out.append("ERR 对局数已满");
+                    } else {
+                        owned.add(session.id());
+                        out.append("NEW ").append(session.id());
+                    }
+                    return true;
+                }
+                case "ROLL":
+                    session(parts, 2, owned, out).ifPresent(session -> session.roll(out));
+                    return true;
+                case "MOVE": {
+                    GameSession session = session(parts, 4, owned, out).orElse(null);
+                    if (session != null) {
+                        session.move(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), out);
+                    }
+                    return true;
+                }
+                case "STATE":
+                    session(parts, 2, owned, out).ifPresent(session -> session.describe(out));
+                    return true;
+                case "QUIT": {
+                    if (parts.length != 2) {
+                        out.append("ERR 参数个数不对");
+                    } else {
+                        long id = Long.parseLong(parts[1]);
+                        if (!owned.remove(Long.valueOf(id))) {
+                            out.append("ERR 没有这一局"); // 别的连接的对局不能删
+                        } else {
+                            out.append(sessions.remove(id) ? "BYE " + id : "ERR 没有这一局");
+                        }
+                    }
+                    return true;
+                }
+                case "WATCHERS":
+                    session(parts, 2, owned, out).ifPresent(session -> describeWatchers(session.feed(), out));
+                    return true;
+                case "HINT": {
+                    PositionStore current = store;
+                    if (current == null) {
+                        out.append("ERR 没有局面库");
+                    } else {
+                        session(parts, 2, owned, out).ifPresent(session -> session.hint(current, new PositionStore.Entry(), out));
+                    }
+                    return true;
+                }
+                case "METRICS": {
+                    out.append("METRICS ");
+                    int start = out.length();
+                    Metrics.global().report(out);
+                    for (int i = out.length() - 1; i >= start; i--) {
+                        if (out.charAt(i) == '\n') {
+                            out.replace(i, i + 1, i == out.length() - 1 ? "" : "; ");
+                        }
+                    }
+                    return true;
+                }
+                case "BYE":
+                    out.append("BYE");
+                    return false;
+                default:
+                    out.append("ERR 未知命令");
+                    return true;
+            }
+        } catch (NumberFormatException e) {
+            out.setLength(0);
+            out.append("ERR 参数不是数字");
+            return true;
+        }
+    }
+
+    /**
+     * 观战一局，持续推送直到对局结束或被删除：
+     * "SNAP 序号 走棋方 步数 红方6个格子 蓝方6个格子"  开始观战或落后太多时发送的局面，序号为已走的步数
+     * "D 序号 增量..."                              从第 序号 步开始的若干步，每步是 6 位十六进制的 PlyDelta
+     * "END"                                         对局结束
+     * 落后时多步合并成一行，一次写出。增量部分直接写 SpectatorFeed 里编码好的共享文本，
+     * 不经过 writer；writer 每次写完都会 flush 到 output，两者不会交错
+     */
+    private void watch(String line, StringBuilder out, BufferedWriter writer, OutputStream output) throws IOException {
+        String[] parts = line.trim().split(" ");
+        GameSession session;
+        try {
+            session = session(parts, 2, null, out).orElse(null); // 任何连接都可以观战
+        } catch (NumberFormatException e) {
+            out.setLength(0);
+            out.append("ERR 参数不是数字");
+            session = null;
+        }
+        if (session == null) {
+            writer.append(out).append('\n');
+            writer.flush();
+            return;
+        }
+        SpectatorFeed.Subscriber subscriber = session.feed().subscribe();
+        try {
+            // 先强制发一次快照，观战者从当前局面开始
+            boolean first = true;
+            while (!closed) {
+                SpectatorFeed.Batch batch = first ? subscriber.snapshot() : subscriber.poll(WATCH_POLL_MILLIS);
+                first = false;
+                out.setLength(0);
+                switch (batch.kind()) {
+                    case SpectatorFeed.Batch.NONE:
+                        continue;
+                    case SpectatorFeed.Batch.SNAPSHOT:
+                        out.append("SNAP ").append(batch.sequence()).append(' ')
+                                .append(batch.sideToMove() == GameState.RED ? 'R' : 'B').append(' ').append(batch.ply());
+                        for (int i = 0; i < 2 * GameState.PIECES; i++) {
+                            out.append(' ').append(batch.cell(i));
+                        }
+                        break;
+                    case SpectatorFeed.Batch.DELTAS:
+                        out.append("D ").append(batch.sequence());
+                        for (int i = 0; i < out.length(); i++) {
+                            output.write(out.charAt(i));
+                        }
+                        batch.writeDeltas(output);
+                        output.write('\n');
+                        output.flush();
+                        continue;
+                    default:
+                        writer.append("END\n");
+                        writer.flush();
+                        return;
+                }
+                writer.append(out).append('\n');
+                writer.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            subscriber.unsubscribe();
+        }
+    }
+
+    private static void describeWatchers(SpectatorFeed feed, StringBuilder out) {
+        List<SpectatorFeed.Subscriber> subscribers = feed.getSubscribers();
+        out.append("WATCHERS ").append(subscribers.size()).append(' ').append(feed.getMaxLag());
+        for (SpectatorFeed.Subscriber subscriber : subscribers) {
+            out.append(' ').append(subscriber.getLag()).append('/').append(subscriber.getSnapshots());
+        }
+    }
+
+    /**
+     * 按编号找对局，owned 不为 null 时只找这个连接创建的对局
+     */
+    private Optional<GameSession> session(String[] parts, int expected, List<Long> owned, StringBuilder out) {
+        if (parts.length != expected) {
+            out.append("ERR 参数个数不对");
+            return Optional.empty();
+        }
+        long id = Long.parseLong(parts[1]);
+        GameSession session = owned == null || owned.contains(id) ? sessions.get(id) : null;
+        if (session == null) {
+            out.append("ERR 没有这一局");
+        }
+        return Optional.ofNullable(session);
+    }
+
+    /**
+     * 设置供 HINT 查询的局面库，关闭服务器时一起关闭
+     */
+    public void setPositionStore(PositionStore store) {
+        this.store = store;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public long getCommands() {
+        return commands.get();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // 已经关闭
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // 已经关闭
+            }
+        }
+        connections.shutdown();
+        if (store != null) {
+            store.close();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.codewithmosh;
+
+/**
+ * 服务器上的一局棋
+ *
+ * 骰子只在服务器上掷，客户端只能在掷出的点数允许的着法中选择；
+ * 骰子种子在对局结束时才公开，可以用来复盘核对。
+ * 方法都是同步的，同一局可以被多个连接访问，回复直接写进调用者的 StringBuilder，不产生中间对象。
+ * 每走一步（包括停一手）都编码成 PlyDelta 发布到观战广播
+ */
+public class GameSession {
+    private final long id;
+    private final GameState state = new GameState();
+    private final Dice dice;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final SpectatorFeed feed = new SpectatorFeed();
+    private int roll; // 当前掷出的点数，还没掷时为 0
+    private int moveCount;
+    private long rolledAt; // 掷骰的时间（纳秒）
+
+    GameSession(long id, long seed) {
+        this.id = id;
+        this.dice = new Dice(seed);
+    }
+
+    public long id() {
+        return id;
+    }
+
+    /**
+     * 为当前走棋方掷骰子，回复 "ROLL 点数 着法..."，着法写成 棋子编号(1-6) 和方向(0-2) 两位数字；
+     * 没有着法时自动停一手，回复 "PASS 点数"。已经掷过时重复上一次的结果，不会重掷
+     */
+    public synchronized void roll(StringBuilder out) {
+        if (state.isGameOver()) {
+            out.append("ERR 对局已结束");
+            return;
+        }
+        if (roll == 0) {
+            roll = dice.roll();
+            rolledAt = System.nanoTime();
+            moveCount = MoveGenerator.generate(state, roll, moves);
+            GameEvents.diceRolled(state.sideToMove(), roll, moveCount);
+            if (moveCount == 0) {
+                feed.publish(PlyDelta.ofPass(state.sideToMove(), roll));
+                state.pass();
+                out.append("PASS ").append(roll);
+                roll = 0;
+                return;
+            }
+        }
+        out.append("ROLL ").append(roll);
+        for (int i = 0; i < moveCount; i++) {
+            out.append(' ').append(Move.piece(moves[i]) + 1).append(Move.direction(moves[i]));
+        }
+    }
+
+    /**
+     * 走棋，回复 "OK 起点 终点 吃子 状态"：格子为 0-24，吃子为 - 或 R3 / B2 这样的棋子，
+     * 状态为 PLAY，或者 "WIN RED 种子" / "WIN BLUE 种子"
+     *
+     * @param piece 棋子编号 1-6
+     */
+    public synchronized void move(int piece, int direction, StringBuilder out) {
+        if (state.isGameOver()) {
+            out.append("ERR 对局已结束");
+            return;
+        }
+        if (roll == 0) {
+            out.append("ERR 请先掷骰子");
+            return;
+        }
+        int move = Move.NONE;
+        for (int i = 0; i < moveCount; i++) {
+            if (Move.piece(moves[i]) == piece - 1 && Move.direction(moves[i]) == direction) {
+                move = moves[i];
+                break;
+            }
+        }
+        if (move == Move.NONE) {
+            out.append("ERR 不合法的着法");
+            return;
+        }
+        move = state.makeMove(move);
+        GameEvents.moveApplied(move, state.ply(), System.nanoTime() - rolledAt);
+        feed.publish(PlyDelta.ofMove(move, roll));
+        if (state.isGameOver()) {
+            feed.finish();
+        }
+        roll = 0;
+        out.append("OK ").append(Move.from(move)).append(' ').append(Move.to(move)).append(' ');
+        if (Move.isCapture(move)) {
+            out.append(Move.capturedSide(move) == GameState.RED ? 'R' : 'B').append(Move.capturedPiece(move) + 1);
+        } else {
+            out.append('-');
+        }
+        appendStatus(out);
+    }
+
+    /**
+     * 回复 "STATE 走棋方 步数 点数 红方6个格子 蓝方6个格子 状态"，被吃掉的棋子格子为 -1
+     */
+    public synchronized void describe(StringBuilder out) {
+        out.append("STATE ").append(state.isRedTurn() ? 'R' : 'B').append(' ').append(state.ply()).append(' ').append(roll);
+        for (int side = GameState.RED; side <= GameState.BLUE; side++) {
+            for (int piece = 0; piece < GameState.PIECES; piece++) {
+                out.append(' ').append(state.pieceCell(side, piece));
+            }
+        }
+        appendStatus(out);
+    }
+
+    private void appendStatus(StringBuilder out) {
+        if (state.isGameOver()) {
+            out.append(" WIN ").append(state.winner() == GameState.RED ? "RED" : "BLUE").append(' ').append(dice.seed());
+        } else {
+            out.append(" PLAY");
+        }
+    }
+
+    /**
+     * 查询局面库，回复 "HINT 局面分 深度 着法"：已经掷过骰子时着法为 棋子编号(1-6) 和方向(0-2)，否则为 -；
+     * 库中没有这个局面时回复 "HINT -"
+     */
+    public synchronized void hint(PositionStore store, PositionStore.Entry entry, StringBuilder out) {
+        if (!store.lookup(state, entry)) {
+            out.append("HINT -");
+            return;
+        }
+        out.append("HINT ").append(entry.value()).append(' ').append(entry.depth()).append(' ');
+        int move = roll == 0 ? Move.NONE : entry.move(state, roll);
+        if (move == Move.NONE) {
+            out.append('-');
+        } else {
+            out.append(Move.piece(move) + 1).append(Move.direction(move));
+        }
+    }
+
+    /**
+     * 这一局的观战广播
+     */
+    public SpectatorFeed feed() {
+        return feed;
+    }
+
+    /**
+     * 对局被删除，通知观战者结束
+     */
+    void close() {
+        feed.finish();
+    }
+
+    public synchronized boolean isGameOver() {
+        return state.isGameOver();
+    }
+}
@@ -0,0 +1,104 @@
+package com.codewithmosh;
+
+/**
+ * 逻辑线程发布给渲染线程的不可变快照
+ *
+ * 每次状态变化时逻辑线程新建一个快照，通过 volatile 引用发布，渲染线程只读它，不需要加锁；
+ * 快照里的 GameState 是复制出来的，发布后谁都不能再修改
+ */
+public final class GameSnapshot {
+    private final long version;
+    private final GameState state;
+    private final int dice;
+    private final int selectedPiece;
+    private final int lastMove;
+    private final long moveCount;
+    private final int aiSide;
+    private final boolean aiThinking;
+    private final long aiAnswerNanos;
+    private final long ponderHits;
+    private final long ponderMisses;
+
+    GameSnapshot(long version, GameState state, int dice, int selectedPiece, int lastMove, long moveCount,
+                 int aiSide, boolean aiThinking, long aiAnswerNanos, long ponderHits, long ponderMisses) {
+        this.version = version;
+        this.state = state;
+        this.dice = dice;
+        this.selectedPiece = selectedPiece;
+        this.lastMove = lastMove;
+        this.moveCount = moveCount;
+        this.aiSide = aiSide;
+        this.aiThinking = aiThinking;
+        this.aiAnswerNanos = aiAnswerNanos;
+        this.ponderHits = ponderHits;
+        this.ponderMisses = ponderMisses;
+    }
+
+    /**
+     * 每发布一次加一
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * 局面，只读
+     */
+    public GameState state() {
+        return state;
+    }
+
+    /**
+     * 当前的点数，还没掷骰时为 0
+     */
+    public int dice() {
+        return dice;
+    }
+
+    /**
+     * 走棋方选中的棋子，还没掷骰时为 -1
+     */
+    public int selectedPiece() {
+        return selectedPiece;
+    }
+
+    /**
+     * 最近走的一步，还没走过时为 Move.NONE
+     */
+    public int lastMove() {
+        return lastMove;
+    }
+
+    /**
+     * 本局走过的步数（不含停一手），变化时渲染线程开始播放 lastMove 的动画
+     */
+    public long moveCount() {
+        return moveCount;
+    }
+
+    public int aiSide() {
+        return aiSide;
+    }
+
+    /**
+     * 电脑正在搜索
+     */
+    public boolean aiThinking() {
+        return aiThinking;
+    }
+
+    /**
+     * 电脑上一步的用时，还没走过时为 -1
+     */
+    public long aiAnswerNanos() {
+        return aiAnswerNanos;
+    }
+
+    public long ponderHits() {
+        return ponderHits;
+    }
+
+    public long ponderMisses() {
+        return ponderMisses;
+    }
+}
@@ -0,0 +1,410 @@
+package com.codewithmosh;
+
+/**
+ * 爱恩斯坦棋的局面
+ * 不依赖任何图形库，可以在服务器上大批量模拟对局
+ *
+ * 格子编号为 y * 边长 + x，每方的占位用一个 long 位图表示，
+ * 每个棋子的位置存放在 byte 数组里（-1 表示已被吃掉）
+ *
+ * 棋盘大小和棋子数由 Variant 决定，默认是标准棋盘；
+ * 下面的静态常量和静态方法都是标准棋盘的，其他变体用 variant() 上的同名方法
+ */
+public class GameState {
+    public static final int SIZE = 5; // 标准棋盘大小
+    public static final int CELLS = SIZE * SIZE; // 格子数量
+    public static final int PIECES = 6; // 每方棋子数量
+    public static final int ALL_ALIVE = (1 << PIECES) - 1;
+
+    public static final int RED = 0;
+    public static final int BLUE = 1;
+    public static final int NONE = -1;
+
+    public static final int RED_GOAL = CELLS - 1; // 红方目标：右下角
+    public static final int BLUE_GOAL = 0; // 蓝方目标：左上角
+
+    private Variant variant;
+    private int pieces; // 每方棋子数，即 variant.pieces
+    private long redBits; // 红方占位
+    private long blueBits; // 蓝方占位
+    private byte[] positions; // [走棋方*棋子数+编号] -> 格子
+    private int redAlive; // 红方存活棋子掩码
+    private int blueAlive; // 蓝方存活棋子掩码
+    private int sideToMove;
+    private int winner;
+    private int ply;
+    private long hash; // Zobrist 哈希，走棋时增量更新
+    private long version; // 每次修改局面加一，界面据此判断是否需要重画
+
+    /**
+     * 构造函数，创建标准棋盘的初始局面
+     */
+    public GameState() {
+        this(Variant.STANDARD);
+    }
+
+    /**
+     * 创建指定变体的初始局面
+     */
+    public GameState(Variant variant) {
+        setVariant(variant);
+        reset();
+    }
+
+    private void setVariant(Variant variant) {
+        this.variant = variant;
+        pieces = variant.pieces;
+        positions = new byte[2 * pieces];
+    }
+
+    public Variant variant() {
+        return variant;
+    }
+
+    /**
+     * 恢复到开局局面，供对局之间复用
+     */
+    public void reset() {
+        redBits = 0;
+        blueBits = 0;
+        for (int i = 0; i < 2 * pieces; i++) {
+            positions[i] = (byte) variant.start[i];
+        }
+        for (int i = 0; i < pieces; i++) {
+            redBits |= 1L << variant.start[i];
+            blueBits |= 1L << variant.start[pieces + i];
+        }
+        redAlive = variant.allAlive;
+        blueAlive = variant.allAlive;
+        sideToMove = RED;
+        winner = NONE;
+        ply = 0;
+        hash = Zobrist.compute(this);
+        version++;
+    }
+
+    /**
+     * 摆出任意局面，格子为 -1 的棋子视为已被吃掉
+     *
+     * @param redCells  按编号存放的红方棋子格子
+     * @param blueCells 按编号存放的蓝方棋子格子
+     */
+    public void setPosition(int[] redCells, int[] blueCells, int sideToMove) {
+        redBits = 0;
+        blueBits = 0;
+        redAlive = 0;
+        blueAlive = 0;
+        winner = NONE;
+        for (int i = 0; i < pieces; i++) {
+            positions[i] = (byte) redCells[i];
+            positions[pieces + i] = (byte) blueCells[i];
+            if (redCells[i] >= 0) {
+                redBits |= 1L << redCells[i];
+                redAlive |= 1 << i;
+                if (redCells[i] == variant.goal(RED)) {
+                    winner = RED;
+                }
+            }
+            if (blueCells[i] >= 0) {
+                blueBits |= 1L << blueCells[i];
+                blueAlive |= 1 << i;
+                if (blueCells[i] == variant.goal(BLUE)) {
+                    winner = BLUE;
+                }
+            }
+        }
+        if ((redBits & blueBits) != 0 || Long.bitCount(redBits) != Integer.bitCount(redAlive)
+                || Long.bitCount(blueBits) != Integer.bitCount(blueAlive)) {
+            throw new IllegalArgumentException("两个棋子不能在同一个格子上");
+        }
+        if (winner == NONE && (redAlive == 0 || blueAlive == 0)) {
+            winner = redAlive == 0 ? BLUE : RED;
+        }
+        this.sideToMove = sideToMove;
+        ply = 0;
+        hash = Zobrist.compute(this);
+        version++;
+    }
+
+    /**
+     * 复制另一个局面的全部内容，包括变体
+     */
+    public void copyFrom(GameState other) {
+        if (other.variant != variant) {
+            setVariant(other.variant);
+        }
+        redBits = other.redBits;
+        blueBits = other.blueBits;
+        System.arraycopy(other.positions, 0, positions, 0, positions.length);
+        redAlive = other.redAlive;
+        blueAlive = other.blueAlive;
+        sideToMove = other.sideToMove;
+        winner = other.winner;
+        ply = other.ply;
+        hash = other.hash;
+        version++;
+    }
+
+    public GameState copy() {
+        GameState state = new GameState(variant);
+        state.copyFrom(this);
+        return state;
+    }
+
+    public static int cell(int x, int y) {
+        return y * SIZE + x;
+    }
+
+    public static int cellX(int cell) {
+        return cell % SIZE;
+    }
+
+    public static int cellY(int cell) {
+        return cell / SIZE;
+    }
+
+    public static String cellName(int cell) {
+        return "(" + cellX(cell) + ", " + cellY(cell) + ")";
+    }
+
+    public static int opponent(int side) {
+        return side ^ 1;
+    }
+
+    public static int goal(int side) {
+        return side == RED ? RED_GOAL : BLUE_GOAL;
+    }
+
+    /**
+     * 计算沿指定方向走一步后的格子，越界返回 -1
+     * 红方：0 右，1 下，2 右下；蓝方：0 左，1 上，2 左上
+     */
+    public static int target(int side, int from, int direction) {
+        return Variant.STANDARD.target(side, from, direction);
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public boolean isRedTurn() {
+        return sideToMove == RED;
+    }
+
+    /**
+     * 跳过当前一方的回合
+     */
+    public void pass() {
+        sideToMove ^= 1;
+        hash ^= Zobrist.SIDE_KEY;
+        ply++;
+        version++;
+    }
+
+    /**
+     * 撤销 pass
+     */
+    public void unpass() {
+        sideToMove ^= 1;
+        hash ^= Zobrist.SIDE_KEY;
+        ply--;
+        version++;
+    }
+
+    public int winner() {
+        return winner;
+    }
+
+    public boolean isGameOver() {
+        return winner != NONE;
+    }
+
+    public int ply() {
+        return ply;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * 修改计数，局面每变化一次（包括走棋后又悔棋）都会增加，版本不变说明局面没有被动过
+     */
+    public long version() {
+        return version;
+    }
+
+    public int aliveMask(int side) {
+        return side == RED ? redAlive : blueAlive;
+    }
+
+    public boolean isAlive(int side, int piece) {
+        return (aliveMask(side) & (1 << piece)) != 0;
+    }
+
+    public long occupancy(int side) {
+        return side == RED ? redBits : blueBits;
+    }
+
+    /**
+     * 棋子所在格子，已被吃掉返回 -1
+     */
+    public int pieceCell(int side, int piece) {
+        return positions[side * pieces + piece];
+    }
+
+    public int pieceX(int side, int piece) {
+        return variant.cellX(positions[side * pieces + piece]);
+    }
+
+    public int pieceY(int side, int piece) {
+        return variant.cellY(positions[side * pieces + piece]);
+    }
+
+    /**
+     * 查找格子上的棋子，返回走棋方*棋子数+编号，空格返回 -1
+     */
+    public int pieceAt(int cell) {
+        long bit = 1L << cell;
+        int side;
+        if ((redBits & bit) != 0) {
+            side = RED;
+        } else if ((blueBits & bit) != 0) {
+            side = BLUE;
+        } else {
+            return -1;
+        }
+        int base = side * pieces;
+        for (int i = 0; i < pieces; i++) {
+            if (positions[base + i] == cell) {
+                return base + i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 为当前走棋方构造着法，棋子已被吃掉或越界时返回 Move.NONE
+     */
+    public int move(int piece, int direction) {
+        int side = sideToMove;
+        int from = positions[side * pieces + piece];
+        if (from < 0) {
+            return Move.NONE;
+        }
+        int to = variant.targets[(side * variant.cells + from) * MoveGenerator.DIRECTIONS + direction];
+        if (to < 0) {
+            return Move.NONE;
+        }
+        return Move.of(side, piece, direction, from, to);
+    }
+
+    /**
+     * 走棋，返回带有吃子信息的着法，悔棋时原样传给 unmakeMove
+     * 目标格上的棋子无论敌我都会被吃掉
+     */
+    public int makeMove(int move) {
+        int side = Move.side(move);
+        int piece = Move.piece(move);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+
+        int captured = pieceAt(to);
+        if (captured >= 0) {
+            int capturedSide = captured < pieces ? RED : BLUE;
+            int capturedPiece = captured - capturedSide * pieces;
+            positions[captured] = -1;
+            if (capturedSide == RED) {
+                redBits &= ~toBit;
+                redAlive &= ~(1 << capturedPiece);
+            } else {
+                blueBits &= ~toBit;
+                blueAlive &= ~(1 << capturedPiece);
+            }
+            hash ^= variant.zobrist[captured * variant.cells + to];
+            move = Move.withCapture(move, capturedSide, capturedPiece);
+        }
+
+        int index = side * pieces + piece;
+        positions[index] = (byte) to;
+        long[] keys = variant.zobrist;
+        hash ^= keys[index * variant.cells + from] ^ keys[index * variant.cells + to] ^ Zobrist.SIDE_KEY;
+        if (side == RED) {
+            redBits = (redBits & ~fromBit) | toBit;
+        } else {
+            blueBits = (blueBits & ~fromBit) | toBit;
+        }
+
+        if (to == variant.goal(side) || aliveMask(opponent(side)) == 0) {
+            winner = side;
+        }
+        sideToMove = opponent(side);
+        ply++;
+        version++;
+        return move;
+    }
+
+    /**
+     * 撤销 makeMove 返回的着法
+     */
+    public void unmakeMove(int move) {
+        int side = Move.side(move);
+        int piece = Move.piece(move);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        long fromBit = 1L << from;
+        long toBit = 1L << to;
+
+        int index = side * pieces + piece;
+        positions[index] = (byte) from;
+        long[] keys = variant.zobrist;
+        hash ^= keys[index * variant.cells + from] ^ keys[index * variant.cells + to] ^ Zobrist.SIDE_KEY;
+        if (side == RED) {
+            redBits = (redBits & ~toBit) | fromBit;
+        } else {
+            blueBits = (blueBits & ~toBit) | fromBit;
+        }
+
+        if (Move.isCapture(move)) {
+            int capturedSide = Move.capturedSide(move);
+            int capturedPiece = Move.capturedPiece(move);
+            int capturedIndex = capturedSide * pieces + capturedPiece;
+            positions[capturedIndex] = (byte) to;
+            hash ^= keys[capturedIndex * variant.cells + to];
+            if (capturedSide == RED) {
+                redBits |= toBit;
+                redAlive |= 1 << capturedPiece;
+            } else {
+                blueBits |= toBit;
+                blueAlive |= 1 << capturedPiece;
+            }
+        }
+
+        winner = NONE;
+        sideToMove = side;
+        ply--;
+        version++;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < variant.size; y++) {
+            for (int x = 0; x < variant.size; x++) {
+                int p = pieceAt(variant.cell(x, y));
+                if (p < 0) {
+                    sb.append(" .");
+                } else {
+                    sb.append(p < pieces ? " R" : " B").append(p % pieces + 1);
+                    continue;
+                }
+                sb.append(' ');
+            }
+            sb.append('\n');
+        }
+        sb.append(sideToMove == RED ? "红方走棋" : "蓝方走棋");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,301 @@
+package com.codewithmosh;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
+
+/**
+ * OpenGL 3.3 核心模式的渲染后端
+ *
+ * 一个单位正方形的顶点缓冲被两个 VAO 共用：棋盘 VAO 的实例缓冲只上传一次，
+ * 棋子 VAO 的实例缓冲每帧先整体作废（orphan）再写入，避免等待上一帧的绘制，
+ * 每组实例一次 glDrawArraysInstanced 画完
+ * 文字用第二个着色器程序，从单通道的字形图集纹理取覆盖率作为透明度，同样每帧一次实例化绘制
+ */
+public class GlRenderBackend implements RenderBackend {
+    private static final String VERTEX_SHADER =
+            "#version 330 core\n" +
+                    "layout (location = 0) in vec2 corner;\n" +
+                    "layout (location = 1) in vec3 square;\n" + // 左上角 x、y 和边长（像素）
+                    "layout (location = 2) in vec3 color;\n" +
+                    "uniform vec2 viewport;\n" +
+                    "out vec3 vertexColor;\n" +
+                    "void main() {\n" +
+                    "    vec2 pixel = square.xy + corner * square.z;\n" +
+                    "    gl_Position = vec4(pixel.x / viewport.x * 2.0 - 1.0, 1.0 - pixel.y / viewport.y * 2.0, 0.0, 1.0);\n" +
+                    "    vertexColor = color;\n" +
+                    "}";
+
+    private static final String FRAGMENT_SHADER =
+            "#version 330 core\n" +
+                    "in vec3 vertexColor;\n" +
+                    "out vec4 fragColor;\n" +
+                    "void main() {\n" +
+                    "    fragColor = vec4(vertexColor, 1.0);\n" +
+                    "}";
+
+    private static final String GLYPH_VERTEX_SHADER =
+            "#version 330 core\n" +
+                    "layout (location = 0) in vec2 corner;\n" +
+                    "layout (location = 1) in vec4 rect;\n" + // 左上角 x、y 和宽、高（像素）
+                    "layout (location = 2) in vec4 uv;\n" + // 图集中的 u0、v0、u1、v1
+                    "layout (location = 3) in vec3 color;\n" +
+                    "uniform vec2 viewport;\n" +
+                    "out vec2 texCoord;\n" +
+                    "out vec3 vertexColor;\n" +
+                    "void main() {\n" +
+                    "    vec2 pixel = rect.xy + corner * rect.zw;\n" +
+                    "    gl_Position = vec4(pixel.x / viewport.x * 2.0 - 1.0, 1.0 - pixel.y / viewport.y * 2.0, 0.0, 1.0);\n" +
+                    "    texCoord = mix(uv.xy, uv.zw, corner);\n" +
+                    "    vertexColor = color;\n" +
+                    "}";
+
+    private static final String GLYPH_FRAGMENT_SHADER =
+            "#version 330 core\n" +
+                    "in vec2 texCoord;\n" +
+                    "in vec3 vertexColor;\n" +
+                    "uniform sampler2D atlas;\n" +
+                    "out vec4 fragColor;\n" +
+                    "void main() {\n" +
+                    "    fragColor = vec4(vertexColor, texture(atlas, texCoord).r);\n" +
+                    "}";
+
+    private final int shaderProgram;
+    private final int quadVbo;
+    private final int boardVao;
+    private final int boardVbo;
+    private final int pieceVao;
+    private final int pieceVbo;
+    private final long pieceBufferBytes;
+    private final int glyphProgram;
+    private final int glyphVao;
+    private final int glyphVbo;
+    private final int maxGlyphs;
+    private final long glyphBufferBytes;
+    private int atlasTexture;
+    private int boardCount;
+
+    /**
+     * 需要当前线程有 OpenGL 3.3 上下文
+     *
+     * @param width        逻辑宽度（像素），实例坐标以此为准
+     * @param height       逻辑高度（像素）
+     * @param maxInstances 单次 drawInstances 的最大实例数
+     */
+    public GlRenderBackend(int width, int height, int maxInstances) {
+        this(width, height, maxInstances, 0);
+    }
+
+    /**
+     * @param maxGlyphs 单次 drawGlyphs 的最大字形数，多出的不画
+     */
+    public GlRenderBackend(int width, int height, int maxInstances, int maxGlyphs) {
+        shaderProgram = linkProgram(compileShader(GL_VERTEX_SHADER, VERTEX_SHADER),
+                compileShader(GL_FRAGMENT_SHADER, FRAGMENT_SHADER));
+        glUseProgram(shaderProgram);
+        glUniform2f(glGetUniformLocation(shaderProgram, "viewport"), width, height);
+        glUseProgram(0);
+
+        // 单位正方形，按三角形带的顺序
+        quadVbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, quadVbo);
+        glBufferData(GL_ARRAY_BUFFER, new float[]{0, 0, 1, 0, 0, 1, 1, 1}, GL_STATIC_DRAW);
+
+        boardVbo = glGenBuffers();
+        boardVao = createVao(boardVbo);
+
+        pieceBufferBytes = (long) maxInstances * INSTANCE_FLOATS * Float.BYTES;
+        pieceVbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, pieceVbo);
+        glBufferData(GL_ARRAY_BUFFER, pieceBufferBytes, GL_STREAM_DRAW);
+        pieceVao = createVao(pieceVbo);
+
+        glyphProgram = linkProgram(compileShader(GL_VERTEX_SHADER, GLYPH_VERTEX_SHADER),
+                compileShader(GL_FRAGMENT_SHADER, GLYPH_FRAGMENT_SHADER));
+        glUseProgram(glyphProgram);
+        glUniform2f(glGetUniformLocation(glyphProgram, "viewport"), width, height);
+        glUniform1i(glGetUniformLocation(glyphProgram, "atlas"), 0);
+        glUseProgram(0);
+
+        this.maxGlyphs = maxGlyphs;
+        glyphBufferBytes = (long) Math.max(1, maxGlyphs) * GLYPH_FLOATS * Float.BYTES;
+        glyphVbo = glGenBuffers();
+        glBindBuffer(GL_ARRAY_BUFFER, glyphVbo);
+        glBufferData(GL_ARRAY_BUFFER, glyphBufferBytes, GL_STREAM_DRAW);
+        glyphVao = createGlyphVao(glyphVbo);
+
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+    }
+
+    private static int compileShader(int type, String source) {
+        int shader = glCreateShader(type);
+        glShaderSource(shader, source);
+        glCompileShader(shader);
+        if (glGetShaderi(shader, GL_COMPILE_STATUS) == GL_FALSE) {
+            String log = glGetShaderInfoLog(shader);
+            glDeleteShader(shader);
+            throw new IllegalStateException("着色器编译失败: " + log);
+        }
+        return shader;
+    }
+
+    private static int linkProgram(int vertexShader, int fragmentShader) {
+        int program = glCreateProgram();
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glLinkProgram(program);
+        // 删除着色器，它们已经链接到程序中，不再需要
+        glDeleteShader(vertexShader);
+        glDeleteShader(fragmentShader);
+        if (glGetProgrami(program, GL_LINK_STATUS) == GL_FALSE) {
+            String log = glGetProgramInfoLog(program);
+            glDeleteProgram(program);
+            throw new IllegalStateException("着色器链接失败: " + log);
+        }
+        return program;
+    }
+
+    /**
+     * 正方形顶点每个顶点前进一次，实例属性每个实例前进一次
+     */
+    private int createVao(int instanceVbo) {
+        int vao = glGenVertexArrays();
+        glBindVertexArray(vao);
+
+        glBindBuffer(GL_ARRAY_BUFFER, quadVbo);
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, 2 * Float.BYTES, 0);
+        glEnableVertexAttribArray(0);
+
+        int stride = INSTANCE_FLOATS * Float.BYTES;
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glVertexAttribPointer(1, 3, GL_FLOAT, false, stride, 0);
+        glEnableVertexAttribArray(1);
+        glVertexAttribDivisor(1, 1);
+        glVertexAttribPointer(2, 3, GL_FLOAT, false, stride, 3L * Float.BYTES);
+        glEnableVertexAttribArray(2);
+        glVertexAttribDivisor(2, 1);
+
+        glBindVertexArray(0);
+        return vao;
+    }
+
+    /**
+     * 字形的四个实例属性：位置和大小、纹理坐标、颜色
+     */
+    private int createGlyphVao(int instanceVbo) {
+        int vao = glGenVertexArrays();
+        glBindVertexArray(vao);
+
+        glBindBuffer(GL_ARRAY_BUFFER, quadVbo);
+        glVertexAttribPointer(0, 2, GL_FLOAT, false, 2 * Float.BYTES, 0);
+        glEnableVertexAttribArray(0);
+
+        int stride = GLYPH_FLOATS * Float.BYTES;
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glVertexAttribPointer(1, 4, GL_FLOAT, false, stride, 0);
+        glVertexAttribPointer(2, 4, GL_FLOAT, false, stride, 4L * Float.BYTES);
+        glVertexAttribPointer(3, 3, GL_FLOAT, false, stride, 8L * Float.BYTES);
+        for (int attribute = 1; attribute <= 3; attribute++) {
+            glEnableVertexAttribArray(attribute);
+            glVertexAttribDivisor(attribute, 1);
+        }
+
+        glBindVertexArray(0);
+        return vao;
+    }
+
+    @Override
+    public void setBoard(FloatBuffer instances, int count) {
+        glBindBuffer(GL_ARRAY_BUFFER, boardVbo);
+        glBufferData(GL_ARRAY_BUFFER, instances, GL_STATIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        boardCount = count;
+    }
+
+    @Override
+    public void beginFrame() {
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        glUseProgram(shaderProgram);
+    }
+
+    @Override
+    public void drawBoard() {
+        glBindVertexArray(boardVao);
+        glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, boardCount);
+    }
+
+    @Override
+    public void drawInstances(FloatBuffer instances, int count) {
+        if (count == 0) {
+            return;
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, pieceVbo);
+        glBufferData(GL_ARRAY_BUFFER, pieceBufferBytes, GL_STREAM_DRAW); // 作废旧数据，驱动会换一块新内存
+        glBufferSubData(GL_ARRAY_BUFFER, 0, instances);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(pieceVao);
+        glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, count);
+    }
+
+    @Override
+    public void setGlyphAtlas(ByteBuffer alpha, int width, int height) {
+        if (atlasTexture == 0) {
+            atlasTexture = glGenTextures();
+        }
+        glBindTexture(GL_TEXTURE_2D, atlasTexture);
+        glPixelStorei(GL_UNPACK_ALIGNMENT, 1); // 每行的字节数不一定是 4 的倍数
+        glTexImage2D(GL_TEXTURE_2D, 0, GL_R8, width, height, 0, GL_RED, GL_UNSIGNED_BYTE, alpha);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_CLAMP_TO_EDGE);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_CLAMP_TO_EDGE);
+        glBindTexture(GL_TEXTURE_2D, 0);
+    }
+
+    @Override
+    public void drawGlyphs(FloatBuffer glyphs, int count) {
+        count = Math.min(count, maxGlyphs);
+        if (count == 0 || atlasTexture == 0) {
+            return;
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, glyphVbo);
+        glBufferData(GL_ARRAY_BUFFER, glyphBufferBytes, GL_STREAM_DRAW); // 与棋子一样先作废旧数据
+        glBufferSubData(GL_ARRAY_BUFFER, 0, glyphs.limit(count * GLYPH_FLOATS));
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glUseProgram(glyphProgram);
+        glBindTexture(GL_TEXTURE_2D, atlasTexture);
+        glBindVertexArray(glyphVao);
+        glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, count);
+        glBindTexture(GL_TEXTURE_2D, 0);
+        glUseProgram(shaderProgram);
+    }
+
+    @Override
+    public void endFrame() {
+        glBindVertexArray(0);
+        glUseProgram(0);
+    }
+
+    @Override
+    public void close() {
+        glDeleteVertexArrays(boardVao);
+        glDeleteVertexArrays(pieceVao);
+        glDeleteVertexArrays(glyphVao);
+        glDeleteBuffers(quadVbo);
+        glDeleteBuffers(boardVbo);
+        glDeleteBuffers(pieceVbo);
+        glDeleteBuffers(glyphVbo);
+        if (atlasTexture != 0) {
+            glDeleteTextures(atlasTexture);
+        }
+        glDeleteProgram(shaderProgram);
+        glDeleteProgram(glyphProgram);
+    }
+}
@@ -0,0 +1,50 @@
+package com.codewithmosh;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+/**
+ * GLFW 窗口，等待事件时线程在 glfwWaitEvents 里睡眠，不占用 CPU
+ */
+public class GlfwWindowSystem implements WindowSystem {
+    private final long window;
+
+    public GlfwWindowSystem(long window) {
+        this.window = window;
+    }
+
+    @Override
+    public boolean shouldClose() {
+        return glfwWindowShouldClose(window);
+    }
+
+    @Override
+    public void pollEvents() {
+        glfwPollEvents();
+    }
+
+    @Override
+    public void waitEvents(double timeoutSeconds) {
+        if (timeoutSeconds < 0) {
+            glfwWaitEvents();
+        } else if (timeoutSeconds == 0) {
+            glfwPollEvents();
+        } else {
+            glfwWaitEventsTimeout(timeoutSeconds);
+        }
+    }
+
+    @Override
+    public void swapBuffers() {
+        glfwSwapBuffers(window);
+    }
+
+    @Override
+    public void wakeUp() {
+        glfwPostEmptyEvent();
+    }
+
+    @Override
+    public double time() {
+        return glfwGetTime();
+    }
+}
@@ -0,0 +1,280 @@
+package com.codewithmosh;
+
+import org.lwjgl.stb.STBTTBakedChar;
+import org.lwjgl.stb.STBTTFontinfo;
+import org.lwjgl.system.MemoryStack;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static org.lwjgl.stb.STBTruetype.*;
+
+/**
+ * HUD 用的字形图集：可打印 ASCII 字符用 stb_truetype 烘焙到一张单通道位图里
+ *
+ * 烘焙后字形的位置和度量复制到 Java 数组，排版只读这些数组，不需要本地库和显卡；
+ * 图集连同度量写入缓存文件，文件头记下字体内容的 CRC 和字号，字体没变时以后启动直接读缓存，不再烘焙
+ */
+public final class GlyphAtlas {
+    public static final int MAGIC = 0x41475A45; // "EZGA"
+    public static final int VERSION = 1;
+    public static final char FIRST_CHAR = ' ';
+    public static final int GLYPHS = 95; // ' ' 到 '~'
+    public static final char FALLBACK = '?'; // 图集里没有的字符用它代替
+
+    private static final int HEADER_BYTES = 32;
+    private static final int GLYPH_FLOATS = 7; // 位图中的 x0、y0、x1、y1，相对基线的偏移 x、y，前进宽度
+    private static final int WIDTH = 512;
+    private static final int MAX_HEIGHT = 2048;
+
+    private final int width;
+    private final int height;
+    private final float pixelHeight;
+    private final float ascent; // 行顶到基线的距离（像素）
+    private final float lineHeight;
+    private final float[] glyphs;
+    private final ByteBuffer bitmap; // width * height 字节的直接缓冲，可以直接上传给显卡
+    private final int fontCrc;
+
+    GlyphAtlas(int width, int height, float pixelHeight, float ascent, float lineHeight, float[] glyphs,
+               ByteBuffer bitmap, int fontCrc) {
+        if (glyphs.length != GLYPHS * GLYPH_FLOATS || bitmap.capacity() != width * height) {
+            throw new IllegalArgumentException("图集数据大小不对");
+        }
+        this.width = width;
+        this.height = height;
+        this.pixelHeight = pixelHeight;
+        this.ascent = ascent;
+        this.lineHeight = lineHeight;
+        this.glyphs = glyphs;
+        this.bitmap = bitmap;
+        this.fontCrc = fontCrc;
+    }
+
+    /**
+     * 有缓存且字体和字号都没变时读缓存，否则烘焙并写入缓存；缓存写不进去只打印警告
+     */
+    public static GlyphAtlas loadOrBake(Path font, float pixelHeight, Path cache) throws IOException {
+        byte[] fontBytes = Files.readAllBytes(font);
+        int crc = crc(fontBytes);
+        if (Files.exists(cache)) {
+            try {
+                GlyphAtlas atlas = load(cache);
+                if (atlas.fontCrc == crc && atlas.pixelHeight == pixelHeight) {
+                    return atlas;
+                }
+            } catch (IOException e) {
+                System.err.println("字形缓存无效，重新烘焙: " + e.getMessage());
+            }
+        }
+        GlyphAtlas atlas = bake(fontBytes, pixelHeight);
+        try {
+            atlas.save(cache);
+        } catch (IOException e) {
+            System.err.println("无法写入字形缓存 " + cache + ": " + e.getMessage());
+        }
+        return atlas;
+    }
+
+    /**
+     * 用 stb_truetype 烘焙，放不下时把位图高度加倍重试
+     */
+    public static GlyphAtlas bake(byte[] fontBytes, float pixelHeight) {
+        ByteBuffer font = ByteBuffer.allocateDirect(fontBytes.length).put(fontBytes).flip();
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            STBTTFontinfo info = STBTTFontinfo.malloc(stack);
+            if (!stbtt_InitFont(info, font)) {
+                throw new IllegalArgumentException("无法解析字体文件");
+            }
+            float scale = stbtt_ScaleForPixelHeight(info, pixelHeight);
+            IntBuffer ascent = stack.mallocInt(1);
+            IntBuffer descent = stack.mallocInt(1);
+            IntBuffer lineGap = stack.mallocInt(1);
+            stbtt_GetFontVMetrics(info, ascent, descent, lineGap);
+
+            STBTTBakedChar.Buffer baked = STBTTBakedChar.malloc(GLYPHS, stack);
+            for (int height = 64; height <= MAX_HEIGHT; height *= 2) {
+                ByteBuffer bitmap = ByteBuffer.allocateDirect(WIDTH * height);
+                if (stbtt_BakeFontBitmap(font, pixelHeight, bitmap, WIDTH, height, FIRST_CHAR, baked) <= 0) {
+                    continue; // 返回值不是正数表示没有全部放下
+                }
+                float[] glyphs = new float[GLYPHS * GLYPH_FLOATS];
+                for (int i = 0; i < GLYPHS; i++) {
+                    STBTTBakedChar c = baked.get(i);
+                    int base = i * GLYPH_FLOATS;
+                    glyphs[base] = c.x0();
+                    glyphs[base + 1] = c.y0();
+                    glyphs[base + 2] = c.x1();
+                    glyphs[base + 3] = c.y1();
+                    glyphs[base + 4] = c.xoff();
+                    glyphs[base + 5] = c.yoff();
+                    glyphs[base + 6] = c.xadvance();
+                }
+                float lineHeight = (ascent.get(0) - descent.get(0) + lineGap.get(0)) * scale;
+                return new GlyphAtlas(WIDTH, height, pixelHeight, ascent.get(0) * scale, lineHeight, glyphs,
+                        bitmap, crc(fontBytes));
+            }
+        }
+        throw new IllegalArgumentException("字号过大，图集放不下: " + pixelHeight);
+    }
+
+    /**
+     * 读取缓存文件：整个文件读进一块直接缓冲，位图就是它的一段，不用再复制
+     *
+     * 不用 map：映射要等垃圾回收才会解除，Windows 上映射期间文件被锁住，save 无法替换它
+     */
+    public static GlyphAtlas load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("字形缓存文件太小: " + path);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("不是字形缓存文件: " + path);
+            }
+            int width = header.getShort(16) & 0xFFFF;
+            int height = header.getShort(18) & 0xFFFF;
+            long expected = HEADER_BYTES + (long) GLYPHS * GLYPH_FLOATS * Float.BYTES + (long) width * height;
+            if (size != expected) {
+                throw new IOException("字形缓存文件大小不对: " + size + "，应为 " + expected);
+            }
+            ByteBuffer data = ByteBuffer.allocateDirect((int) (size - HEADER_BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, data);
+            float[] glyphs = new float[GLYPHS * GLYPH_FLOATS];
+            data.asFloatBuffer().get(glyphs);
+            ByteBuffer bitmap = data.position(glyphs.length * Float.BYTES).slice();
+            return new GlyphAtlas(width, height, header.getFloat(12), header.getFloat(20), header.getFloat(24), glyphs,
+                    bitmap, header.getInt(8));
+        }
+    }
+
+    /**
+     * 读满 buffer 的 position 到 limit，然后 flip
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("字形缓存文件不完整");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * 写入缓存文件，先写临时文件再改名，其他进程不会读到写了一半的文件
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_BYTES + glyphs.length * Float.BYTES + width * height)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(fontCrc).putFloat(pixelHeight)
+                .putShort((short) width).putShort((short) height).putFloat(ascent).putFloat(lineHeight).putInt(0);
+        buffer.asFloatBuffer().put(glyphs);
+        buffer.position(HEADER_BYTES + glyphs.length * Float.BYTES);
+        buffer.put(bitmap.duplicate().clear());
+        buffer.clear();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 字符在图集中的序号，图集里没有的字符返回 FALLBACK 的序号
+     */
+    private static int index(char c) {
+        int i = c - FIRST_CHAR;
+        return i >= 0 && i < GLYPHS ? i : FALLBACK - FIRST_CHAR;
+    }
+
+    /**
+     * 把一个字符的四边形写进 out：屏幕上的左上角 x、y，宽、高，纹理坐标 u0、v0、u1、v1
+     *
+     * @param penX     笔的位置
+     * @param baseline 基线的 y 坐标
+     * @return 空白字符没有四边形，返回 false
+     */
+    boolean quad(char c, float penX, float baseline, float[] out) {
+        int base = index(c) * GLYPH_FLOATS;
+        float w = glyphs[base + 2] - glyphs[base];
+        float h = glyphs[base + 3] - glyphs[base + 1];
+        if (w <= 0 || h <= 0) {
+            return false;
+        }
+        // 与 stbtt_GetBakedQuad 一样把左上角对齐到整像素，字形不会被双线性过滤弄模糊
+        out[0] = (float) Math.floor(penX + glyphs[base + 4] + 0.5f);
+        out[1] = (float) Math.floor(baseline + glyphs[base + 5] + 0.5f);
+        out[2] = w;
+        out[3] = h;
+        out[4] = glyphs[base] / width;
+        out[5] = glyphs[base + 1] / height;
+        out[6] = glyphs[base + 2] / width;
+        out[7] = glyphs[base + 3] / height;
+        return true;
+    }
+
+    /**
+     * 笔写完这个字符后前进的距离
+     */
+    public float advance(char c) {
+        return glyphs[index(c) * GLYPH_FLOATS + 6];
+    }
+
+    /**
+     * 单行文字的宽度
+     */
+    public float measure(CharSequence text) {
+        float width = 0;
+        for (int i = 0; i < text.length(); i++) {
+            width += advance(text.charAt(i));
+        }
+        return width;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public float pixelHeight() {
+        return pixelHeight;
+    }
+
+    public float ascent() {
+        return ascent;
+    }
+
+    public float lineHeight() {
+        return lineHeight;
+    }
+
+    /**
+     * 单通道位图，position 为 0，每次返回新的视图
+     */
+    public ByteBuffer bitmap() {
+        return bitmap.duplicate().clear();
+    }
+}
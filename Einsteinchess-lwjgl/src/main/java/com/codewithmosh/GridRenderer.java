@@ -22,6 +22,9 @@ public class GridRenderer {
     private int vao;
     private int vbo;
 
+    // 画面内容的版本，窗口需要重画时加一
+    private long redrawVersion;
+
     // 窗口大小
     private final int WIDTH = 800;
     private final int HEIGHT = 800;
@@ -66,6 +69,9 @@ public class GridRenderer {
                 glfwSetWindowShouldClose(window, true);
         });
 
+        // 窗口被遮挡后重新露出、或者改变大小时需要重画
+        glfwSetWindowRefreshCallback(window, window -> redrawVersion++);
+
         // 获取线程栈并压入一个新的帧
         try (MemoryStack stack = stackPush()) {
             IntBuffer pWidth = stack.mallocInt(1);
@@ -106,8 +112,9 @@ public class GridRenderer {
         // 创建网格数据
         createGridMesh();
 
-        // 渲染循环
-        while (!glfwWindowShouldClose(window)) {
+        // 渲染循环，网格不变时不重画
+        RenderLoop renderLoop = new RenderLoop(new GlfwWindowSystem(window), new FramePacer(60, -1));
+        renderLoop.run(() -> redrawVersion, () -> {
             // 清除颜色缓冲区
             glClear(GL_COLOR_BUFFER_BIT);
 
@@ -118,17 +125,11 @@ public class GridRenderer {
             glBindVertexArray(vao);
 
             // 绘制网格线
-            glDrawArrays(GL_LINES, 0, (GRID_SIZE + 1) * 4);
+            glDrawArrays(GL_LINES, 0, BoardMesh.vertexCount(GRID_SIZE));
 
             // 解绑VAO
             glBindVertexArray(0);
-
-            // 交换缓冲区
-            glfwSwapBuffers(window);
-
-            // 轮询事件
-            glfwPollEvents();
-        }
+        });
     }
 
     private void compileShaders() {
@@ -172,35 +173,8 @@ public class GridRenderer {
         vbo = glGenBuffers();
         glBindBuffer(GL_ARRAY_BUFFER, vbo);
 
-        // 计算网格单元大小
-        float cellSize = 2.0f / GRID_SIZE;
-
         // 创建顶点数据 - 存储水平和垂直线的坐标
-        float[] vertices = new float[(GRID_SIZE + 1) * 4 * 2]; // (行数+列数)*2点*2坐标
-
-        int index = 0;
-
-        // 水平线
-        for (int i = 0; i <= GRID_SIZE; i++) {
-            float y = -1.0f + i * cellSize;
-
-            // 从左到右的线
-            vertices[index++] = -1.0f;        // 左端点x
-            vertices[index++] = y;            // 左端点y
-            vertices[index++] = 1.0f;         // 右端点x
-            vertices[index++] = y;            // 右端点y
-        }
-
-        // 垂直线
-        for (int i = 0; i <= GRID_SIZE; i++) {
-            float x = -1.0f + i * cellSize;
-
-            // 从上到下的线
-            vertices[index++] = x;            // 上端点x
-            vertices[index++] = -1.0f;        // 上端点y
-            vertices[index++] = x;            // 下端点x
-            vertices[index++] = 1.0f;         // 下端点y
-        }
+        float[] vertices = BoardMesh.gridLines(GRID_SIZE);
 
         // 将顶点数据传输到GPU
         glBufferData(GL_ARRAY_BUFFER, vertices, GL_STATIC_DRAW);
@@ -0,0 +1,105 @@
+package com.codewithmosh;
+
+import java.util.PriorityQueue;
+
+/**
+ * 没有窗口的窗口系统，使用虚拟时钟
+ *
+ * 事件预先按时间安排好，等待事件时时钟直接跳到下一个事件或超时的时刻，
+ * 统计交换缓冲（即画出的帧数）和被唤醒的次数，用来检查空闲时是否还在画
+ */
+public class HeadlessWindowSystem implements WindowSystem {
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private long scheduled;
+    private double now;
+    private double closeTime = Double.POSITIVE_INFINITY;
+    private long frames;
+    private long wakeups;
+
+    private static final class Event implements Comparable<Event> {
+        final double time;
+        final long sequence; // 同一时刻的事件按安排的顺序发生
+        final Runnable action;
+
+        Event(double time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            int byTime = Double.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 安排一个在 time 秒时发生的事件，事件里也可以再安排新的事件
+     */
+    public void schedule(double time, Runnable action) {
+        events.add(new Event(time, scheduled++, action));
+    }
+
+    /**
+     * 到 time 秒时关闭窗口
+     */
+    public void closeAt(double time) {
+        closeTime = time;
+    }
+
+    @Override
+    public boolean shouldClose() {
+        return now >= closeTime;
+    }
+
+    @Override
+    public void pollEvents() {
+        while (!events.isEmpty() && events.peek().time <= now) {
+            events.poll().action.run();
+        }
+    }
+
+    @Override
+    public void waitEvents(double timeoutSeconds) {
+        wakeups++;
+        double deadline = timeoutSeconds < 0 ? Double.POSITIVE_INFINITY : now + timeoutSeconds;
+        deadline = Math.min(deadline, closeTime);
+        if (!events.isEmpty() && events.peek().time <= deadline) {
+            now = Math.max(now, events.peek().time);
+        } else if (deadline == Double.POSITIVE_INFINITY) {
+            now = closeTime = Double.POSITIVE_INFINITY; // 不会再有事件，相当于用户关闭了窗口
+        } else {
+            now = deadline;
+        }
+        pollEvents();
+    }
+
+    @Override
+    public void swapBuffers() {
+        frames++;
+    }
+
+    /**
+     * 虚拟时钟的 waitEvents 从不真正阻塞，不需要叫醒
+     */
+    @Override
+    public void wakeUp() {
+    }
+
+    @Override
+    public double time() {
+        return now;
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * 等待事件的次数，空闲时这个数也应该很小
+     */
+    public long getWakeups() {
+        return wakeups;
+    }
+}
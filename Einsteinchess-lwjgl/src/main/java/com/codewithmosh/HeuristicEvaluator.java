@@ -0,0 +1,37 @@
+package com.codewithmosh;
+
+/**
+ * 基于距离和掷中概率的启发式评估
+ * 每个棋子的威胁 = 能走它的点数个数 * (边长 - 到目标的距离)^2，
+ * 双方威胁之差经过 tanh 压缩到 (-1, 1)，两张表都由 Variant 预先算好。
+ * 大棋盘上威胁之差可能超过 350，tanh 转成 float 后正好是 WIN 或 LOSS，搜索会把它当成已定的胜负，
+ * 所以结果限制在开区间内
+ */
+public class HeuristicEvaluator implements Evaluator {
+    private static final float SCALE = 1.0f / 40.0f;
+    private static final float MAX = Math.nextDown(WIN);
+    private static final float MIN = Math.nextUp(LOSS);
+
+    @Override
+    public float evaluate(GameState state) {
+        if (state.isGameOver()) {
+            return state.winner() == state.sideToMove() ? WIN : LOSS;
+        }
+        int side = state.sideToMove();
+        float score = threat(state, side) - threat(state, GameState.opponent(side));
+        return Math.max(MIN, Math.min(MAX, (float) Math.tanh(score * SCALE)));
+    }
+
+    private static int threat(GameState state, int side) {
+        Variant variant = state.variant();
+        int alive = state.aliveMask(side);
+        int total = 0;
+        for (int piece = 0; piece < variant.pieces; piece++) {
+            if ((alive & (1 << piece)) != 0) {
+                int closeness = variant.size - variant.distance[side * variant.cells + state.pieceCell(side, piece)];
+                total += variant.coverage[alive * variant.pieces + piece] * closeness * closeness;
+            }
+        }
+        return total;
+    }
+}
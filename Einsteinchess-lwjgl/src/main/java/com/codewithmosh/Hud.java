@@ -0,0 +1,140 @@
+package com.codewithmosh;
+
+/**
+ * 窗口内的状态栏：走棋方、骰子点数、被吃的棋子数和电脑的思考统计
+ *
+ * 每帧用同一个 StringBuilder 拼出文字，排进 TextBatch 后一次 drawGlyphs 画完，不分配内存。
+ * 图集只有 ASCII 字符，所以状态栏用英文
+ */
+public class Hud {
+    public static final int MAX_GLYPHS = 256;
+
+    private static final float WHITE = 0.9f;
+
+    private final TextBatch batch;
+    private final StringBuilder line = new StringBuilder(64);
+    private final float x;
+    private final float y;
+
+    private int dice;
+    private int aiSide = GameState.NONE;
+    private boolean aiThinking;
+    private long aiAnswerNanos = -1;
+    private long ponderHits;
+    private long ponderMisses;
+
+    /**
+     * @param x 左上角 x（像素）
+     * @param y 左上角 y（像素）
+     */
+    public Hud(GlyphAtlas atlas, float x, float y) {
+        this.batch = new TextBatch(atlas, MAX_GLYPHS);
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * 当前的点数，还没掷骰时为 0
+     */
+    public void setDice(int dice) {
+        this.dice = dice;
+    }
+
+    /**
+     * 电脑执哪一方，没有电脑对手时为 GameState.NONE
+     */
+    public void setAiSide(int side) {
+        this.aiSide = side;
+    }
+
+    /**
+     * 电脑是否正在搜索
+     */
+    public void setAiThinking(boolean thinking) {
+        this.aiThinking = thinking;
+    }
+
+    /**
+     * 电脑上一步的用时和预读命中情况
+     */
+    public void setAiStats(long answerNanos, long hits, long misses) {
+        this.aiAnswerNanos = answerNanos;
+        this.ponderHits = hits;
+        this.ponderMisses = misses;
+    }
+
+    /**
+     * 把这一帧的状态栏排进 batch
+     *
+     * @return 字形数
+     */
+    public int layout(GameState state) {
+        batch.clear();
+        float lineHeight = batch.atlas().lineHeight();
+        float top = y;
+
+        line.setLength(0);
+        int side = state.isGameOver() ? state.winner() : state.sideToMove();
+        line.append(side == GameState.RED ? "Red" : "Blue").append(state.isGameOver() ? " wins!" : " to move");
+        addLine(top, side);
+        top += lineHeight;
+
+        line.setLength(0);
+        if (state.isGameOver()) {
+            line.append("Game over");
+        } else if (dice > 0) {
+            line.append("Dice: ").append(dice);
+        } else {
+            line.append("Dice: -   press Space to roll");
+        }
+        addLine(top, GameState.NONE);
+        top += lineHeight;
+
+        int pieces = state.variant().pieces();
+        line.setLength(0);
+        line.append("Captured: red ").append(pieces - Integer.bitCount(state.aliveMask(GameState.RED)))
+                .append("   blue ").append(pieces - Integer.bitCount(state.aliveMask(GameState.BLUE)));
+        addLine(top, GameState.NONE);
+        top += lineHeight;
+
+        if (aiSide != GameState.NONE) {
+            line.setLength(0);
+            line.append("AI (").append(aiSide == GameState.RED ? "red" : "blue").append("): ");
+            if (aiThinking) {
+                line.append("thinking...   ");
+            } else if (aiAnswerNanos >= 0) {
+                long tenths = aiAnswerNanos / 100_000; // 0.1 毫秒
+                line.append("last move ").append(tenths / 10).append('.').append(tenths % 10).append(" ms   ");
+            }
+            line.append("ponder hits ").append(ponderHits).append('/').append(ponderHits + ponderMisses);
+            addLine(top, aiSide);
+        }
+        return batch.count();
+    }
+
+    private void addLine(float top, int side) {
+        if (side == GameState.RED) {
+            batch.add(line, x, top, 1.0f, 0.4f, 0.4f);
+        } else if (side == GameState.BLUE) {
+            batch.add(line, x, top, 0.5f, 0.6f, 1.0f);
+        } else {
+            batch.add(line, x, top, WHITE, WHITE, WHITE);
+        }
+    }
+
+    /**
+     * 排版并一次绘制，需要在 beginFrame 和 endFrame 之间调用
+     */
+    public void draw(RenderBackend backend, GameState state) {
+        int count = layout(state);
+        backend.drawGlyphs(batch.glyphs(), count);
+    }
+
+    public GlyphAtlas getAtlas() {
+        return batch.atlas();
+    }
+
+    public TextBatch getBatch() {
+        return batch;
+    }
+}
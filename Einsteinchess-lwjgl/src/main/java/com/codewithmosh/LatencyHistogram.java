@@ -0,0 +1,98 @@
+package com.codewithmosh;
+
+import java.util.Arrays;
+
+/**
+ * 对数分桶的延迟直方图
+ *
+ * 0 到 127 每个值一个桶，之后每个 2 的幂区间再均分成 64 个小桶，相对误差不超过 1/64，
+ * 整个表几千个 long，记录不分配内存；不是线程安全的，每个线程一个，最后用 add 合并
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+
+    private final long[] counts = new long[LINEAR + (63 - SUB_BITS) * SUB_BUCKETS];
+    private long total;
+    private long max;
+    private long sum;
+
+    /**
+     * 记录一个值（一般是纳秒），负数按 0 处理
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts[bucket(value)]++;
+        total++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS; // value >>> exponent 落在 [64, 128)
+        return LINEAR + (exponent - 1) * SUB_BUCKETS + (int) (value >>> exponent) - SUB_BUCKETS;
+    }
+
+    /**
+     * 桶的上界（包含）
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << exponent) - 1;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * 分位数，quantile 在 0 到 1 之间，返回所在桶的上界（不超过最大值）
+     */
+    public long percentile(double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return total == 0 ? 0 : (double) sum / total;
+    }
+}
@@ -0,0 +1,351 @@
+package com.codewithmosh;
+
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.util.lmdb.MDBStat;
+import org.lwjgl.util.lmdb.MDBVal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.lwjgl.system.MemoryStack.*;
+import static org.lwjgl.util.lmdb.LMDB.*;
+
+/**
+ * 用 LMDB 保存的局面库
+ *
+ * 键为 8 字节的规范键（大端，按局面顺序排列），值为 12 字节的 PositionStore.Entry。
+ * 读：只读事务放在一个固定大小的池里，查询时取出一个 renew、读完 reset 后放回，直接从映射的内存解码，不复制数据；
+ * 池的大小远小于读者槽位数，服务器每个连接一个线程也不会把槽位用完，
+ * 多个进程（界面、服务器、分析任务）可以同时打开同一个库。
+ * 写：put 只把结果放进队列，后台线程每次取出一批放在同一个写事务里提交，
+ * LMDB 同一时刻只允许一个写事务，这样分析线程之间不会互相等待；
+ * 写入出错时后台线程停止，之后的 put 和 flush 抛出异常
+ */
+public class LmdbPositionStore implements PositionStore {
+    public static final long DEFAULT_MAP_SIZE = 1L << 30;
+    private static final int MAX_READERS = 256;
+    private static final int READ_TXNS = 64; // 本进程最多占用的读者槽位，其余留给同时打开库的其他进程
+    private static final long PUT_WAIT_MILLIS = 100;
+    private static final int BATCH = 1024;
+    private static final int QUEUE_CAPACITY = 1 << 16;
+
+    private final long env;
+    private final int dbi;
+    private final boolean readOnly;
+
+    private final BlockingQueue<long[]> idleReadTxns = new ArrayBlockingQueue<>(READ_TXNS);
+    private final Queue<long[]> readTxns = new ConcurrentLinkedQueue<>(); // 创建过的所有只读事务，关闭时统一释放
+    private final AtomicInteger readTxnCount = new AtomicInteger();
+
+    private final BlockingQueue<Pending> pending = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread writer;
+    private long submitted; // 以下三个字段由 this 保护
+    private long committed;
+    private long written;
+    private volatile RuntimeException failure; // 后台线程写入失败的原因
+    private volatile boolean closed;
+
+    private static final class Pending {
+        final long key;
+        final ByteBuffer record = ByteBuffer.allocate(Entry.BYTES);
+
+        Pending(long key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 打开（不存在时创建）局面库文件，只读打开时 put 会抛出异常
+     */
+    public LmdbPositionStore(Path file, long mapSize, boolean readOnly) {
+        this.readOnly = readOnly;
+        try (MemoryStack stack = stackPush()) {
+            PointerBuffer pointer = stack.mallocPointer(1);
+            check(mdb_env_create(pointer), "mdb_env_create");
+            env = pointer.get(0);
+            try {
+                check(mdb_env_set_mapsize(env, mapSize), "mdb_env_set_mapsize");
+                check(mdb_env_set_maxreaders(env, MAX_READERS), "mdb_env_set_maxreaders");
+                // MDB_NOTLS：只读事务不绑定线程，可以在线程池的线程之间复用
+                int flags = MDB_NOSUBDIR | MDB_NOTLS | (readOnly ? MDB_RDONLY : 0);
+                check(mdb_env_open(env, file.toString(), flags, 0644), "mdb_env_open " + file);
+
+                check(mdb_txn_begin(env, 0, readOnly ? MDB_RDONLY : 0, pointer), "mdb_txn_begin");
+                long txn = pointer.get(0);
+                IntBuffer handle = stack.mallocInt(1);
+                int result = mdb_dbi_open(txn, (CharSequence) null, readOnly ? 0 : MDB_CREATE, handle);
+                if (result != MDB_SUCCESS) {
+                    mdb_txn_abort(txn);
+                    check(result, "mdb_dbi_open");
+                }
+                check(mdb_txn_commit(txn), "mdb_txn_commit");
+                dbi = handle.get(0);
+            } catch (RuntimeException e) {
+                mdb_env_close(env);
+                throw e;
+            }
+        }
+        if (readOnly) {
+            writer = null;
+        } else {
+            writer = new Thread(this::writeLoop, "position-store-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    private static void check(int result, String what) {
+        if (result != MDB_SUCCESS) {
+            throw new IllegalStateException(what + " 失败: " + mdb_strerror(result));
+        }
+    }
+
+    @Override
+    public boolean lookup(GameState state, Entry entry) {
+        long[] holder = acquireReadTxn();
+        long txn = holder[0];
+        try (MemoryStack stack = stackPush()) {
+            ByteBuffer keyBytes = stack.malloc(Long.BYTES).order(ByteOrder.BIG_ENDIAN).putLong(0, PositionStore.key(state));
+            MDBVal key = MDBVal.malloc(stack).mv_data(keyBytes);
+            MDBVal data = MDBVal.malloc(stack);
+            int result = mdb_get(txn, dbi, key, data);
+            if (result == MDB_NOTFOUND) {
+                return false;
+            }
+            check(result, "mdb_get");
+            // mv_data 指向映射的数据库页面，只在事务 reset 之前有效
+            entry.read(data.mv_data(), 0, PositionStore.isTransposed(state));
+            return true;
+        } finally {
+            releaseReadTxn(holder);
+        }
+    }
+
+    /**
+     * 从池里取一个已经 renew 的只读事务，池空时新建，总数到上限后等别的线程放回
+     */
+    private long[] acquireReadTxn() {
+        if (closed) {
+            throw new IllegalStateException("局面库已关闭");
+        }
+        long[] holder = idleReadTxns.poll();
+        if (holder == null) {
+            if (readTxnCount.getAndUpdate(n -> n < READ_TXNS ? n + 1 : n) < READ_TXNS) {
+                try (MemoryStack stack = stackPush()) {
+                    PointerBuffer pointer = stack.mallocPointer(1);
+                    int result = mdb_txn_begin(env, 0, MDB_RDONLY, pointer);
+                    if (result != MDB_SUCCESS) {
+                        readTxnCount.decrementAndGet();
+                        check(result, "mdb_txn_begin");
+                    }
+                    holder = new long[]{pointer.get(0)};
+                }
+                readTxns.add(holder);
+                return holder; // 新建的事务已经可以读
+            }
+            try {
+                holder = idleReadTxns.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待只读事务时被中断", e);
+            }
+        }
+        check(mdb_txn_renew(holder[0]), "mdb_txn_renew");
+        return holder;
+    }
+
+    /**
+     * reset 后放回池里，释放事务看到的快照但保留读者槽位
+     */
+    private void releaseReadTxn(long[] holder) {
+        mdb_txn_reset(holder[0]);
+        idleReadTxns.offer(holder);
+    }
+
+    @Override
+    public void put(GameState state, Entry entry) {
+        if (readOnly) {
+            throw new IllegalStateException("局面库是只读打开的");
+        }
+        checkWriter();
+        Pending item = new Pending(PositionStore.key(state));
+        entry.write(item.record, 0, PositionStore.isTransposed(state));
+        synchronized (this) {
+            submitted++;
+        }
+        try {
+            // 队列满时分段等待，后台线程失败后不会永远卡在这里
+            while (!pending.offer(item, PUT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkWriter();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synchronized (this) {
+                submitted--;
+            }
+        } catch (IllegalStateException e) {
+            synchronized (this) {
+                submitted--;
+            }
+            throw e;
+        }
+    }
+
+    private void checkWriter() {
+        RuntimeException cause = failure;
+        if (cause != null) {
+            throw new IllegalStateException("局面库写入失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>(BATCH);
+        ByteBuffer keyBytes = ByteBuffer.allocateDirect(Long.BYTES).order(ByteOrder.BIG_ENDIAN);
+        ByteBuffer record = ByteBuffer.allocateDirect(Entry.BYTES);
+        while (true) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+            }
+            pending.drainTo(batch, BATCH - batch.size());
+            if (batch.isEmpty()) {
+                continue;
+            }
+            int stored;
+            try {
+                stored = writeBatch(batch, keyBytes, record);
+            } catch (RuntimeException e) {
+                System.err.println("局面库写入失败，停止写入: " + e.getMessage());
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                pending.clear();
+                return;
+            }
+            synchronized (this) {
+                committed += batch.size();
+                written += stored;
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 一个写事务写入一批结果，返回实际写入的条数（已有更深结果的不覆盖）
+     */
+    private int writeBatch(List<Pending> batch, ByteBuffer keyBytes, ByteBuffer record) {
+        int stored = 0;
+        try (MemoryStack stack = stackPush()) {
+            PointerBuffer pointer = stack.mallocPointer(1);
+            check(mdb_txn_begin(env, 0, 0, pointer), "mdb_txn_begin");
+            long txn = pointer.get(0);
+            try {
+                MDBVal key = MDBVal.malloc(stack);
+                MDBVal data = MDBVal.malloc(stack);
+                for (Pending item : batch) {
+                    keyBytes.putLong(0, item.key);
+                    key.mv_data(keyBytes);
+                    int result = mdb_get(txn, dbi, key, data);
+                    if (result == MDB_SUCCESS && Entry.depth(data.mv_data(), 0) > Entry.depth(item.record, 0)) {
+                        continue;
+                    }
+                    record.clear();
+                    record.put(item.record.array()).flip();
+                    data.mv_data(record);
+                    check(mdb_put(txn, dbi, key, data, 0), "mdb_put");
+                    stored++;
+                }
+                check(mdb_txn_commit(txn), "mdb_txn_commit");
+            } catch (RuntimeException e) {
+                mdb_txn_abort(txn);
+                throw e;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * 等待已经 put 的结果全部提交，写入线程失败时抛出 IllegalStateException；只读打开时直接返回
+     */
+    @Override
+    public synchronized void flush() {
+        if (readOnly) {
+            return;
+        }
+        boolean interrupted = false;
+        while (committed < submitted && failure == null && writer.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        checkWriter();
+    }
+
+    /**
+     * 库中的局面数
+     */
+    public long size() {
+        long[] holder = acquireReadTxn();
+        try (MemoryStack stack = stackPush()) {
+            MDBStat stat = MDBStat.malloc(stack);
+            check(mdb_stat(holder[0], dbi, stat), "mdb_stat");
+            return stat.ms_entries();
+        } finally {
+            releaseReadTxn(holder);
+        }
+    }
+
+    /**
+     * 后台线程实际写入（没有被更深结果挡住）的条数
+     */
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush(); // 写入失败时抛出异常，但仍然释放下面的资源
+        } finally {
+            if (writer != null) {
+                writer.interrupt();
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            closed = true;
+            long[] holder;
+            while ((holder = readTxns.poll()) != null) {
+                mdb_txn_abort(holder[0]);
+            }
+            idleReadTxns.clear();
+            mdb_env_close(env);
+        }
+    }
+}
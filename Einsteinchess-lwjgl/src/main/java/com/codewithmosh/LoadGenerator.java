@@ -0,0 +1,193 @@
+package com.codewithmosh;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * GameServer 的压力测试客户端
+ *
+ * 开 connections 个连接，每个连接同时进行 sessions 局，轮流为每一局发一条命令（掷骰子或随机走一步），
+ * 一局结束就开新的一局，直到时间用完，报告吞吐量和 ROLL / MOVE 的延迟分位数
+ *
+ * 用法：LoadGenerator --port 7777 --connections 1000 --sessions 10 --seconds 30
+ */
+public class LoadGenerator {
+    private final String host;
+    private final int port;
+    private final int connections;
+    private final int sessionsPerConnection;
+    private final long durationNanos;
+
+    public LoadGenerator(String host, int port, int connections, int sessionsPerConnection, double seconds) {
+        this.host = host;
+        this.port = port;
+        this.connections = connections;
+        this.sessionsPerConnection = sessionsPerConnection;
+        this.durationNanos = (long) (seconds * 1e9);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = "127.0.0.1";
+        int port = 7777;
+        int connections = 100;
+        int sessions = 10;
+        double seconds = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--host":
+                    host = args[i + 1];
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--connections":
+                    connections = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--sessions":
+                    sessions = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seconds":
+                    seconds = Double.parseDouble(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        System.out.println("连接 " + connections + " 个，每个连接 " + sessions + " 局，共 " + connections * sessions
+                + " 局同时进行，持续 " + seconds + " 秒");
+        new LoadGenerator(host, port, connections, sessions, seconds).run().print();
+    }
+
+    public Report run() throws Exception {
+        ExecutorService executor = GameServer.newConnectionExecutor("einstein-load");
+        try {
+            List<Future<Report>> futures = new ArrayList<>();
+            long deadline = System.nanoTime() + durationNanos;
+            for (int i = 0; i < connections; i++) {
+                long seed = i;
+                futures.add(executor.submit(() -> drive(deadline, seed)));
+            }
+            Report total = new Report();
+            long start = System.nanoTime();
+            for (Future<Report> future : futures) {
+                total.add(future.get());
+            }
+            total.elapsedNanos = System.nanoTime() - start;
+            return total;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 一个连接的工作：建好所有对局后轮流推进
+     */
+    private Report drive(long deadline, long seed) throws IOException {
+        Report report = new Report();
+        SplittableRandom random = new SplittableRandom(seed);
+        try (Socket socket = new Socket(host, port);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            socket.setTcpNoDelay(true);
+            long[] ids = new long[sessionsPerConnection];
+            String[] pending = new String[sessionsPerConnection]; // 掷骰子后待走的着法列表，null 表示该掷骰子
+            for (int s = 0; s < ids.length; s++) {
+                ids[s] = newGame(reader, writer);
+            }
+            while (System.nanoTime() < deadline) {
+                for (int s = 0; s < ids.length; s++) {
+                    if (pending[s] == null) {
+                        long start = System.nanoTime();
+                        String reply = request(reader, writer, "ROLL " + ids[s]);
+                        report.roll.record(System.nanoTime() - start);
+                        if (reply.startsWith("ROLL ")) {
+                            pending[s] = reply;
+                        } else if (!reply.startsWith("PASS ")) {
+                            throw new IOException("意外的回复: " + reply);
+                        }
+                    } else {
+                        String[] options = pending[s].split(" ");
+                        String choice = options[2 + random.nextInt(options.length - 2)];
+                        long start = System.nanoTime();
+                        String reply = request(reader, writer, "MOVE " + ids[s] + " " + choice.charAt(0) + " " + choice.charAt(1));
+                        report.move.record(System.nanoTime() - start);
+                        pending[s] = null;
+                        if (!reply.startsWith("OK ")) {
+                            throw new IOException("意外的回复: " + reply);
+                        }
+                        if (reply.contains(" WIN ")) {
+                            report.games++;
+                            request(reader, writer, "QUIT " + ids[s]);
+                            ids[s] = newGame(reader, writer);
+                        }
+                    }
+                }
+            }
+            request(reader, writer, "BYE");
+        }
+        return report;
+    }
+
+    private static long newGame(BufferedReader reader, BufferedWriter writer) throws IOException {
+        String reply = request(reader, writer, "NEW");
+        if (!reply.startsWith("NEW ")) {
+            throw new IOException("无法新建对局: " + reply);
+        }
+        return Long.parseLong(reply.substring(4));
+    }
+
+    private static String request(BufferedReader reader, BufferedWriter writer, String command) throws IOException {
+        writer.write(command);
+        writer.newLine();
+        writer.flush();
+        String reply = reader.readLine();
+        if (reply == null) {
+            throw new IOException("服务器断开了连接");
+        }
+        return reply;
+    }
+
+    /**
+     * 压测结果
+     */
+    public static class Report {
+        final LatencyHistogram roll = new LatencyHistogram();
+        final LatencyHistogram move = new LatencyHistogram();
+        long games;
+        long elapsedNanos;
+
+        void add(Report other) {
+            roll.add(other.roll);
+            move.add(other.move);
+            games += other.games;
+        }
+
+        public LatencyHistogram getMoveLatency() {
+            return move;
+        }
+
+        void print() {
+            long requests = roll.getCount() + move.getCount();
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("请求 %d 次（%.0f 次/秒），完成 %d 局%n", requests, requests / seconds, games);
+            printLatency("ROLL", roll);
+            printLatency("MOVE", move);
+        }
+
+        private static void printLatency(String label, LatencyHistogram histogram) {
+            System.out.printf("%s 延迟 p50 %.1fµs  p99 %.1fµs  p99.9 %.1fµs  最大 %.1fµs%n", label,
+                    histogram.percentile(0.50) / 1e3, histogram.percentile(0.99) / 1e3,
+                    histogram.percentile(0.999) / 1e3, histogram.getMax() / 1e3);
+        }
+    }
+}
@@ -22,6 +22,9 @@ public class Main {
     // 窗口句柄（用于操作窗口）
     private long window;
 
+    // 画面内容的版本，窗口需要重画时加一
+    private long redrawVersion;
+
     /**
      * 主运行方法
      */
@@ -75,6 +78,9 @@ public class Main {
                 glfwSetWindowShouldClose(window, true); // 触发窗口关闭
         });
 
+        // 窗口被遮挡后重新露出、或者改变大小时需要重画
+        glfwSetWindowRefreshCallback(window, window -> redrawVersion++);
+
         // 使用 MemoryStack 分配本地内存，用于获取窗口尺寸
         try (MemoryStack stack = stackPush()) {
             IntBuffer pWidth = stack.mallocInt(1); // 分配 int 类型缓冲区保存宽度
@@ -114,17 +120,12 @@ public class Main {
         // 设置清空屏幕后的颜色（红色）
         glClearColor(1.0f, 0.0f, 0.0f, 0.0f);
 
-        // 当窗口未被关闭时持续渲染
-        while (!glfwWindowShouldClose(window)) {
+        // 画面只在需要时重画，其余时间在 glfwWaitEvents 中睡眠
+        RenderLoop renderLoop = new RenderLoop(new GlfwWindowSystem(window), new FramePacer(60, -1));
+        renderLoop.run(() -> redrawVersion, () -> {
             // 清除颜色缓冲和深度缓冲
             glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
-
-            // 交换前后缓冲（双缓冲机制）
-            glfwSwapBuffers(window);
-
-            // 处理所有挂起的 GLFW 事件（如按键、鼠标、窗口变化）
-            glfwPollEvents();
-        }
+        });
     }
 
     /**
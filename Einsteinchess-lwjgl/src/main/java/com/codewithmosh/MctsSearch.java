@@ -0,0 +1,438 @@
+package com.codewithmosh;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * 并行蒙特卡洛树搜索（UCT）
+ * 掷骰用随机采样处理：经过机会节点时随机掷一个点数，再在该点数的子节点里按 UCT 选择
+ *
+ * 两种并行方式：
+ * ROOT_PARALLEL 每个线程各自建一棵树，结束时按根节点的着法合并访问次数；
+ * TREE_PARALLEL 所有线程共享一棵树，靠虚拟损失把线程分散到不同分支
+ *
+ * 节点可以放在堆上（MctsTree）或堆外（OffHeapNodeStore）。打开子树复用时每棵树配一棵备用树，
+ * 新的一步如果能在上一步的树里找到（自己一步加对手一步之后的节点），
+ * 就把这棵子树复制到备用树作为新的根，两棵树轮换，统计接着用
+ */
+public class MctsSearch implements MoveStrategy, AutoCloseable {
+    public enum Mode {
+        ROOT_PARALLEL,
+        TREE_PARALLEL
+    }
+
+    private static final int BATCH = 64; // 每个线程一次领取的模拟次数
+    private static final int MAX_PATH = 128;
+
+    private final Mode mode;
+    private final int threads;
+    private final long playouts;
+    private final long budgetNanos;
+    private final double exploration;
+    private final ForkJoinPool pool;
+    private final NodeStore[] trees;
+    private final NodeStore[] spares; // 子树复用时的备用树，不复用时为 null
+    private final Worker[] workers;
+    private final GameState previous = new GameState(); // 上一次搜索的根局面
+    private final GameState scratch = new GameState();
+    private int previousRoll; // 0 表示没有可以复用的树
+
+    // 统计信息
+    private long lastPlayouts;
+    private long elapsedNanos;
+    private int lastTreeSize;
+    private int lastReused;
+
+    /**
+     * 构造函数
+     *
+     * @param playouts     每步的模拟次数上限
+     * @param budgetMillis 每步时间预算，0 表示只受模拟次数限制
+     * @param capacity     节点总容量，根并行时平均分给每棵树
+     */
+    public MctsSearch(Mode mode, int threads, long playouts, long budgetMillis, int capacity, long seed) {
+        this(mode, threads, playouts, budgetMillis, capacity, seed, MctsTree::new, false);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param stores       按容量创建节点存储，例如 MctsTree::new 或 OffHeapNodeStore.factory(...)
+     * @param reuseSubtree 是否在相邻两次搜索之间复用子树
+     */
+    public MctsSearch(Mode mode, int threads, long playouts, long budgetMillis, int capacity, long seed,
+                      IntFunction<NodeStore> stores, boolean reuseSubtree) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("线程数必须大于 0");
+        }
+        this.mode = mode;
+        this.threads = threads;
+        this.playouts = playouts;
+        this.budgetNanos = budgetMillis * 1_000_000L;
+        this.exploration = 0.7;
+        this.pool = new ForkJoinPool(threads);
+
+        int treeCount = mode == Mode.ROOT_PARALLEL ? threads : 1;
+        trees = new NodeStore[treeCount];
+        spares = reuseSubtree ? new NodeStore[treeCount] : null;
+        for (int i = 0; i < treeCount; i++) {
+            trees[i] = stores.apply(capacity / treeCount);
+            if (reuseSubtree) {
+                spares[i] = stores.apply(capacity / treeCount);
+            }
+        }
+        workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker();
+        }
+        seedWorkers(seed);
+    }
+
+    /**
+     * 每个线程的随机数都从 seed 拆分出来
+     */
+    private void seedWorkers(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (Worker worker : workers) {
+            worker.random = random.split();
+        }
+    }
+
+    /**
+     * 新的一局：重新拆分各线程的随机数，不再复用上一局的树
+     */
+    @Override
+    public void newGame(long seed) {
+        seedWorkers(seed);
+        previousRoll = 0;
+    }
+
+    @Override
+    public int chooseMove(GameState state, int roll) {
+        GameEvents.Search event = new GameEvents.Search();
+        event.begin();
+        int best = search(state, roll);
+        GameEvents.searchFinished(event, this, roll, 0, lastPlayouts, elapsedNanos);
+        return best;
+    }
+
+    private int search(GameState state, int roll) {
+        long start = System.nanoTime();
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(state, roll, rootMoves);
+        if (count <= 1) {
+            previousRoll = 0;
+            lastPlayouts = 0;
+            elapsedNanos = System.nanoTime() - start;
+            return count == 0 ? Move.NONE : rootMoves[0];
+        }
+
+        int reused = 0;
+        for (int i = 0; i < trees.length; i++) {
+            reused += prepareTree(i, state, roll, rootMoves);
+        }
+        previous.copyFrom(state);
+        previousRoll = roll;
+        AtomicLong remaining = new AtomicLong(playouts);
+        long deadline = budgetNanos > 0 ? start + budgetNanos : Long.MAX_VALUE;
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[threads];
+        for (int i = 0; i < threads; i++) {
+            Worker worker = workers[i];
+            worker.prepare(trees[i % trees.length], state, roll, remaining, deadline);
+            tasks[i] = worker;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+
+        // 合并所有树根节点下的访问次数，选访问最多的着法
+        // 子节点按同样的顺序生成，但复用的树里下标不同，按相对位置对应
+        NodeStore first = trees[0];
+        int begin = first.childStart(NodeStore.ROOT, roll);
+        int best = Move.NONE;
+        long bestVisits = -1;
+        for (int i = 0; i < count; i++) {
+            long visits = 0;
+            for (NodeStore tree : trees) {
+                visits += tree.visits(tree.childStart(NodeStore.ROOT, roll) + i);
+            }
+            if (visits > bestVisits) {
+                bestVisits = visits;
+                best = first.move(begin + i);
+            }
+        }
+
+        long done = 0;
+        int size = 0;
+        for (Worker worker : workers) {
+            done += worker.completed;
+        }
+        for (NodeStore tree : trees) {
+            size += tree.size();
+        }
+        lastPlayouts = done;
+        lastTreeSize = size;
+        lastReused = reused;
+        elapsedNanos = System.nanoTime() - start;
+        return best;
+    }
+
+    /**
+     * 准备第 index 棵树：能复用上一步的子树就复制到备用树并交换，否则清空，然后展开根节点
+     *
+     * @return 复用的节点数
+     */
+    private int prepareTree(int index, GameState state, int roll, int[] moves) {
+        NodeStore tree = trees[index];
+        int reused = 0;
+        int node = spares != null && previousRoll != 0 ? findDescendant(tree, state) : -1;
+        if (node > 0) {
+            NodeStore spare = spares[index];
+            reused = spare.copySubtree(tree, node);
+            spares[index] = tree;
+            trees[index] = spare;
+            tree = spare;
+        } else {
+            tree.reset();
+        }
+        tree.expand(NodeStore.ROOT, state, roll, moves);
+        return reused;
+    }
+
+    /**
+     * 在上一步的树里找局面和 state 相同的孙节点（自己走一步、对手掷骰再走一步），
+     * 同一步棋可能出现在几个点数下，取访问最多的一个，找不到返回 -1
+     */
+    private int findDescendant(NodeStore tree, GameState state) {
+        if (!tree.isExpanded(NodeStore.ROOT) || state.sideToMove() != previous.sideToMove()
+                || state.variant() != previous.variant()) {
+            return -1;
+        }
+        scratch.copyFrom(previous);
+        int found = -1;
+        int foundVisits = -1;
+        int end = tree.childEnd(NodeStore.ROOT, previousRoll);
+        for (int child = tree.childStart(NodeStore.ROOT, previousRoll); child < end; child++) {
+            if (!tree.isExpanded(child)) {
+                continue;
+            }
+            int ours = scratch.makeMove(tree.move(child));
+            if (!scratch.isGameOver()) {
+                int last = tree.childEnd(child, NodeStore.ROLLS);
+                for (int grandchild = tree.childStart(child, 1); grandchild < last; grandchild++) {
+                    int theirs = scratch.makeMove(tree.move(grandchild));
+                    if (scratch.hash() == state.hash() && tree.visits(grandchild) > foundVisits) {
+                        found = grandchild;
+                        foundVisits = tree.visits(grandchild);
+                    }
+                    scratch.unmakeMove(theirs);
+                }
+            }
+            scratch.unmakeMove(ours);
+        }
+        return found;
+    }
+
+    /**
+     * 每个线程的工作状态，缓冲区在多次搜索之间复用
+     */
+    private final class Worker extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private SplittableRandom random;
+        private NodeStore tree;
+        private final GameState root = new GameState();
+        private final GameState state = new GameState();
+        private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        private final int[] path = new int[MAX_PATH];
+        private int rootRoll;
+        private AtomicLong remaining;
+        private long deadline;
+        private long completed;
+
+        void prepare(NodeStore tree, GameState position, int roll, AtomicLong remaining, long deadline) {
+            this.tree = tree;
+            root.copyFrom(position);
+            rootRoll = roll;
+            this.remaining = remaining;
+            this.deadline = deadline;
+            completed = 0;
+            reinitialize();
+        }
+
+        @Override
+        protected void compute() {
+            while (System.nanoTime() < deadline) {
+                long claimed = remaining.getAndAdd(-BATCH);
+                if (claimed <= 0) {
+                    return;
+                }
+                long batch = Math.min(claimed, BATCH);
+                for (long i = 0; i < batch; i++) {
+                    iterate();
+                }
+                completed += batch;
+            }
+        }
+
+        private void iterate() {
+            state.copyFrom(root);
+            int faces = state.variant().pieces(); // 骰子面数等于棋子数
+            int node = NodeStore.ROOT;
+            int depth = 0;
+            path[depth++] = node;
+            tree.addVisit(node);
+
+            // 选择：先掷骰，再按 UCT 选子节点；访问次数先加上，充当虚拟损失
+            while (tree.isExpanded(node) && !state.isGameOver() && depth < MAX_PATH) {
+                int roll = node == NodeStore.ROOT ? rootRoll : 1 + random.nextInt(faces);
+                int child = select(node, roll);
+                tree.addVisit(child);
+                state.makeMove(tree.move(child));
+                node = child;
+                path[depth++] = node;
+            }
+
+            // 扩展：叶子节点第二次被访问时展开，并向下走一步
+            if (!state.isGameOver() && depth < MAX_PATH && tree.visits(node) > 1
+                    && tree.expand(node, state, 0, moves)) {
+                int child = select(node, 1 + random.nextInt(faces));
+                tree.addVisit(child);
+                state.makeMove(tree.move(child));
+                path[depth++] = child;
+            }
+
+            int winner = playout(state);
+
+            // 回传：到达节点的走棋方获胜时记一场胜利
+            for (int i = 1; i < depth; i++) {
+                int n = path[i];
+                if (Move.side(tree.move(n)) == winner) {
+                    tree.addWin(n);
+                }
+            }
+        }
+
+        private int select(int node, int roll) {
+            int begin = tree.childStart(node, roll);
+            int end = tree.childEnd(node, roll);
+            int total = 0;
+            for (int child = begin; child < end; child++) {
+                int visits = tree.visits(child);
+                if (visits == 0) {
+                    return child; // 未访问过的子节点优先
+                }
+                total += visits;
+            }
+            double logTotal = Math.log(total);
+            int best = begin;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int child = begin; child < end; child++) {
+                int visits = tree.visits(child);
+                double score = (double) tree.wins(child) / visits + exploration * Math.sqrt(logTotal / visits);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * 随机模拟到终局，有直接获胜的着法时总是走它
+         */
+        private int playout(GameState s) {
+            Variant variant = s.variant();
+            while (!s.isGameOver()) {
+                int count = MoveGenerator.generate(s, 1 + random.nextInt(variant.pieces), moves);
+                int chosen = moves[random.nextInt(count)];
+                int side = s.sideToMove();
+                long enemy = s.occupancy(GameState.opponent(side));
+                for (int i = 0; i < count; i++) {
+                    int to = Move.to(moves[i]);
+                    if (to == variant.goal(side) || enemy == 1L << to) {
+                        chosen = moves[i];
+                        break;
+                    }
+                }
+                s.makeMove(chosen);
+            }
+            return s.winner();
+        }
+    }
+
+    /**
+     * 上一次搜索完成的模拟次数
+     */
+    public long getPlayouts() {
+        return lastPlayouts;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * 上一次搜索结束时所有树的节点总数
+     */
+    public int getTreeSize() {
+        return lastTreeSize;
+    }
+
+    /**
+     * 上一次搜索每秒完成的模拟次数
+     */
+    public double getPlayoutsPerSecond() {
+        return elapsedNanos == 0 ? 0 : lastPlayouts * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * 上一次搜索从前一步的树里复用的节点数
+     */
+    public int getReusedNodes() {
+        return lastReused;
+    }
+
+    /**
+     * 各棵树的节点存储，子树复用时包括备用树
+     */
+    public NodeStore[] stores() {
+        if (spares == null) {
+            return trees.clone();
+        }
+        NodeStore[] all = Arrays.copyOf(trees, trees.length * 2);
+        System.arraycopy(spares, 0, all, trees.length, spares.length);
+        return all;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public String name() {
+        return "mcts(" + mode.name().toLowerCase() + ", " + threads + " threads, " + playouts + " playouts)";
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        for (NodeStore store : stores()) {
+            if (store instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) store).close();
+                } catch (Exception e) {
+                    throw new IllegalStateException("无法释放节点存储", e);
+                }
+            }
+        }
+    }
+}
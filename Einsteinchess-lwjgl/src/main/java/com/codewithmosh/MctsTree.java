@@ -0,0 +1,185 @@
+package com.codewithmosh;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 蒙特卡洛树的堆上节点存储
+ * 所有节点放在预先分配的基本类型数组里，不为每个节点创建对象；
+ * 访问次数、胜场和展开状态都是原子数组，多个线程可以无锁地共享同一棵树
+ *
+ * 点数 r 的子节点为 firstChild + rollStart[r-1] 到 firstChild + rollStart[r] - 1
+ */
+public class MctsTree implements NodeStore {
+    private static final int LEAF = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private final int capacity;
+    private final int[] move; // 到达该节点的着法
+    private final int[] firstChild; // 第一个子节点下标
+    private final byte[] rollStart; // [节点 * (ROLLS + 1) + 点数 - 1] -> 该点数子节点的相对起点
+    private final AtomicIntegerArray visits; // 访问次数（包含虚拟损失）
+    private final AtomicIntegerArray wins; // 到达该节点的走棋方赢下的模拟次数
+    private final AtomicIntegerArray expansion; // 展开状态
+    private final AtomicInteger next = new AtomicInteger(1);
+    private int[] copyQueue = new int[16]; // 复制子树时复用
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 节点容量，满了之后不再展开新节点
+     */
+    public MctsTree(int capacity) {
+        this.capacity = capacity;
+        move = new int[capacity];
+        firstChild = new int[capacity];
+        rollStart = new byte[capacity * (ROLLS + 1)];
+        visits = new AtomicIntegerArray(capacity);
+        wins = new AtomicIntegerArray(capacity);
+        expansion = new AtomicIntegerArray(capacity);
+    }
+
+    @Override
+    public void reset() {
+        int used = next.get();
+        for (int i = 0; i < used; i++) {
+            visits.set(i, 0);
+            wins.set(i, 0);
+            expansion.set(i, LEAF);
+        }
+        move[ROOT] = Move.NONE;
+        next.set(1);
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return next.get();
+    }
+
+    @Override
+    public boolean isExpanded(int node) {
+        return expansion.get(node) == EXPANDED;
+    }
+
+    @Override
+    public int childStart(int node, int roll) {
+        return firstChild[node] + rollStart[node * (ROLLS + 1) + roll - 1];
+    }
+
+    @Override
+    public int childEnd(int node, int roll) {
+        return firstChild[node] + rollStart[node * (ROLLS + 1) + roll];
+    }
+
+    @Override
+    public boolean expand(int node, GameState state, int onlyRoll, int[] moves) {
+        if (!expansion.compareAndSet(node, LEAF, EXPANDING)) {
+            return false;
+        }
+        int base = node * (ROLLS + 1);
+        int pieces = state.variant().pieces();
+        int total = 0;
+        // 先统计子节点数量，再一次性分配连续的下标区间
+        for (int roll = 1; roll <= ROLLS; roll++) {
+            rollStart[base + roll - 1] = (byte) total;
+            if (roll <= pieces && (onlyRoll == 0 || roll == onlyRoll)) {
+                total += MoveGenerator.generate(state, roll, moves);
+            }
+        }
+        rollStart[base + ROLLS] = (byte) total;
+
+        int first;
+        do {
+            first = next.get();
+            if (first + total > capacity) {
+                // 树已满，保持叶子状态让模拟直接从这里开始
+                expansion.set(node, LEAF);
+                return false;
+            }
+        } while (!next.compareAndSet(first, first + total));
+        for (int roll = 1; roll <= pieces; roll++) {
+            if (onlyRoll == 0 || roll == onlyRoll) {
+                int offset = first + rollStart[base + roll - 1];
+                int n = MoveGenerator.generate(state, roll, moves);
+                for (int i = 0; i < n; i++) {
+                    move[offset + i] = moves[i];
+                    firstChild[offset + i] = 0;
+                }
+            }
+        }
+        firstChild[node] = first;
+        expansion.set(node, EXPANDED);
+        return true;
+    }
+
+    @Override
+    public int move(int node) {
+        return move[node];
+    }
+
+    @Override
+    public int visits(int node) {
+        return visits.get(node);
+    }
+
+    @Override
+    public int wins(int node) {
+        return wins.get(node);
+    }
+
+    @Override
+    public void addVisit(int node) {
+        visits.incrementAndGet(node);
+    }
+
+    @Override
+    public void addWin(int node) {
+        wins.incrementAndGet(node);
+    }
+
+    @Override
+    public void resetTo(int move, int visits, int wins) {
+        reset();
+        this.move[ROOT] = move;
+        this.visits.set(ROOT, visits);
+        this.wins.set(ROOT, wins);
+    }
+
+    @Override
+    public int allocateChildren(int node, byte[] rollStart) {
+        int total = rollStart[ROLLS];
+        int first = next.get();
+        if (first + total > capacity) {
+            return -1;
+        }
+        next.set(first + total);
+        System.arraycopy(rollStart, 0, this.rollStart, node * (ROLLS + 1), ROLLS + 1);
+        firstChild[node] = first;
+        expansion.set(node, EXPANDED);
+        return first;
+    }
+
+    @Override
+    public void initChild(int child, int move, int visits, int wins) {
+        this.move[child] = move;
+        firstChild[child] = 0;
+        this.visits.set(child, visits);
+        this.wins.set(child, wins);
+        expansion.set(child, LEAF);
+    }
+
+    @Override
+    public int[] copyQueue(int length) {
+        if (copyQueue.length < length) {
+            copyQueue = Arrays.copyOf(copyQueue, Math.max(length, copyQueue.length * 2));
+        }
+        return copyQueue;
+    }
+}
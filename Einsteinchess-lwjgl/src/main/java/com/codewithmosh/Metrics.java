@@ -0,0 +1,135 @@
+package com.codewithmosh;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 进程内的指标注册表：计数器、延迟直方图和读取时才计算的量
+ *
+ * 记录路径上只有 LongAdder 自增或一次无竞争的加锁，不分配内存；
+ * 用 -Deinstein.metrics=false 关闭后 ENABLED 是常量 false，JIT 会把记录代码整个去掉。
+ * 同名的指标只创建一次，调用方应把返回的对象保存在静态字段里，不要在热点里按名字查找
+ */
+public final class Metrics {
+    public static final boolean ENABLED = !"false".equals(System.getProperty("einstein.metrics"));
+
+    private static final Metrics GLOBAL = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    public static Metrics global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * 注册一个读取时才计算的量，同名的会被替换
+     */
+    public void gauge(String name, DoubleSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * 多行文本报告，按名字排序，直方图给出次数、p50 / p99 / 最大值（微秒），没有数据的直方图不输出。
+     * 行尾总是 '\n'，不随平台变化，GameServer 直接把它发给客户端
+     */
+    public void report(StringBuilder out) {
+        for (Map.Entry<String, Counter> entry : new ConcurrentSkipListMap<>(counters).entrySet()) {
+            out.append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, DoubleSupplier> entry : new ConcurrentSkipListMap<>(gauges).entrySet()) {
+            out.append(entry.getKey()).append(' ').append(String.format("%.4f", entry.getValue().getAsDouble())).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : new ConcurrentSkipListMap<>(histograms).entrySet()) {
+            LatencyHistogram snapshot = entry.getValue().snapshot();
+            if (snapshot.getCount() == 0) {
+                continue;
+            }
+            out.append(entry.getKey()).append(String.format(" n=%d p50=%.1fus p99=%.1fus max=%.1fus", snapshot.getCount(),
+                    snapshot.percentile(0.50) / 1e3, snapshot.percentile(0.99) / 1e3, snapshot.getMax() / 1e3)).append('\n');
+        }
+    }
+
+    public String report() {
+        StringBuilder out = new StringBuilder();
+        report(out);
+        return out.toString();
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        private Counter() {
+        }
+
+        public void increment() {
+            if (ENABLED) {
+                value.increment();
+            }
+        }
+
+        public void add(long amount) {
+            if (ENABLED) {
+                value.add(amount);
+            }
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * 线程安全的延迟直方图：按线程号分到几个 LatencyHistogram 上，各自加锁，读取时合并
+     */
+    public static final class Histogram {
+        private final LatencyHistogram[] stripes;
+        private final int mask;
+
+        private Histogram() {
+            int count = Integer.highestOneBit(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+            stripes = new LatencyHistogram[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new LatencyHistogram();
+            }
+            mask = count - 1;
+        }
+
+        /**
+         * 记录一个值（纳秒）
+         */
+        public void record(long nanos) {
+            if (ENABLED) {
+                LatencyHistogram stripe = stripes[(int) Thread.currentThread().getId() & mask];
+                synchronized (stripe) {
+                    stripe.record(nanos);
+                }
+            }
+        }
+
+        /**
+         * 合并后的副本
+         */
+        public LatencyHistogram snapshot() {
+            LatencyHistogram merged = new LatencyHistogram();
+            for (LatencyHistogram stripe : stripes) {
+                synchronized (stripe) {
+                    merged.add(stripe);
+                }
+            }
+            return merged;
+        }
+    }
+}
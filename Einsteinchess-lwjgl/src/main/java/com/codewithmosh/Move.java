@@ -0,0 +1,106 @@
+package com.codewithmosh;
+
+/**
+ * 着法编码
+ * 一步棋打包成一个 int，走棋和悔棋都不需要分配对象
+ *
+ * 位布局：
+ * 0-2   棋子编号（0-7）
+ * 3     走棋方（0 红，1 蓝）
+ * 4-5   方向（0 横向，1 纵向，2 斜向）
+ * 6-11  起点格子（最大 8x8 棋盘）
+ * 12-17 终点格子
+ * 18-20 被吃棋子编号
+ * 21    被吃棋子的走棋方
+ * 22    是否吃子
+ *
+ * 生成的着法第 18 位以上都是 0，置换表只保存低 22 位
+ */
+public final class Move {
+    public static final int NONE = -1; // 非法着法
+
+    private static final int CAPTURE_FLAG = 1 << 22;
+
+    private Move() {
+    }
+
+    /**
+     * 构造一个尚未确定吃子情况的着法
+     */
+    public static int of(int side, int piece, int direction, int from, int to) {
+        return piece
+                | side << 3
+                | direction << 4
+                | from << 6
+                | to << 12;
+    }
+
+    /**
+     * 在着法上记录被吃掉的棋子
+     */
+    static int withCapture(int move, int capturedSide, int capturedPiece) {
+        return (move & ~(0x1F << 18)) | CAPTURE_FLAG | capturedSide << 21 | capturedPiece << 18;
+    }
+
+    public static int piece(int move) {
+        return move & 0x7;
+    }
+
+    public static int side(int move) {
+        return (move >>> 3) & 0x1;
+    }
+
+    public static int direction(int move) {
+        return (move >>> 4) & 0x3;
+    }
+
+    public static int from(int move) {
+        return (move >>> 6) & 0x3F;
+    }
+
+    public static int to(int move) {
+        return (move >>> 12) & 0x3F;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE_FLAG) != 0;
+    }
+
+    /**
+     * 被吃棋子的一方，没有吃子时返回 -1
+     */
+    public static int capturedSide(int move) {
+        return isCapture(move) ? (move >>> 21) & 0x1 : -1;
+    }
+
+    /**
+     * 被吃棋子的编号，没有吃子时返回 -1
+     */
+    public static int capturedPiece(int move) {
+        return isCapture(move) ? (move >>> 18) & 0x7 : -1;
+    }
+
+    public static String toString(int move) {
+        return toString(move, Variant.STANDARD);
+    }
+
+    /**
+     * 按 variant 的棋盘坐标显示着法
+     */
+    public static String toString(int move, Variant variant) {
+        if (move == NONE) {
+            return "none";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(side(move) == GameState.RED ? 'R' : 'B')
+                .append(piece(move) + 1)
+                .append(' ')
+                .append(variant.cellName(from(move)))
+                .append("->")
+                .append(variant.cellName(to(move)));
+        if (isCapture(move)) {
+            sb.append(" x").append(capturedSide(move) == GameState.RED ? 'R' : 'B').append(capturedPiece(move) + 1);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.codewithmosh;
+
+/**
+ * 着法生成器
+ * 所有规则都预先算成查找表（见 Variant），生成一次着法只需要几次数组访问，不分配内存
+ * 静态的查询方法都是标准棋盘的，其他变体用 Variant 上的同名方法
+ *
+ * 爱恩斯坦棋规则：掷出的编号的棋子还在，就只能走它；
+ * 否则可以走比它大的最近的棋子，或者比它小的最近的棋子
+ */
+public final class MoveGenerator {
+    public static final int DIRECTIONS = 3; // 每个棋子的走法方向数
+    public static final int MAX_MOVES = 2 * DIRECTIONS; // 一次掷骰最多的着法数
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * 给定存活掩码和点数，返回可走棋子的位掩码
+     */
+    public static int movableMask(int aliveMask, int roll) {
+        return Variant.STANDARD.movableMask(aliveMask, roll);
+    }
+
+    /**
+     * 可走棋子的数量（0、1 或 2）
+     */
+    public static int movableCount(int aliveMask, int roll) {
+        return Variant.STANDARD.movableCount(aliveMask, roll);
+    }
+
+    /**
+     * 第 index 个可走棋子的编号
+     */
+    public static int movablePiece(int aliveMask, int roll, int index) {
+        return Variant.STANDARD.movablePiece(aliveMask, roll, index);
+    }
+
+    /**
+     * 查表得到沿方向走一步后的格子，越界返回 -1
+     */
+    public static int target(int side, int cell, int direction) {
+        return Variant.STANDARD.targets[(side * GameState.CELLS + cell) * DIRECTIONS + direction];
+    }
+
+    /**
+     * 生成当前走棋方在掷出 roll 时的全部合法着法，写入 moves 并返回数量
+     * moves 的长度至少为 MAX_MOVES
+     */
+    public static int generate(GameState state, int roll, int[] moves) {
+        Variant variant = state.variant();
+        int side = state.sideToMove();
+        int packed = variant.movable[state.aliveMask(side) * variant.pieces + roll - 1];
+        int count = packed & 0x3;
+        byte[] targets = variant.targets;
+        int base = side * variant.cells;
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int piece = (packed >>> (2 + 3 * i)) & 0x7;
+            int from = state.pieceCell(side, piece);
+            int offset = (base + from) * DIRECTIONS;
+            for (int direction = 0; direction < DIRECTIONS; direction++) {
+                int to = targets[offset + direction];
+                if (to >= 0) {
+                    moves[n++] = Move.of(side, piece, direction, from, to);
+                }
+            }
+        }
+        return n;
+    }
+}
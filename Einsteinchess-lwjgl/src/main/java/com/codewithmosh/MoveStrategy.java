@@ -0,0 +1,20 @@
+package com.codewithmosh;
+
+/**
+ * 走棋策略接口
+ * 给定局面和掷出的点数，返回 MoveGenerator 生成的某个合法着法，没有着法时返回 Move.NONE
+ * 策略可以在内部走棋再悔棋，但返回时必须把局面恢复原样
+ */
+public interface MoveStrategy {
+    int chooseMove(GameState state, int roll);
+
+    /**
+     * 新的一局开始，带随机性的策略用这个种子重置自己，以便按种子复盘
+     */
+    default void newGame(long seed) {
+    }
+
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
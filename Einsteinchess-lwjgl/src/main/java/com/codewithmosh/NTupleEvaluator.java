@@ -0,0 +1,222 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * n-tuple 网络评估
+ *
+ * 棋盘总是从走棋方的角度看（蓝方走棋时旋转 180 度，目标都在右下角），每个格子编码为
+ * 0 空，1-6 己方棋子，7-12 对方棋子。特征有三类：
+ * 16 个 2x2 方块，每个方块按 4 个格子的编码查一张 13^4 的表；
+ * 每个存活棋子按 (己方/对方, 存活掩码, 编号, 格子) 查一张表，体现掷中它的概率；
+ * 一个偏置项。
+ * 所有权重相加后经过 tanh 得到 (-1, 1) 的局面分
+ *
+ * 特征按标准 5x5 棋盘、6 个棋子编码，其他变体的局面会抛出 IllegalArgumentException。
+ * 评估不分配内存，权重数组可以被多个线程共享；训练见 NTupleTrainer，
+ * 一次评估多个局面见 BatchEvaluator
+ *
+ * 权重文件格式（小端）：
+ * 0  int  魔数 "EZNT"
+ * 4  int  版本
+ * 8  int  权重个数
+ * 12 int  保留
+ * 16 起为 float 权重
+ */
+public class NTupleEvaluator implements Evaluator {
+    public static final int MAGIC = 0x544E5A45; // "EZNT"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+
+    static final int STATES = 1 + 2 * GameState.PIECES; // 每个格子的编码数
+    static final int TUPLE_CELLS = 4;
+    static final int TUPLE_ENTRIES = STATES * STATES * STATES * STATES;
+    static final int TUPLES = (GameState.SIZE - 1) * (GameState.SIZE - 1);
+    static final int PIECE_ENTRIES = 2 * (GameState.ALL_ALIVE + 1) * GameState.PIECES * GameState.CELLS;
+    static final int PIECE_BASE = TUPLES * TUPLE_ENTRIES;
+    static final int BIAS = PIECE_BASE + PIECE_ENTRIES;
+    public static final int WEIGHTS = BIAS + 1;
+    public static final int MAX_FEATURES = TUPLES + 2 * GameState.PIECES + 1;
+
+    private static final int MIRROR = GameState.CELLS - 1;
+
+    // [方块 * 4 + i] -> 格子
+    static final byte[] TUPLE_CELL = new byte[TUPLES * TUPLE_CELLS];
+
+    static {
+        int tuple = 0;
+        for (int y = 0; y + 1 < GameState.SIZE; y++) {
+            for (int x = 0; x + 1 < GameState.SIZE; x++) {
+                TUPLE_CELL[tuple * TUPLE_CELLS] = (byte) GameState.cell(x, y);
+                TUPLE_CELL[tuple * TUPLE_CELLS + 1] = (byte) GameState.cell(x + 1, y);
+                TUPLE_CELL[tuple * TUPLE_CELLS + 2] = (byte) GameState.cell(x, y + 1);
+                TUPLE_CELL[tuple * TUPLE_CELLS + 3] = (byte) GameState.cell(x + 1, y + 1);
+                tuple++;
+            }
+        }
+    }
+
+    private final float[] weights;
+
+    /**
+     * 全零权重，所有局面评估为 0
+     */
+    public NTupleEvaluator() {
+        this(new float[WEIGHTS]);
+    }
+
+    /**
+     * 直接使用给定的权重数组（不复制），训练时多个线程共享同一个数组
+     */
+    public NTupleEvaluator(float[] weights) {
+        if (weights.length != WEIGHTS) {
+            throw new IllegalArgumentException("权重个数应为 " + WEIGHTS + "，实际为 " + weights.length);
+        }
+        this.weights = weights;
+    }
+
+    public float[] weights() {
+        return weights;
+    }
+
+    @Override
+    public float evaluate(GameState state) {
+        requireStandard(state);
+        if (state.isGameOver()) {
+            return state.winner() == state.sideToMove() ? WIN : LOSS;
+        }
+        return (float) Math.tanh(sum(state));
+    }
+
+    /**
+     * tanh 之前的权重和
+     */
+    float sum(GameState state) {
+        long lo = 0;
+        long hi = 0;
+        int side = state.sideToMove();
+        float total = weights[BIAS];
+        for (int owner = 0; owner < 2; owner++) {
+            int color = owner == 0 ? side : GameState.opponent(side);
+            int alive = state.aliveMask(color);
+            for (int piece = 0; piece < GameState.PIECES; piece++) {
+                if ((alive & (1 << piece)) != 0) {
+                    int cell = orient(side, state.pieceCell(color, piece));
+                    long code = 1 + owner * GameState.PIECES + piece;
+                    if (cell < 16) {
+                        lo |= code << (cell * 4);
+                    } else {
+                        hi |= code << ((cell - 16) * 4);
+                    }
+                    total += weights[pieceFeature(owner, alive, piece, cell)];
+                }
+            }
+        }
+        for (int tuple = 0; tuple < TUPLES; tuple++) {
+            total += weights[tupleFeature(tuple, lo, hi)];
+        }
+        return total;
+    }
+
+    /**
+     * 把局面的特征下标写入 features[offset...]，返回个数（最多 MAX_FEATURES），训练时使用
+     */
+    static int features(GameState state, int[] features, int offset) {
+        requireStandard(state);
+        long lo = 0;
+        long hi = 0;
+        int side = state.sideToMove();
+        int count = offset;
+        features[count++] = BIAS;
+        for (int owner = 0; owner < 2; owner++) {
+            int color = owner == 0 ? side : GameState.opponent(side);
+            int alive = state.aliveMask(color);
+            for (int piece = 0; piece < GameState.PIECES; piece++) {
+                if ((alive & (1 << piece)) != 0) {
+                    int cell = orient(side, state.pieceCell(color, piece));
+                    long code = 1 + owner * GameState.PIECES + piece;
+                    if (cell < 16) {
+                        lo |= code << (cell * 4);
+                    } else {
+                        hi |= code << ((cell - 16) * 4);
+                    }
+                    features[count++] = pieceFeature(owner, alive, piece, cell);
+                }
+            }
+        }
+        for (int tuple = 0; tuple < TUPLES; tuple++) {
+            features[count++] = tupleFeature(tuple, lo, hi);
+        }
+        return count - offset;
+    }
+
+    /**
+     * 特征和 PositionBatch 都按 GameState.PIECES、GameState.CELLS 固定编码，不能用于其他变体
+     */
+    static void requireStandard(GameState state) {
+        if (!state.variant().isStandard()) {
+            throw new IllegalArgumentException("n-tuple 网络只支持标准棋盘，不支持 " + state.variant());
+        }
+    }
+
+    static int orient(int side, int cell) {
+        return side == GameState.RED ? cell : MIRROR - cell;
+    }
+
+    static int pieceFeature(int owner, int alive, int piece, int cell) {
+        return PIECE_BASE + ((owner * (GameState.ALL_ALIVE + 1) + alive) * GameState.PIECES + piece) * GameState.CELLS + cell;
+    }
+
+    private static int tupleFeature(int tuple, long lo, long hi) {
+        int index = 0;
+        for (int i = 0; i < TUPLE_CELLS; i++) {
+            int cell = TUPLE_CELL[tuple * TUPLE_CELLS + i];
+            long code = cell < 16 ? lo >>> (cell * 4) : hi >>> ((cell - 16) * 4);
+            index = index * STATES + (int) (code & 0xF);
+        }
+        return tuple * TUPLE_ENTRIES + index;
+    }
+
+    /**
+     * 读取权重文件：映射后整块复制到 float 数组
+     */
+    public static NTupleEvaluator load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long expected = HEADER_BYTES + (long) WEIGHTS * Float.BYTES;
+            if (channel.size() != expected) {
+                throw new IOException("权重文件大小不对: " + channel.size() + "，应为 " + expected);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION || data.getInt(8) != WEIGHTS) {
+                throw new IOException("不是 n-tuple 权重文件: " + path);
+            }
+            float[] weights = new float[WEIGHTS];
+            data.position(HEADER_BYTES);
+            data.asFloatBuffer().get(weights);
+            return new NTupleEvaluator(weights);
+        }
+    }
+
+    /**
+     * 写入权重文件，训练线程还在更新时写出的是某一时刻附近的近似快照
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_BYTES + WEIGHTS * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(WEIGHTS).putInt(0);
+        buffer.asFloatBuffer().put(weights);
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.codewithmosh;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用 TD(λ) 自我对弈训练 NTupleEvaluator
+ *
+ * 每个线程独立地下完整的一局：掷骰后对每个着法评估走完后的局面，按负极大值选最好的一步，
+ * 以 epsilon 的概率随机走。一局结束后从终局往回计算每个局面的 λ 回报
+ * G(t) = -((1 - λ) V(t+1) + λ G(t+1))，终局为确定的胜负，然后沿 tanh 的梯度更新这一局用到的权重。
+ * 所有线程共享同一个权重数组，更新不加锁（Hogwild），偶尔丢失的更新对稀疏特征影响很小。
+ * 一次掷骰最多只有 6 个候选局面，凑不满一组向量，所以每个线程同时下 LOCKSTEP 局：每一步把这些对局的
+ * 候选局面放进同一批，由 BatchEvaluator 一次评估。启动时加上 --add-modules jdk.incubator.vector，
+ * 批里满一组向量宽度的部分走向量指令，剩下的走标量
+ *
+ * 用法：NTupleTrainer --games 1000000 --threads 8 --alpha 0.01 --lambda 0.7 --epsilon 0.05
+ *                     --seed 1 --init 旧权重 --output ntuple.bin
+ */
+public class NTupleTrainer {
+    private static final int MAX_PLIES = 512; // 每步都在前进或吃子，一局远少于这么多步
+    private static final int REPORT_INTERVAL = 20_000;
+    private static final int LOCKSTEP = 8; // 每个线程同时下的局数，平均每批二十多个局面
+    private static final int BATCH = LOCKSTEP * MoveGenerator.MAX_MOVES;
+
+    private final float[] weights;
+    private final NTupleEvaluator evaluator;
+    private final float alpha;
+    private final float lambda;
+    private final float epsilon;
+    private final long seed;
+
+    private final AtomicLong games = new AtomicLong(); // 已分配的对局序号
+    private final LongAdder finished = new LongAdder();
+    private final LongAdder redWins = new LongAdder();
+    private final LongAdder plies = new LongAdder();
+    private final LongAdder intervalPlies = new LongAdder();
+    private final DoubleAdder squaredError = new DoubleAdder();
+
+    public NTupleTrainer(NTupleEvaluator evaluator, float alpha, float lambda, float epsilon, long seed) {
+        this.evaluator = evaluator;
+        this.weights = evaluator.weights();
+        this.alpha = alpha;
+        this.lambda = lambda;
+        this.epsilon = epsilon;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long totalGames = 100_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        float alpha = 0.01f;
+        float lambda = 0.7f;
+        float epsilon = 0.05f;
+        long seed = System.nanoTime();
+        Path init = null;
+        Path output = Paths.get("ntuple.bin");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--games":
+                    totalGames = Long.parseLong(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--alpha":
+                    alpha = Float.parseFloat(args[i + 1]);
+                    break;
+                case "--lambda":
+                    lambda = Float.parseFloat(args[i + 1]);
+                    break;
+                case "--epsilon":
+                    epsilon = Float.parseFloat(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--init":
+                    init = Paths.get(args[i + 1]);
+                    break;
+                case "--output":
+                    output = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+
+        NTupleEvaluator evaluator = init != null && Files.exists(init) ? NTupleEvaluator.load(init) : new NTupleEvaluator();
+        NTupleTrainer trainer = new NTupleTrainer(evaluator, alpha, lambda, epsilon, seed);
+        System.out.println("权重个数 " + NTupleEvaluator.WEIGHTS + "，线程数 " + threads + "，种子 " + seed);
+        long start = System.nanoTime();
+        trainer.train(totalGames, threads);
+        System.out.printf("训练完成，%d 局，用时 %.1f 秒%n", trainer.getGames(), (System.nanoTime() - start) / 1e9);
+        evaluator.save(output);
+        System.out.println("已写入 " + output);
+    }
+
+    /**
+     * 用 threads 个线程一共下 totalGames 局
+     */
+    public void train(long totalGames, int threads) throws InterruptedException {
+        long target = games.get() + totalGames;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            long workerSeed = Dice.gameSeed(seed, -1 - i);
+            workers[i] = new Thread(() -> work(target, workerSeed), "ntuple-trainer-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        games.set(target);
+    }
+
+    private void work(long target, long workerSeed) {
+        SplittableRandom random = new SplittableRandom(workerSeed);
+        BatchEvaluator batchEvaluator = BatchEvaluator.create(evaluator);
+        PositionBatch children = new PositionBatch(BATCH);
+        float[] childValues = new float[BATCH];
+        Game[] lockstep = new Game[LOCKSTEP];
+        int playing = 0;
+        for (int i = 0; i < LOCKSTEP; i++) {
+            lockstep[i] = new Game();
+            if (start(lockstep[i], target)) {
+                playing++;
+            }
+        }
+        while (playing > 0) {
+            children.clear();
+            for (Game g : lockstep) {
+                if (g.playing) {
+                    step(g, random, children);
+                }
+            }
+            if (children.size() > 0) {
+                batchEvaluator.evaluate(children, childValues);
+            }
+            for (Game g : lockstep) {
+                if (!g.playing) {
+                    continue;
+                }
+                if (g.first >= 0) {
+                    g.state.makeMove(g.moves[best(childValues, g.first, g.count)]);
+                }
+                if (g.state.isGameOver()) {
+                    finish(g);
+                    if (!start(g, target)) {
+                        playing--;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 领取下一局，全部分配完时返回 false
+     */
+    private boolean start(Game g, long target) {
+        long game = games.getAndIncrement();
+        if (game >= target) {
+            g.playing = false;
+            return false;
+        }
+        g.index = game;
+        g.dice = Dice.forGame(seed, game);
+        g.state.reset();
+        g.length = 0;
+        g.playing = true;
+        return true;
+    }
+
+    /**
+     * 记下当前局面并掷骰；需要贪心选择时把候选局面追加到 children，等整批评估完再走
+     */
+    private void step(Game g, SplittableRandom random, PositionBatch children) {
+        GameState state = g.state;
+        int length = g.length;
+        g.featureCounts[length] = NTupleEvaluator.features(state, g.features, length * NTupleEvaluator.MAX_FEATURES);
+        g.values[length] = evaluator.evaluate(state);
+        g.length++;
+        g.first = -1;
+        int count = MoveGenerator.generate(state, g.dice.roll(), g.moves);
+        if (count == 0) {
+            state.pass();
+        } else if (random.nextFloat() < epsilon) {
+            state.makeMove(g.moves[random.nextInt(count)]);
+        } else {
+            g.first = children.size();
+            for (int i = 0; i < count; i++) {
+                int move = state.makeMove(g.moves[i]);
+                children.add(state);
+                state.unmakeMove(move);
+            }
+            g.count = count;
+        }
+    }
+
+    private void finish(Game g) {
+        int length = g.length;
+        g.values[length] = evaluator.evaluate(g.state);
+        update(g.features, g.featureCounts, g.values, length);
+        plies.add(length);
+        intervalPlies.add(length);
+        if (g.state.winner() == GameState.RED) {
+            redWins.increment();
+        }
+        finished.increment();
+        if ((g.index + 1) % REPORT_INTERVAL == 0) {
+            report();
+        }
+    }
+
+    /**
+     * 贪心选择：走完后对方的局面分最低的着法
+     *
+     * @return 相对 first 的下标
+     */
+    private static int best(float[] childValues, int first, int count) {
+        int best = 0;
+        float bestValue = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            float value = -childValues[first + i];
+            if (value > bestValue) {
+                bestValue = value;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 从终局往回计算 λ 回报并更新权重
+     */
+    private void update(int[] features, int[] featureCounts, float[] values, int length) {
+        float target = values[length];
+        double error = 0;
+        for (int t = length - 1; t >= 0; t--) {
+            target = -((1 - lambda) * values[t + 1] + lambda * target);
+            int base = t * NTupleEvaluator.MAX_FEATURES;
+            int count = featureCounts[t];
+            float sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += weights[features[base + i]];
+            }
+            float value = (float) Math.tanh(sum);
+            float delta = target - value;
+            error += delta * delta;
+            float step = alpha / count * delta * (1 - value * value);
+            for (int i = 0; i < count; i++) {
+                weights[features[base + i]] += step;
+            }
+        }
+        squaredError.add(error);
+    }
+
+    private void report() {
+        long done = finished.sum();
+        System.out.printf("%d 局，平均 %.1f 步，红方胜率 %.2f%%，TD 均方误差 %.4f%n", done,
+                (double) plies.sum() / done, 100.0 * redWins.sum() / done,
+                squaredError.sumThenReset() / Math.max(1, intervalPlies.sumThenReset()));
+    }
+
+    public long getGames() {
+        return finished.sum();
+    }
+
+    /**
+     * 一个线程里正在下的一局
+     */
+    private static final class Game {
+        final GameState state = new GameState();
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        // 每个局面的特征下标，按局面连续存放
+        final int[] features = new int[MAX_PLIES * NTupleEvaluator.MAX_FEATURES];
+        final int[] featureCounts = new int[MAX_PLIES];
+        final float[] values = new float[MAX_PLIES + 1];
+        Dice dice;
+        long index;
+        int length;
+        boolean playing;
+        int first; // 候选局面在批里的起点，这一步不需要评估时为 -1
+        int count;
+    }
+}
@@ -0,0 +1,131 @@
+package com.codewithmosh;
+
+/**
+ * 蒙特卡洛树节点的存储方式
+ *
+ * 每个节点表示一个“即将掷骰”的局面，由一步着法到达。
+ * 一个节点的全部子节点一次性连续分配，按点数分段，点数 r 的子节点为 childStart(node, r) 到 childEnd(node, r) - 1
+ * 访问次数、胜场和展开状态的修改都是原子的，多个线程可以无锁地共享同一棵树
+ *
+ * 点数按最多棋子数分段，比当前变体骰子面数大的点数没有子节点
+ *
+ * MctsTree 把节点放在堆上的数组里，OffHeapNodeStore 放在堆外的内存池里
+ */
+public interface NodeStore {
+    int ROOT = 0;
+    int ROLLS = Variant.MAX_PIECES; // 每个节点的点数分段数
+
+    /**
+     * 清空树，只保留根节点
+     */
+    void reset();
+
+    int capacity();
+
+    /**
+     * 已分配的节点数
+     */
+    int size();
+
+    boolean isExpanded(int node);
+
+    int childStart(int node, int roll);
+
+    int childEnd(int node, int roll);
+
+    /**
+     * 尝试展开节点，只有抢到展开权的线程会真正分配子节点
+     * onlyRoll 大于 0 时只为这个点数生成子节点（用于已经掷过骰的根节点）
+     *
+     * @param moves 临时着法缓冲，长度至少为 MoveGenerator.MAX_MOVES
+     * @return 是否由当前线程完成了展开
+     */
+    boolean expand(int node, GameState state, int onlyRoll, int[] moves);
+
+    /**
+     * 到达该节点的着法
+     */
+    int move(int node);
+
+    /**
+     * 访问次数（包含虚拟损失）
+     */
+    int visits(int node);
+
+    /**
+     * 到达该节点的走棋方赢下的模拟次数
+     */
+    int wins(int node);
+
+    void addVisit(int node);
+
+    void addWin(int node);
+
+    /**
+     * 清空后把节点写成根节点，复制子树时使用
+     */
+    void resetTo(int move, int visits, int wins);
+
+    /**
+     * 为已清空统计的节点一次性分配 rollStart[ROLLS] 个子节点并标记为已展开，子节点的着法和统计由 initChild 写入
+     *
+     * @param rollStart 长度为 ROLLS + 1，[点数 - 1] 为该点数子节点的相对起点，最后一项是子节点总数
+     * @return 第一个子节点的下标，容量不足时返回 -1，节点保持叶子状态
+     */
+    int allocateChildren(int node, byte[] rollStart);
+
+    void initChild(int child, int move, int visits, int wins);
+
+    /**
+     * copySubtree 用的队列，存储自己保留并在每次复制时复用，扩容时保留原有内容
+     *
+     * @return 长度至少为 length 的数组
+     */
+    int[] copyQueue(int length);
+
+    /**
+     * 把 source 中以 node 为根的子树复制到本存储，node 成为新的根节点，本存储原有的内容被清空
+     * 按层复制，容量不足时更深的节点保持叶子状态
+     *
+     * @return 复制的节点数
+     */
+    default int copySubtree(NodeStore source, int node) {
+        resetTo(source.move(node), source.visits(node), source.wins(node));
+        int[] queue = copyQueue(16);
+        byte[] rollStart = new byte[ROLLS + 1];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = node;
+        queue[tail++] = ROOT;
+        int copied = 1;
+        while (head < tail) {
+            int from = queue[head++];
+            int to = queue[head++];
+            if (!source.isExpanded(from)) {
+                continue;
+            }
+            int base = source.childStart(from, 1);
+            for (int roll = 1; roll <= ROLLS; roll++) {
+                rollStart[roll - 1] = (byte) (source.childStart(from, roll) - base);
+            }
+            rollStart[ROLLS] = (byte) (source.childEnd(from, ROLLS) - base);
+            int first = allocateChildren(to, rollStart);
+            if (first < 0) {
+                continue;
+            }
+            for (int i = 0; i < rollStart[ROLLS]; i++) {
+                int child = base + i;
+                initChild(first + i, source.move(child), source.visits(child), source.wins(child));
+                if (source.isExpanded(child)) {
+                    if (tail + 2 > queue.length) {
+                        queue = copyQueue(tail + 2);
+                    }
+                    queue[tail++] = child;
+                    queue[tail++] = first + i;
+                }
+            }
+            copied += rollStart[ROLLS];
+        }
+        return copied;
+    }
+}
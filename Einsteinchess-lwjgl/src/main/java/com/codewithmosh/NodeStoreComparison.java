@@ -0,0 +1,179 @@
+package com.codewithmosh;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.ThreadMXBean;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 比较蒙特卡洛树节点放在堆上和堆外时的垃圾回收情况
+ *
+ * 每种存储都用同样的种子自我对弈若干局，每局重新创建搜索（和模拟、锦标赛里一样），
+ * 打印垃圾回收次数、总停顿和最长停顿、Java 堆分配速度，以及堆外内存池的峰值和分配速度
+ *
+ * 用法：NodeStoreComparison --games 20 --playouts 20000 --threads 1 --stores heap,system,jemalloc,rpmalloc --seed 1
+ * 建议加 -Xmx 限制堆大小，差别更明显
+ */
+public class NodeStoreComparison {
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final NotificationListener listener = (notification, handback) -> {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            recordPause(info.getGcInfo().getDuration());
+        }
+    };
+
+    // 当前一轮的停顿统计，单位毫秒
+    private long pauses;
+    private long pauseMillis;
+    private long maxPauseMillis;
+
+    private synchronized void recordPause(long millis) {
+        pauses++;
+        pauseMillis += millis;
+        maxPauseMillis = Math.max(maxPauseMillis, millis);
+    }
+
+    private synchronized void resetPauses() {
+        pauses = 0;
+        pauseMillis = 0;
+        maxPauseMillis = 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        long games = 20;
+        long playouts = 20_000;
+        int threads = 1;
+        String stores = "heap,system,jemalloc,rpmalloc";
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--games":
+                    games = Long.parseLong(args[i + 1]);
+                    break;
+                case "--playouts":
+                    playouts = Long.parseLong(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--stores":
+                    stores = args[i + 1];
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        NodeStoreComparison comparison = new NodeStoreComparison();
+        for (GarbageCollectorMXBean collector : comparison.collectors) {
+            ((NotificationEmitter) collector).addNotificationListener(comparison.listener, null, null);
+        }
+        System.out.println("对局数: " + games + "，每步模拟: " + playouts + "，线程数: " + threads + "，种子: " + seed);
+        for (String store : stores.split(",")) {
+            comparison.run(store, games, playouts, threads, seed);
+        }
+    }
+
+    private void run(String store, long games, long playouts, int threads, long seed) {
+        IntFunction<NodeStore> factory = store.equals("heap") ? MctsTree::new
+                : OffHeapNodeStore.factory(OffHeapArena.Backend.parse(store));
+        int capacity = (int) Math.min(playouts * MoveGenerator.MAX_MOVES * GameState.PIECES + 64, 1 << 22);
+        GameState state = new GameState();
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        resetPauses();
+        long heapBytes = 0;
+        long start = System.nanoTime();
+        Tally tally = new Tally();
+        long peakBytes = 0;
+        long arenaBytes = 0;
+        for (long game = 0; game < games; game++) {
+            MctsSearch red = new MctsSearch(MctsSearch.Mode.TREE_PARALLEL, threads, playouts, 0, capacity, seed + game * 2, factory, true);
+            MctsSearch blue = new MctsSearch(MctsSearch.Mode.TREE_PARALLEL, threads, playouts, 0, capacity, seed + game * 2 + 1, factory, true);
+            long before = threadAllocatedBytes();
+            SimulationRunner.play(state, tally.wrap(red), tally.wrap(blue), Dice.forGame(seed, game));
+            heapBytes += threadAllocatedBytes() - before; // 线程池关闭前统计，搜索线程还活着
+            for (MctsSearch search : new MctsSearch[]{red, blue}) {
+                for (NodeStore nodes : search.stores()) {
+                    if (nodes instanceof OffHeapNodeStore) {
+                        OffHeapArena arena = ((OffHeapNodeStore) nodes).arena();
+                        peakBytes = Math.max(peakBytes, arena.getPeakBytes());
+                        arenaBytes += arena.getAllocatedBytes();
+                    }
+                }
+                search.close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long heapPeak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPeak += pool.getPeakUsage().getUsed();
+            }
+        }
+        synchronized (this) {
+            System.out.printf("%-9s %.1f 秒，%.0f 模拟/秒，平均每步复用 %.0f 个节点%n", store, seconds, tally.playouts / seconds,
+                    (double) tally.reused / Math.max(1, tally.searches));
+            System.out.printf("          垃圾回收 %d 次，共停顿 %d 毫秒，最长 %d 毫秒；Java 堆峰值 %.1f MB，分配 %.1f MB/秒%n",
+                    pauses, pauseMillis, maxPauseMillis, heapPeak / 1048576.0, heapBytes / 1048576.0 / seconds);
+            if (arenaBytes > 0) {
+                System.out.printf("          堆外峰值 %.1f MB，堆外分配 %.1f MB/秒%n", peakBytes / 1048576.0,
+                        arenaBytes / 1048576.0 / seconds);
+            }
+        }
+    }
+
+    /**
+     * 所有存活线程累计在 Java 堆上分配的字节数
+     */
+    private static long threadAllocatedBytes() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+
+    /**
+     * 累计每次搜索的模拟次数和复用的节点数
+     */
+    private static final class Tally {
+        long playouts;
+        long reused;
+        long searches;
+
+        MoveStrategy wrap(MctsSearch search) {
+            return new MoveStrategy() {
+                @Override
+                public int chooseMove(GameState state, int roll) {
+                    int move = search.chooseMove(state, roll);
+                    if (search.getPlayouts() > 0) {
+                        playouts += search.getPlayouts();
+                        reused += search.getReusedNodes();
+                        searches++;
+                    }
+                    return move;
+                }
+
+                @Override
+                public String name() {
+                    return search.name();
+                }
+            };
+        }
+    }
+}
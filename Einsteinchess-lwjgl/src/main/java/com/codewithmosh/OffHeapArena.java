@@ -0,0 +1,229 @@
+package com.codewithmosh;
+
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.system.jemalloc.JEmalloc;
+import org.lwjgl.system.rpmalloc.RPmalloc;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 堆外内存池（arena），用指针碰撞的方式从大块内存里切分，不单独释放
+ *
+ * 内存按块向分配器申请，reset 只把分配位置拨回开头，已申请的块留着下次复用，
+ * 因此每步棋之间清空整棵搜索树只是常数时间，稳定之后不再调用底层分配器；
+ * close 时才把所有块还给分配器
+ *
+ * 分配出的内存不清零，线程安全
+ */
+public class OffHeapArena implements AutoCloseable {
+    public static final int DEFAULT_CHUNK_BYTES = 1 << 20;
+    public static final int ALIGNMENT = 64; // 缓存行
+
+    /**
+     * 底层分配器
+     */
+    public enum Backend {
+        /** LWJGL 默认的 MemoryUtil 分配器 */
+        SYSTEM,
+        /** jemalloc */
+        JEMALLOC,
+        /** rpmalloc，每个调用线程都需要先初始化 */
+        RPMALLOC;
+
+        private static boolean rpmallocInitialized;
+
+        long allocate(long bytes) {
+            switch (this) {
+                case JEMALLOC:
+                    return JEmalloc.nje_aligned_alloc(ALIGNMENT, bytes);
+                case RPMALLOC:
+                    initializeRpmalloc();
+                    return RPmalloc.nrpaligned_alloc(ALIGNMENT, bytes);
+                default:
+                    return MemoryUtil.nmemAlignedAlloc(ALIGNMENT, bytes);
+            }
+        }
+
+        void free(long address) {
+            switch (this) {
+                case JEMALLOC:
+                    JEmalloc.nje_free(address);
+                    break;
+                case RPMALLOC:
+                    initializeRpmalloc();
+                    RPmalloc.nrpfree(address);
+                    break;
+                default:
+                    MemoryUtil.nmemAlignedFree(address);
+            }
+        }
+
+        private static void initializeRpmalloc() {
+            synchronized (Backend.class) {
+                if (!rpmallocInitialized) {
+                    RPmalloc.rpmalloc_initialize();
+                    rpmallocInitialized = true;
+                }
+            }
+            if (!RPmalloc.rpmalloc_is_thread_initialized()) {
+                RPmalloc.rpmalloc_thread_initialize();
+            }
+        }
+
+        public static Backend parse(String name) {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Backend backend;
+    private final long chunkBytes;
+    private final long created = System.nanoTime();
+    private long[] chunks = new long[8];
+    private int chunkCount;
+    private int current = -1; // 正在切分的块
+    private long offset; // 当前块里已用的字节数
+    private boolean closed;
+
+    // 统计信息
+    private long usedBytes; // 上次 reset 之后分配出去的字节数
+    private long peakBytes;
+    private long allocatedBytes; // 累计分配出去的字节数
+    private long resets;
+
+    public OffHeapArena(Backend backend) {
+        this(backend, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param chunkBytes 每次向分配器申请的字节数，也是单次分配的上限
+     */
+    public OffHeapArena(Backend backend, long chunkBytes) {
+        if (chunkBytes < ALIGNMENT) {
+            throw new IllegalArgumentException("内存块太小: " + chunkBytes);
+        }
+        this.backend = backend;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * 分配 bytes 字节，起始地址按缓存行对齐，返回内存地址
+     */
+    public synchronized long allocate(long bytes) {
+        if (closed) {
+            throw new IllegalStateException("内存池已关闭");
+        }
+        if (bytes <= 0 || bytes > chunkBytes) {
+            throw new IllegalArgumentException("分配大小超出范围: " + bytes);
+        }
+        long start = (offset + ALIGNMENT - 1) & -ALIGNMENT;
+        if (current < 0 || start + bytes > chunkBytes) {
+            nextChunk();
+            start = 0;
+        }
+        offset = start + bytes;
+        usedBytes += bytes;
+        allocatedBytes += bytes;
+        peakBytes = Math.max(peakBytes, usedBytes);
+        return chunks[current] + start;
+    }
+
+    /**
+     * 分配 bytes 字节并包装成本机字节序的直接缓冲区
+     */
+    public ByteBuffer allocateBuffer(int bytes) {
+        return MemoryUtil.memByteBuffer(allocate(bytes), bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private void nextChunk() {
+        current++;
+        if (current == chunkCount) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            long address = backend.allocate(chunkBytes);
+            if (address == 0) {
+                current--;
+                throw new OutOfMemoryError("无法分配 " + chunkBytes + " 字节的堆外内存");
+            }
+            chunks[chunkCount++] = address;
+        }
+        offset = 0;
+    }
+
+    /**
+     * 丢弃所有分配，已申请的块留给之后的分配复用
+     * 调用方必须保证之前分配的内存不再被使用
+     */
+    public synchronized void reset() {
+        current = -1;
+        offset = 0;
+        usedBytes = 0;
+        resets++;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 两次 reset 之间用得最多的字节数
+     */
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    /**
+     * 向分配器申请的字节数
+     */
+    public synchronized long getReservedBytes() {
+        return chunkCount * chunkBytes;
+    }
+
+    /**
+     * 累计分配的字节数
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 创建以来平均每秒分配的字节数
+     */
+    public synchronized double getAllocationRate() {
+        long elapsed = System.nanoTime() - created;
+        return elapsed == 0 ? 0 : allocatedBytes * 1e9 / elapsed;
+    }
+
+    public synchronized long getResets() {
+        return resets;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s 内存池：峰值 %.1f MB，占用 %.1f MB，累计分配 %.1f MB（%.1f MB/秒），清空 %d 次",
+                backend.name().toLowerCase(Locale.ROOT), peakBytes / 1048576.0, getReservedBytes() / 1048576.0,
+                allocatedBytes / 1048576.0, getAllocationRate() / 1048576.0, resets);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (int i = 0; i < chunkCount; i++) {
+            backend.free(chunks[i]);
+        }
+        chunkCount = 0;
+        current = -1;
+    }
+}
@@ -0,0 +1,250 @@
+package com.codewithmosh;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * 蒙特卡洛树的堆外节点存储
+ *
+ * 节点放在 OffHeapArena 分配的内存块里，每块 32768 个节点，树长到哪里才申请到哪里，
+ * 不占用 Java 堆，垃圾回收也不用复制或扫描它们；reset 直接清空内存池，不逐个清零节点
+ *
+ * 每个节点 32 字节：
+ * 0  int   到达该节点的着法
+ * 4  int   第一个子节点下标
+ * 8  int   访问次数（包含虚拟损失）
+ * 12 int   到达该节点的走棋方赢下的模拟次数
+ * 16 int   展开状态
+ * 20 byte[9] 各点数子节点的相对起点
+ */
+public class OffHeapNodeStore implements NodeStore, AutoCloseable {
+    static final int NODE_BYTES = 32;
+    private static final int CHUNK_SHIFT = 15;
+    private static final int CHUNK_NODES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_NODES - 1;
+
+    private static final int MOVE = 0;
+    private static final int FIRST_CHILD = 4;
+    private static final int VISITS = 8;
+    private static final int WINS = 12;
+    private static final int EXPANSION = 16;
+    private static final int ROLL_START = 20;
+
+    private static final int LEAF = 0;
+    private static final int EXPANDING = 1;
+    private static final int EXPANDED = 2;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle CHUNK = MethodHandles.arrayElementVarHandle(ByteBuffer[].class);
+
+    private final OffHeapArena arena;
+    private final int capacity;
+    private final ByteBuffer[] chunks;
+    private final AtomicInteger next = new AtomicInteger(1);
+    private int[] copyQueue = new int[16]; // 复制子树时复用，放在堆上：复制开始时会清空内存池
+
+    public OffHeapNodeStore(int capacity, OffHeapArena.Backend backend) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("容量必须大于 0");
+        }
+        this.capacity = capacity;
+        arena = new OffHeapArena(backend, (long) CHUNK_NODES * NODE_BYTES);
+        chunks = new ByteBuffer[(capacity + CHUNK_MASK) >>> CHUNK_SHIFT];
+        reset();
+    }
+
+    /**
+     * 供 MctsSearch 使用的构造方式
+     */
+    public static IntFunction<NodeStore> factory(OffHeapArena.Backend backend) {
+        return capacity -> new OffHeapNodeStore(capacity, backend);
+    }
+
+    @Override
+    public void reset() {
+        arena.reset();
+        Arrays.fill(chunks, null);
+        next.set(1);
+        ensureChunks(ROOT, 1);
+        initChild(ROOT, Move.NONE, 0, 0);
+    }
+
+    /**
+     * 确保下标 [first, first + count) 所在的内存块都已分配
+     */
+    private void ensureChunks(int first, int count) {
+        int last = (first + count - 1) >>> CHUNK_SHIFT;
+        for (int i = first >>> CHUNK_SHIFT; i <= last; i++) {
+            if (CHUNK.getAcquire(chunks, i) == null) {
+                synchronized (this) {
+                    if (chunks[i] == null) {
+                        CHUNK.setRelease(chunks, i, arena.allocateBuffer(CHUNK_NODES * NODE_BYTES));
+                    }
+                }
+            }
+        }
+    }
+
+    private ByteBuffer chunk(int node) {
+        return (ByteBuffer) CHUNK.getAcquire(chunks, node >>> CHUNK_SHIFT);
+    }
+
+    private static int offset(int node) {
+        return (node & CHUNK_MASK) * NODE_BYTES;
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        return next.get();
+    }
+
+    @Override
+    public boolean isExpanded(int node) {
+        return (int) INT.getVolatile(chunk(node), offset(node) + EXPANSION) == EXPANDED;
+    }
+
+    @Override
+    public int childStart(int node, int roll) {
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        return (int) INT.get(chunk, offset + FIRST_CHILD) + chunk.get(offset + ROLL_START + roll - 1);
+    }
+
+    @Override
+    public int childEnd(int node, int roll) {
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        return (int) INT.get(chunk, offset + FIRST_CHILD) + chunk.get(offset + ROLL_START + roll);
+    }
+
+    @Override
+    public boolean expand(int node, GameState state, int onlyRoll, int[] moves) {
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        if (!INT.compareAndSet(chunk, offset + EXPANSION, LEAF, EXPANDING)) {
+            return false;
+        }
+        int pieces = state.variant().pieces();
+        int total = 0;
+        // 先统计子节点数量，再一次性分配连续的下标区间
+        for (int roll = 1; roll <= ROLLS; roll++) {
+            chunk.put(offset + ROLL_START + roll - 1, (byte) total);
+            if (roll <= pieces && (onlyRoll == 0 || roll == onlyRoll)) {
+                total += MoveGenerator.generate(state, roll, moves);
+            }
+        }
+        chunk.put(offset + ROLL_START + ROLLS, (byte) total);
+
+        int first;
+        do {
+            first = next.get();
+            if (first + total > capacity) {
+                // 树已满，保持叶子状态让模拟直接从这里开始
+                INT.setVolatile(chunk, offset + EXPANSION, LEAF);
+                return false;
+            }
+        } while (!next.compareAndSet(first, first + total));
+        ensureChunks(first, total);
+        for (int roll = 1; roll <= pieces; roll++) {
+            if (onlyRoll == 0 || roll == onlyRoll) {
+                int start = first + chunk.get(offset + ROLL_START + roll - 1);
+                int n = MoveGenerator.generate(state, roll, moves);
+                for (int i = 0; i < n; i++) {
+                    initChild(start + i, moves[i], 0, 0);
+                }
+            }
+        }
+        INT.set(chunk, offset + FIRST_CHILD, first);
+        INT.setVolatile(chunk, offset + EXPANSION, EXPANDED);
+        return true;
+    }
+
+    @Override
+    public int move(int node) {
+        return (int) INT.get(chunk(node), offset(node) + MOVE);
+    }
+
+    @Override
+    public int visits(int node) {
+        return (int) INT.getVolatile(chunk(node), offset(node) + VISITS);
+    }
+
+    @Override
+    public int wins(int node) {
+        return (int) INT.getVolatile(chunk(node), offset(node) + WINS);
+    }
+
+    @Override
+    public void addVisit(int node) {
+        INT.getAndAdd(chunk(node), offset(node) + VISITS, 1);
+    }
+
+    @Override
+    public void addWin(int node) {
+        INT.getAndAdd(chunk(node), offset(node) + WINS, 1);
+    }
+
+    @Override
+    public void resetTo(int move, int visits, int wins) {
+        reset();
+        initChild(ROOT, move, visits, wins);
+    }
+
+    @Override
+    public int allocateChildren(int node, byte[] rollStart) {
+        int total = rollStart[ROLLS];
+        int first = next.get();
+        if (first + total > capacity) {
+            return -1;
+        }
+        next.set(first + total);
+        ensureChunks(first, total);
+        ByteBuffer chunk = chunk(node);
+        int offset = offset(node);
+        for (int i = 0; i <= ROLLS; i++) {
+            chunk.put(offset + ROLL_START + i, rollStart[i]);
+        }
+        INT.set(chunk, offset + FIRST_CHILD, first);
+        INT.setVolatile(chunk, offset + EXPANSION, EXPANDED);
+        return first;
+    }
+
+    @Override
+    public void initChild(int child, int move, int visits, int wins) {
+        ByteBuffer chunk = chunk(child);
+        int offset = offset(child);
+        INT.set(chunk, offset + MOVE, move);
+        INT.set(chunk, offset + FIRST_CHILD, 0);
+        INT.set(chunk, offset + VISITS, visits);
+        INT.set(chunk, offset + WINS, wins);
+        INT.setVolatile(chunk, offset + EXPANSION, LEAF);
+    }
+
+    @Override
+    public int[] copyQueue(int length) {
+        if (copyQueue.length < length) {
+            copyQueue = Arrays.copyOf(copyQueue, Math.max(length, copyQueue.length * 2));
+        }
+        return copyQueue;
+    }
+
+    public OffHeapArena arena() {
+        return arena;
+    }
+
+    @Override
+    public void close() {
+        Arrays.fill(chunks, null);
+        arena.close();
+    }
+}
@@ -0,0 +1,366 @@
+package com.codewithmosh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 穷举对局树，统计指定深度的叶子数，用来验证着法生成和测量生成速度
+ *
+ * 每一层先枚举所有点数，再枚举这个点数下的所有着法（没有着法时停一手），
+ * 叶子数就是长度为 depth 的（点数，着法）序列的个数；提前分出胜负的局面算一个叶子。
+ * 浅于 SPLIT_DEPTH 的子树在当前线程里用走棋/悔棋递归，更深的子树拆成 fork-join 任务；
+ * 最后一层只数着法不走棋。可选的置换表按（局面哈希，剩余深度）缓存子树的叶子数
+ *
+ * 用法：Perft --depth 6 [--threads 4] [--hash 64] [--divide] [--variant 6x6/8]
+ *       [--position 0,1,5,6,10,2/24,23,19,18,14,22/red]
+ * position 依次是红方和蓝方各棋子的格子（-1 表示已被吃掉）以及走棋方，省略时从开局开始
+ */
+public class Perft implements AutoCloseable {
+    private static final int SPLIT_DEPTH = 4; // 剩余深度不低于它时拆成并行任务
+    private static final int CACHE_DEPTH = 2; // 剩余深度不低于它时查缓存
+
+    private final ForkJoinPool pool;
+    private final Cache cache; // 可以为 null
+
+    // 统计信息
+    private final LongAdder nodes = new LongAdder();
+    private long elapsedNanos;
+
+    /**
+     * 构造函数
+     *
+     * @param threads        并行线程数
+     * @param cacheMegabytes 缓存大小，0 表示不用缓存
+     */
+    public Perft(int threads, int cacheMegabytes) {
+        pool = new ForkJoinPool(threads);
+        cache = cacheMegabytes > 0 ? new Cache(cacheMegabytes) : null;
+    }
+
+    /**
+     * 从 state 出发深度为 depth 的叶子数，state 不会被修改
+     */
+    public long count(GameState state, int depth) {
+        long start = System.nanoTime();
+        long leaves = pool.invoke(new Task(state.copy(), depth));
+        elapsedNanos = System.nanoTime() - start;
+        return leaves;
+    }
+
+    /**
+     * 按第一步拆分叶子数，每个（点数，着法）一项，停一手时着法为 Move.NONE
+     */
+    public List<Division> divide(GameState state, int depth) {
+        long start = System.nanoTime();
+        List<Division> divisions = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        if (depth > 0 && !state.isGameOver()) {
+            nodes.increment();
+            for (int roll = 1; roll <= state.variant().pieces(); roll++) {
+                int count = MoveGenerator.generate(state, roll, moves);
+                if (count == 0) {
+                    GameState child = state.copy();
+                    child.pass();
+                    divisions.add(new Division(roll, Move.NONE));
+                    tasks.add(new Task(child, depth - 1));
+                }
+                for (int i = 0; i < count; i++) {
+                    GameState child = state.copy();
+                    divisions.add(new Division(roll, child.makeMove(moves[i])));
+                    tasks.add(new Task(child, depth - 1));
+                }
+            }
+        }
+        pool.invoke(new RecursiveTask<Void>() {
+            @Override
+            protected Void compute() {
+                invokeAll(tasks);
+                return null;
+            }
+        });
+        for (int i = 0; i < tasks.size(); i++) {
+            divisions.get(i).leaves = tasks.get(i).join();
+        }
+        elapsedNanos = System.nanoTime() - start;
+        return divisions;
+    }
+
+    /**
+     * 在当前线程里递归计数，moves[ply] 是这一层的着法缓冲
+     */
+    private long perft(GameState state, int depth, int[][] moves, int ply) {
+        if (depth == 0 || state.isGameOver()) {
+            return 1;
+        }
+        nodes.increment();
+        long key = 0;
+        if (cache != null && depth >= CACHE_DEPTH) {
+            key = Cache.key(state, depth);
+            long cached = cache.probe(key);
+            if (cached != 0) {
+                return cached;
+            }
+        }
+        int[] list = moves[ply];
+        long total = 0;
+        for (int roll = 1; roll <= state.variant().pieces(); roll++) {
+            int count = MoveGenerator.generate(state, roll, list);
+            if (count == 0) {
+                GameState child = state.copy();
+                child.pass();
+                total += perft(child, depth - 1, moves, ply + 1);
+            } else if (depth == 1) {
+                total += count; // 最后一层只数着法
+            } else {
+                for (int i = 0; i < count; i++) {
+                    int undo = state.makeMove(list[i]);
+                    total += perft(state, depth - 1, moves, ply + 1);
+                    state.unmakeMove(undo);
+                }
+            }
+        }
+        if (cache != null && depth >= CACHE_DEPTH) {
+            cache.store(key, total);
+        }
+        return total;
+    }
+
+    /**
+     * 一棵子树的计数任务，局面归任务独占
+     */
+    private final class Task extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final GameState state;
+        private final int depth;
+
+        Task(GameState state, int depth) {
+            this.state = state;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth < SPLIT_DEPTH || state.isGameOver()) {
+                return perft(state, depth, new int[depth + 1][MoveGenerator.MAX_MOVES], 0);
+            }
+            nodes.increment();
+            long key = 0;
+            if (cache != null) {
+                key = Cache.key(state, depth);
+                long cached = cache.probe(key);
+                if (cached != 0) {
+                    return cached;
+                }
+            }
+            List<Task> tasks = new ArrayList<>();
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            for (int roll = 1; roll <= state.variant().pieces(); roll++) {
+                int count = MoveGenerator.generate(state, roll, moves);
+                if (count == 0) {
+                    GameState child = state.copy();
+                    child.pass();
+                    tasks.add(new Task(child, depth - 1));
+                }
+                for (int i = 0; i < count; i++) {
+                    GameState child = state.copy();
+                    child.makeMove(moves[i]);
+                    tasks.add(new Task(child, depth - 1));
+                }
+            }
+            long total = 0;
+            for (Task task : invokeAll(tasks)) {
+                total += task.join();
+            }
+            if (cache != null) {
+                cache.store(key, total);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * divide 的一项
+     */
+    public static final class Division {
+        public final int roll;
+        public final int move;
+        long leaves;
+
+        Division(int roll, int move) {
+            this.roll = roll;
+            this.move = move;
+        }
+
+        public long leaves() {
+            return leaves;
+        }
+    }
+
+    /**
+     * 子树叶子数的无锁缓存，每个槽位两个 long：key ^ 叶子数、叶子数，做法同 TranspositionTable
+     */
+    private static final class Cache {
+        private final long[] table;
+        private final int mask;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder probes = new LongAdder();
+
+        Cache(int megabytes) {
+            long slots = Long.highestOneBit(Math.max(1, ((long) megabytes << 20) / 16));
+            if (slots * 2 > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("缓存过大: " + megabytes + "MB");
+            }
+            table = new long[(int) slots * 2];
+            mask = (int) slots - 1;
+        }
+
+        /**
+         * 局面哈希和剩余深度混合成的键
+         */
+        static long key(GameState state, int depth) {
+            long z = state.hash() + depth * 0x9E3779B97F4A7C15L;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            return z ^ (z >>> 31);
+        }
+
+        /**
+         * 命中返回叶子数（总是大于 0），未命中返回 0
+         */
+        long probe(long key) {
+            probes.increment();
+            int slot = ((int) key & mask) << 1;
+            long leaves = table[slot + 1];
+            if ((table[slot] ^ leaves) == key && leaves != 0) {
+                hits.increment();
+                return leaves;
+            }
+            return 0;
+        }
+
+        void store(long key, long leaves) {
+            int slot = ((int) key & mask) << 1;
+            table[slot] = key ^ leaves;
+            table[slot + 1] = leaves;
+        }
+    }
+
+    /**
+     * 访问过的内部节点数（不含只数着法的最后一层）
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getCacheHits() {
+        return cache == null ? 0 : cache.hits.sum();
+    }
+
+    public long getCacheProbes() {
+        return cache == null ? 0 : cache.probes.sum();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    public static void main(String[] args) {
+        int depth = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int hash = 0;
+        boolean divide = false;
+        Variant variant = Variant.STANDARD;
+        String position = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--hash":
+                    hash = Integer.parseInt(args[++i]);
+                    break;
+                case "--divide":
+                    divide = true;
+                    break;
+                case "--variant":
+                    variant = Variant.parse(args[++i]);
+                    break;
+                case "--position":
+                    position = args[++i];
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        GameState state = new GameState(variant);
+        if (position != null) {
+            setPosition(state, position);
+        }
+        System.out.println(state);
+        System.out.println("变体: " + variant + "，线程数: " + threads + "，缓存: " + hash + "MB");
+
+        try (Perft perft = new Perft(threads, hash)) {
+            for (int d = 1; d <= depth; d++) {
+                if (divide && d == depth) {
+                    long total = 0;
+                    for (Division division : perft.divide(state, d)) {
+                        System.out.printf("  点数 %d  %-24s %,d%n", division.roll,
+                                division.move == Move.NONE ? "停一手" : Move.toString(division.move, variant), division.leaves());
+                        total += division.leaves();
+                    }
+                    report(perft, d, total);
+                } else {
+                    report(perft, d, perft.count(state, d));
+                }
+            }
+            if (hash > 0) {
+                System.out.printf("缓存命中 %,d / %,d%n", perft.getCacheHits(), perft.getCacheProbes());
+            }
+        }
+    }
+
+    private static void report(Perft perft, int depth, long leaves) {
+        double seconds = perft.getElapsedNanos() / 1e9;
+        System.out.printf("深度 %2d  叶子 %,20d  %8.3f 秒  %,.0f 叶子/秒%n", depth, leaves, seconds,
+                leaves / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * 解析 "红方格子/蓝方格子/走棋方"，格子用逗号分隔，-1 表示已被吃掉
+     */
+    static void setPosition(GameState state, String text) {
+        String[] parts = text.split("/");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("局面格式应为 红方格子/蓝方格子/走棋方: " + text);
+        }
+        int pieces = state.variant().pieces();
+        int[] red = parseCells(parts[0], pieces);
+        int[] blue = parseCells(parts[1], pieces);
+        int side = parts[2].startsWith("b") ? GameState.BLUE : GameState.RED;
+        state.setPosition(red, blue, side);
+    }
+
+    private static int[] parseCells(String text, int pieces) {
+        String[] items = text.split(",");
+        if (items.length != pieces) {
+            throw new IllegalArgumentException("需要 " + pieces + " 个格子: " + text);
+        }
+        int[] cells = new int[pieces];
+        for (int i = 0; i < pieces; i++) {
+            cells[i] = Integer.parseInt(items[i].trim());
+        }
+        return cells;
+    }
+}
@@ -1,55 +1,130 @@
 package com.codewithmosh;
 
-import java.util.List;
-
 /**
  * 玩家类
- * 负责管理玩家的棋子和游戏逻辑
+ * 负责管理玩家的棋子和游戏逻辑，规则由共享的 GameState 处理
  */
 public class Player {
     private String name; // 玩家名称
-    private List<ChessPiece> pieces; // 玩家棋子列表
-    private ChessBoard board; // 棋盘引用
+    private final GameState state; // 对局局面
+    private final int side; // 所属一方
+    private MoveStrategy strategy; // 电脑玩家的走棋策略，人类玩家为 null
 
     /**
      * 构造函数
      */
-    public Player(String name, ChessBoard board) {
+    public Player(String name, GameState state, int side) {
         this.name = name;
-        this.board = board;
+        this.state = state;
+        this.side = side;
+    }
+
+    /**
+     * 构造电脑玩家
+     */
+    public Player(String name, GameState state, int side, MoveStrategy strategy) {
+        this(name, state, side);
+        this.strategy = strategy;
     }
 
     /**
      * 获取可移动的棋子
+     * 电脑玩家返回策略选中的棋子；人类玩家在大小两侧都有棋子时返回编号较小的那个
      */
     public ChessPiece getMovablePiece(int diceValue) {
         // 根据骰子值获取可移动的棋子
-        return null; // 这里需要实现逻辑
+        if (strategy != null && state.sideToMove() == side && !state.isGameOver()) {
+            int move = strategy.chooseMove(state, diceValue);
+            return move == Move.NONE ? null : toChessPiece(Move.piece(move));
+        }
+        int alive = state.aliveMask(side);
+        if (MoveGenerator.movableCount(alive, diceValue) == 0) {
+            return null;
+        }
+        return toChessPiece(MoveGenerator.movablePiece(alive, diceValue, 0));
+    }
+
+    /**
+     * 获取全部可移动的棋子（最多两个）
+     */
+    public ChessPiece[] getMovablePieces(int diceValue) {
+        int alive = state.aliveMask(side);
+        ChessPiece[] pieces = new ChessPiece[MoveGenerator.movableCount(alive, diceValue)];
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = toChessPiece(MoveGenerator.movablePiece(alive, diceValue, i));
+        }
+        return pieces;
     }
 
     /**
      * 移动棋子
      */
     public boolean movePiece(int diceValue, int newX, int newY) {
-        // 实现棋子移动的逻辑
-        return false; // 这里需要实现逻辑
+        if (state.isGameOver() || state.sideToMove() != side) {
+            return false;
+        }
+        int target = GameState.cell(newX, newY);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(state, diceValue, moves);
+        for (int i = 0; i < count; i++) {
+            if (Move.to(moves[i]) == target) {
+                state.makeMove(moves[i]);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 由策略选择并走出一步，返回走出的着法（包含吃子信息），无法走棋时返回 Move.NONE
+     */
+    public int movePiece(int diceValue) {
+        if (strategy == null) {
+            throw new IllegalStateException(name + " 没有设置走棋策略");
+        }
+        if (state.isGameOver() || state.sideToMove() != side) {
+            return Move.NONE;
+        }
+        int move = strategy.chooseMove(state, diceValue);
+        return move == Move.NONE ? Move.NONE : state.makeMove(move);
+    }
+
+    public MoveStrategy getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(MoveStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public boolean isComputer() {
+        return strategy != null;
     }
 
     public String getName() {
         return name;
     }
 
+    public int getSide() {
+        return side;
+    }
+
     public boolean hasWon() {
         // 检查胜利条件
-        return false; // 这里需要实现逻辑
+        return state.winner() == side;
     }
 
     public boolean hasActivePieces() {
         // 检查是否还有活跃棋子
-        return false; // 这里需要实现逻辑
+        return state.aliveMask(side) != 0;
     }
 
     public void renderPieces() {
         // 渲染玩家的棋子
     }
+
+    private ChessPiece toChessPiece(int piece) {
+        String prefix = side == GameState.RED ? "红方棋子" : "蓝方棋子";
+        return new ChessPiece(prefix + (piece + 1), state.pieceX(side, piece), state.pieceY(side, piece));
+    }
 }
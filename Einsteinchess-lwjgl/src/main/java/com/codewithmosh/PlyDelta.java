@@ -0,0 +1,115 @@
+package com.codewithmosh;
+
+/**
+ * 一步棋的增量编码，21 位，写成 3 个字节（小端）
+ *
+ * 0-2   点数 - 1
+ * 3-6   走棋的棋子 side*6+编号，停一手时为 side + 12
+ * 7-11  起点格子
+ * 12-16 终点格子
+ * 17-20 被吃的棋子 side*6+编号，没有吃子为 0xF
+ *
+ * 观战者只要有开局（或快照）和之后的增量，就能逐步还原局面
+ */
+public final class PlyDelta {
+    public static final int BYTES = 3;
+    public static final int HEX_DIGITS = 2 * BYTES; // 观战协议里的文本写法
+    private static final int PASS_BASE = 2 * GameState.PIECES;
+    private static final int NO_CAPTURE = 0xF;
+
+    private PlyDelta() {
+    }
+
+    /**
+     * 编码 makeMove 返回的着法
+     */
+    public static int ofMove(int move, int roll) {
+        int mover = Move.side(move) * GameState.PIECES + Move.piece(move);
+        int captured = Move.isCapture(move) ? Move.capturedSide(move) * GameState.PIECES + Move.capturedPiece(move) : NO_CAPTURE;
+        return (roll - 1) | mover << 3 | Move.from(move) << 7 | Move.to(move) << 12 | captured << 17;
+    }
+
+    public static int ofPass(int side, int roll) {
+        return (roll - 1) | (PASS_BASE + side) << 3 | NO_CAPTURE << 17;
+    }
+
+    public static int roll(int delta) {
+        return (delta & 0x7) + 1;
+    }
+
+    public static boolean isPass(int delta) {
+        return ((delta >> 3) & 0xF) >= PASS_BASE;
+    }
+
+    public static int side(int delta) {
+        int mover = (delta >> 3) & 0xF;
+        return mover >= PASS_BASE ? mover - PASS_BASE : mover / GameState.PIECES;
+    }
+
+    public static int piece(int delta) {
+        return ((delta >> 3) & 0xF) % GameState.PIECES;
+    }
+
+    public static int from(int delta) {
+        return (delta >> 7) & 0x1F;
+    }
+
+    public static int to(int delta) {
+        return (delta >> 12) & 0x1F;
+    }
+
+    /**
+     * 被吃的棋子 side*6+编号，没有吃子时返回 -1
+     */
+    public static int captured(int delta) {
+        int captured = (delta >> 17) & 0xF;
+        return captured == NO_CAPTURE ? -1 : captured;
+    }
+
+    public static void write(int delta, byte[] buffer, int offset) {
+        buffer[offset] = (byte) delta;
+        buffer[offset + 1] = (byte) (delta >> 8);
+        buffer[offset + 2] = (byte) (delta >> 16);
+    }
+
+    public static int read(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8 | (buffer[offset + 2] & 0xFF) << 16;
+    }
+
+    /**
+     * 写成 HEX_DIGITS 个 ASCII 十六进制数字（小写，高位在前）
+     */
+    public static void writeHex(int delta, byte[] buffer, int offset) {
+        for (int i = 0; i < HEX_DIGITS; i++) {
+            buffer[offset + i] = (byte) Character.forDigit((delta >> (HEX_DIGITS - 1 - i) * 4) & 0xF, 16);
+        }
+    }
+
+    public static int readHex(byte[] buffer, int offset) {
+        int delta = 0;
+        for (int i = 0; i < HEX_DIGITS; i++) {
+            delta = delta << 4 | Character.digit(buffer[offset + i], 16);
+        }
+        return delta;
+    }
+
+    /**
+     * 在局面上重放这一步
+     */
+    public static void apply(GameState state, int delta) {
+        if (isPass(delta)) {
+            state.pass();
+        } else {
+            state.makeMove(Move.of(side(delta), piece(delta), direction(delta), from(delta), to(delta)));
+        }
+    }
+
+    /**
+     * 由起点和终点推出方向
+     */
+    private static int direction(int delta) {
+        int dx = Math.abs(GameState.cellX(to(delta)) - GameState.cellX(from(delta)));
+        int dy = Math.abs(GameState.cellY(to(delta)) - GameState.cellY(from(delta)));
+        return dx != 0 && dy != 0 ? 2 : dy != 0 ? 1 : 0;
+    }
+}
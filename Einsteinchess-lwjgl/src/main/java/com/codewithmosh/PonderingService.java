@@ -0,0 +1,272 @@
+package com.codewithmosh;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 后台预读：对手走完之后、自己掷骰之前，把每种点数的应对都先搜好
+ *
+ * 爱恩斯坦棋里下一步唯一的不确定是骰子，因此轮到自己时局面已经确定，只差点数。
+ * ponder 在后台线程里先用一小段时间给每个点数打分，再按“可能的收益”分配时间预算：
+ * 只有一步可走或者能直接获胜的点数不花时间，可走的棋越多、局面越没定型的点数分到的时间越多，
+ * 先搜收益大的点数，提前搜完的点数省下的时间留给后面的点数。
+ * 六个分支共用一张置换表，子局面大量重叠，后搜的点数会快很多
+ *
+ * 掷骰后 answer 按点数取结果：已经搜完的直接返回；正在搜的让它停下，返回已完成深度的结果；
+ * 还没轮到的停止预读，按正常预算现场搜索
+ *
+ * 搜索实例只在后台线程里使用，调用方不要同时拿它走棋
+ */
+public class PonderingService implements AutoCloseable {
+    private static final Metrics.Counter HITS = Metrics.global().counter("ponder.hits");
+    private static final Metrics.Counter MISSES = Metrics.global().counter("ponder.misses");
+    private static final Metrics.Histogram ANSWER_LATENCY = Metrics.global().histogram("ponder.answer");
+    private static final int SCORING_SHARE = 60; // 每个点数打分用预读预算的几分之一
+
+    private final ExpectiminimaxSearch search;
+    private final long budgetMillis;
+    private final long moveMillis;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ponder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Task task; // 当前预读的局面，没有时为 null
+
+    // 统计信息
+    private long hits;
+    private long misses;
+    private long lastAnswerNanos;
+
+    /**
+     * 构造函数
+     *
+     * @param search       后台使用的搜索，深度上限由它决定，最好带置换表
+     * @param budgetMillis 六个点数合计的预读时间
+     * @param moveMillis   没有预读结果时现场搜索的时间预算
+     */
+    public PonderingService(ExpectiminimaxSearch search, long budgetMillis, long moveMillis) {
+        this.search = search;
+        this.budgetMillis = budgetMillis;
+        this.moveMillis = moveMillis;
+    }
+
+    /**
+     * 开始为 position 预读，之前的预读被取消；position 会被复制，调用后可以继续修改
+     */
+    public synchronized void ponder(GameState position) {
+        cancelTask();
+        task = new Task(position.copy());
+        executor.execute(task);
+    }
+
+    /**
+     * 停止预读
+     */
+    public synchronized void cancel() {
+        cancelTask();
+        task = null;
+    }
+
+    private void cancelTask() {
+        if (task != null) {
+            task.cancelled = true;
+            search.stop();
+        }
+    }
+
+    /**
+     * 掷出 roll 之后取着法，position 和 ponder 时的局面不同时现场搜索
+     */
+    public int answer(GameState position, int roll) {
+        long start = System.nanoTime();
+        int move = Move.NONE;
+        boolean hit = false;
+        synchronized (this) {
+            Task current = task;
+            if (current != null && current.position.hash() == position.hash()
+                    && current.position.sideToMove() == position.sideToMove()) {
+                if (!current.done[roll - 1] && current.searching == roll) {
+                    current.wanted = roll;
+                    search.stop(); // 正在搜这个点数，用已完成深度的结果
+                }
+                while (!current.done[roll - 1] && current.searching == roll) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                if (current.done[roll - 1]) {
+                    move = current.moves[roll - 1];
+                    hit = true;
+                }
+            }
+            cancelTask();
+            task = null;
+        }
+        if (!hit) {
+            GameState copy = position.copy();
+            Future<Integer> result = executor.submit(() -> {
+                search.resume();
+                search.setBudgetMillis(moveMillis);
+                return search.chooseMove(copy, roll);
+            });
+            try {
+                move = result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("搜索失败", e.getCause());
+            }
+        }
+        synchronized (this) {
+            lastAnswerNanos = System.nanoTime() - start;
+            if (hit) {
+                hits++;
+                HITS.increment();
+            } else {
+                misses++;
+                MISSES.increment();
+            }
+        }
+        ANSWER_LATENCY.record(lastAnswerNanos);
+        return move;
+    }
+
+    private synchronized void finish(Task task, int roll, int move, int depth) {
+        task.moves[roll - 1] = move;
+        task.depths[roll - 1] = depth;
+        task.done[roll - 1] = true;
+        task.searching = 0;
+        notifyAll();
+    }
+
+    private synchronized boolean isWanted(Task task, int roll) {
+        return task.wanted == roll;
+    }
+
+    /**
+     * 标记开始搜索某个点数，预读已被取消时返回 false
+     */
+    private synchronized boolean begin(Task task, int roll) {
+        if (task.cancelled) {
+            return false;
+        }
+        search.resume();
+        task.searching = roll;
+        return true;
+    }
+
+    /**
+     * 某个局面的预读任务，在后台线程里运行
+     */
+    private final class Task implements Runnable {
+        final GameState position;
+        final int[] moves = new int[Variant.MAX_PIECES];
+        final int[] depths = new int[Variant.MAX_PIECES];
+        final boolean[] done = new boolean[Variant.MAX_PIECES];
+        int searching; // 正在搜索的点数，0 表示没有
+        int wanted; // 已经掷出、正在等结果的点数
+        volatile boolean cancelled;
+
+        Task(GameState position) {
+            this.position = position;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+            int[] list = new int[MoveGenerator.MAX_MOVES];
+            int faces = position.variant().pieces();
+            double[] weights = new double[faces];
+            int[] order = new int[faces];
+            int pending = 0;
+
+            // 先给每个点数一小段时间打分：只有一步或者胜负已定的点数直接定下来
+            for (int roll = 1; roll <= faces; roll++) {
+                if (!begin(this, roll)) {
+                    return;
+                }
+                int count = MoveGenerator.generate(position, roll, list);
+                if (count <= 1) {
+                    finish(this, roll, count == 0 ? Move.NONE : list[0], 0);
+                    continue;
+                }
+                search.setBudgetMillis(Math.max(1, budgetMillis / SCORING_SHARE));
+                int move = search.chooseMove(position, roll);
+                float value = search.getLastValue();
+                if (value >= Evaluator.WIN || value <= Evaluator.LOSS || isWanted(this, roll)) {
+                    finish(this, roll, move, search.getCompletedDepth());
+                    continue;
+                }
+                // 可选的着法越多、局面越接近均势，多想一会儿的收益越大
+                weights[roll - 1] = (count - 1) * (1 - 0.75 * Math.abs(value));
+                order[pending++] = roll;
+            }
+
+            // 按收益从大到小依次深入搜索，剩余时间按剩余权重分配
+            for (int i = 1; i < pending; i++) {
+                for (int j = i; j > 0 && weights[order[j] - 1] > weights[order[j - 1] - 1]; j--) {
+                    int swap = order[j];
+                    order[j] = order[j - 1];
+                    order[j - 1] = swap;
+                }
+            }
+            double remainingWeight = 0;
+            for (int i = 0; i < pending; i++) {
+                remainingWeight += weights[order[i] - 1];
+            }
+            for (int i = 0; i < pending; i++) {
+                int roll = order[i];
+                if (!begin(this, roll)) {
+                    return;
+                }
+                long remaining = Math.max(1, (deadline - System.nanoTime()) / 1_000_000L);
+                search.setBudgetMillis(Math.max(1, (long) (remaining * weights[roll - 1] / remainingWeight)));
+                int move = search.chooseMove(position, roll);
+                remainingWeight -= weights[roll - 1];
+                finish(this, roll, move, search.getCompletedDepth());
+            }
+        }
+    }
+
+    /**
+     * 某个点数的预读结果，还没搜完时返回 Move.NONE
+     */
+    public synchronized int ponderedMove(int roll) {
+        return task != null && task.done[roll - 1] ? task.moves[roll - 1] : Move.NONE;
+    }
+
+    /**
+     * 某个点数预读完成的搜索深度，还没搜完时返回 -1
+     */
+    public synchronized int ponderedDepth(int roll) {
+        return task != null && task.done[roll - 1] ? task.depths[roll - 1] : -1;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * 上一次 answer 从调用到返回的时间
+     */
+    public synchronized long getLastAnswerNanos() {
+        return lastAnswerNanos;
+    }
+
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,149 @@
+package com.codewithmosh;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分析任务：多个线程自我对弈，对每局前若干步的局面逐个点数做期望极大极小搜索，结果写入局面库
+ *
+ * 每个局面的六种点数都搜一遍，记录每种点数的最佳着法和平均局面分；
+ * 库里已经有同样深度的结果时跳过。搜索本身也从局面库热启动，
+ * 后分析的局面可以直接用到先分析的子局面。界面和服务器可以同时只读打开同一个库
+ *
+ * 用法：PositionAnalyzer --store positions.mdb --games 1000 --plies 12 --depth 4 --threads 4 --seed 1 [--map-mb 1024]
+ */
+public class PositionAnalyzer {
+    private static final int TABLE_MB = 64;
+    private static final int REPORT_INTERVAL = 100;
+
+    private final PositionStore store;
+    private final int depth;
+    private final int plies;
+    private final long seed;
+    private final TranspositionTable table = new TranspositionTable(TABLE_MB);
+
+    private final AtomicLong games = new AtomicLong();
+    private final LongAdder analyzed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    public PositionAnalyzer(PositionStore store, int depth, int plies, long seed) {
+        this.store = store;
+        this.depth = depth;
+        this.plies = plies;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Path path = Paths.get("positions.mdb");
+        long totalGames = 1000;
+        int plies = 12;
+        int depth = 4;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        long mapSize = LmdbPositionStore.DEFAULT_MAP_SIZE;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--store":
+                    path = Paths.get(args[i + 1]);
+                    break;
+                case "--games":
+                    totalGames = Long.parseLong(args[i + 1]);
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--map-mb":
+                    mapSize = Long.parseLong(args[i + 1]) << 20;
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+
+        long start = System.nanoTime();
+        try (LmdbPositionStore store = new LmdbPositionStore(path, mapSize, false)) {
+            PositionAnalyzer analyzer = new PositionAnalyzer(store, depth, plies, seed);
+            analyzer.run(totalGames, threads);
+            store.flush();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("分析 %d 个局面，跳过 %d 个，写入 %d 条，库中共 %d 个局面，用时 %.1f 秒（%.1f 局面/秒）%n",
+                    analyzer.getAnalyzed(), analyzer.getSkipped(), store.getWritten(), store.size(), seconds,
+                    analyzer.getAnalyzed() / seconds);
+        }
+    }
+
+    public void run(long totalGames, int threads) throws InterruptedException {
+        long target = games.get() + totalGames;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> work(target), "position-analyzer-" + i);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        games.set(target);
+    }
+
+    private void work(long target) {
+        ExpectiminimaxSearch search = new ExpectiminimaxSearch(new HeuristicEvaluator(), table, depth, 0);
+        search.setPositionStore(store);
+        PositionStore.Entry entry = new PositionStore.Entry();
+        GameState state = new GameState();
+        long game;
+        while ((game = games.getAndIncrement()) < target) {
+            Dice dice = Dice.forGame(seed, game);
+            state.reset();
+            for (int ply = 0; ply < plies && !state.isGameOver(); ply++) {
+                if (store.lookup(state, entry) && entry.depth() >= depth) {
+                    skipped.increment();
+                } else {
+                    analyze(search, state, entry);
+                }
+                // 按这一局真正掷出的点数走库里（刚分析出）的最佳着法
+                int roll = dice.roll();
+                int move = entry.move(state, roll);
+                if (move == Move.NONE) {
+                    state.pass();
+                } else {
+                    state.makeMove(move);
+                }
+            }
+            if ((game + 1) % REPORT_INTERVAL == 0) {
+                System.out.printf("%d 局，分析 %d 个局面，跳过 %d 个%n", game + 1, analyzed.sum(), skipped.sum());
+            }
+        }
+    }
+
+    private void analyze(ExpectiminimaxSearch search, GameState state, PositionStore.Entry entry) {
+        entry.clear();
+        float total = 0;
+        for (int roll = 1; roll <= GameState.PIECES; roll++) {
+            int move = search.chooseMove(state, roll);
+            entry.setMove(roll, move);
+            total += search.getLastValue();
+        }
+        entry.set(total / GameState.PIECES, depth);
+        store.put(state, entry);
+        analyzed.increment();
+    }
+
+    public long getAnalyzed() {
+        return analyzed.sum();
+    }
+
+    public long getSkipped() {
+        return skipped.sum();
+    }
+}
@@ -0,0 +1,82 @@
+package com.codewithmosh;
+
+/**
+ * 一批待评估的局面，按“结构数组”存放，供 BatchEvaluator 一次评估
+ *
+ * 和 NTupleEvaluator 一样从各局面走棋方的角度编码：
+ * codes[格子 * capacity + i]        第 i 个局面这个格子的编码（0 空，1-6 己方，7-12 对方）
+ * pieces[棋子槽 * capacity + i]     第 i 个局面第几个棋子特征的权重下标，棋子已被吃掉为 -1
+ * 同一个格子（或棋子槽）在不同局面的数据是连续的，向量指令可以一次读取一组局面
+ *
+ * 可以反复 clear 后复用，添加局面不分配内存
+ */
+public class PositionBatch {
+    static final int PIECE_SLOTS = 2 * GameState.PIECES;
+
+    private final int capacity;
+    final int[] codes;
+    final int[] pieces;
+    final float[] terminal; // 已结束的局面的确定值，未结束为 NaN
+    private int size;
+
+    public PositionBatch(int capacity) {
+        this.capacity = capacity;
+        codes = new int[GameState.CELLS * capacity];
+        pieces = new int[PIECE_SLOTS * capacity];
+        terminal = new float[capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 加入一个局面，返回它在这一批中的序号；只支持标准棋盘
+     */
+    public int add(GameState state) {
+        NTupleEvaluator.requireStandard(state);
+        if (size == capacity) {
+            throw new IllegalStateException("这一批已满: " + capacity);
+        }
+        int i = size++;
+        for (int cell = 0; cell < GameState.CELLS; cell++) {
+            codes[cell * capacity + i] = 0;
+        }
+        if (state.isGameOver()) {
+            terminal[i] = state.winner() == state.sideToMove() ? Evaluator.WIN : Evaluator.LOSS;
+            for (int slot = 0; slot < PIECE_SLOTS; slot++) {
+                pieces[slot * capacity + i] = -1;
+            }
+            return i;
+        }
+        terminal[i] = Float.NaN;
+        int side = state.sideToMove();
+        for (int owner = 0; owner < 2; owner++) {
+            int color = owner == 0 ? side : GameState.opponent(side);
+            int alive = state.aliveMask(color);
+            for (int piece = 0; piece < GameState.PIECES; piece++) {
+                int slot = (owner * GameState.PIECES + piece) * capacity + i;
+                if ((alive & (1 << piece)) != 0) {
+                    int cell = NTupleEvaluator.orient(side, state.pieceCell(color, piece));
+                    codes[cell * capacity + i] = 1 + owner * GameState.PIECES + piece;
+                    pieces[slot] = NTupleEvaluator.pieceFeature(owner, alive, piece, cell);
+                } else {
+                    pieces[slot] = -1;
+                }
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,154 @@
+package com.codewithmosh;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 已分析局面的持久化存储，搜索可以从这里取已知的结果（热启动），不必重新计算
+ *
+ * 局面按规范键保存：从走棋方的角度看（蓝方走棋时旋转 180 度），
+ * 再在“沿主对角线翻转”的两种写法中取较小的一个，翻转后横走和竖走互换，斜走不变。
+ * 键把 12 个棋子的格子各用 5 位拼成一个 long（被吃掉为 31），不会冲突
+ *
+ * 实现见 LmdbPositionStore；引擎本身不依赖 LWJGL，只依赖这个接口
+ */
+public interface PositionStore extends AutoCloseable {
+    /**
+     * 查找局面，找到时填好 entry（着法已换回 state 自己的方向）并返回 true
+     */
+    boolean lookup(GameState state, Entry entry);
+
+    /**
+     * 保存分析结果，可以异步批量写入；已有更深的结果时保留旧的
+     */
+    void put(GameState state, Entry entry);
+
+    /**
+     * 等待之前 put 的结果全部写入
+     */
+    void flush();
+
+    @Override
+    void close();
+
+    /**
+     * 局面的规范键
+     */
+    static long key(GameState state) {
+        return Math.min(pack(state, false), pack(state, true));
+    }
+
+    /**
+     * 规范写法是否是翻转后的写法
+     */
+    static boolean isTransposed(GameState state) {
+        return pack(state, true) < pack(state, false);
+    }
+
+    private static long pack(GameState state, boolean transpose) {
+        int side = state.sideToMove();
+        long key = 0;
+        for (int owner = 0; owner < 2; owner++) {
+            int color = owner == 0 ? side : GameState.opponent(side);
+            for (int piece = 0; piece < GameState.PIECES; piece++) {
+                int code = 31;
+                if (state.isAlive(color, piece)) {
+                    int cell = NTupleEvaluator.orient(side, state.pieceCell(color, piece));
+                    code = transpose ? GameState.cell(GameState.cellY(cell), GameState.cellX(cell)) : cell;
+                }
+                key = key << 5 | code;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * 一个局面的分析结果：掷骰前的局面分、搜索深度和每个点数的最佳着法
+     */
+    final class Entry {
+        public static final int BYTES = 12;
+        private static final int NO_MOVE = 0xFF;
+
+        private float value;
+        private int depth;
+        private final byte[] moves = new byte[GameState.PIECES]; // [点数-1] -> 棋子 << 2 | 方向
+
+        public Entry() {
+            clear();
+        }
+
+        public void clear() {
+            value = 0;
+            depth = 0;
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = (byte) NO_MOVE;
+            }
+        }
+
+        /**
+         * 掷骰前的局面分（走棋方角度，六种点数的平均）
+         */
+        public float value() {
+            return value;
+        }
+
+        public int depth() {
+            return depth;
+        }
+
+        public void set(float value, int depth) {
+            this.value = value;
+            this.depth = depth;
+        }
+
+        /**
+         * 记录掷出 roll 时的最佳着法，move 为 Move.NONE 表示没有着法
+         */
+        public void setMove(int roll, int move) {
+            moves[roll - 1] = (byte) (move == Move.NONE ? NO_MOVE : Move.piece(move) << 2 | Move.direction(move));
+        }
+
+        /**
+         * 掷出 roll 时的最佳着法，没有记录时返回 Move.NONE
+         */
+        public int move(GameState state, int roll) {
+            int code = moves[roll - 1] & 0xFF;
+            return code == NO_MOVE ? Move.NONE : state.move(code >> 2, code & 0x3);
+        }
+
+        /**
+         * 以规范写法写入 buffer 的 offset 处（小端）：float 局面分，byte 深度，byte 保留，6 个着法
+         */
+        void write(ByteBuffer buffer, int offset, boolean transposed) {
+            buffer.order(ByteOrder.LITTLE_ENDIAN).putFloat(offset, value);
+            buffer.put(offset + 4, (byte) Math.min(depth, 0xFF));
+            buffer.put(offset + 5, (byte) 0);
+            for (int i = 0; i < moves.length; i++) {
+                buffer.put(offset + 6 + i, transpose(moves[i], transposed));
+            }
+        }
+
+        void read(ByteBuffer buffer, int offset, boolean transposed) {
+            value = buffer.order(ByteOrder.LITTLE_ENDIAN).getFloat(offset);
+            depth = buffer.get(offset + 4) & 0xFF;
+            for (int i = 0; i < moves.length; i++) {
+                moves[i] = transpose(buffer.get(offset + 6 + i), transposed);
+            }
+        }
+
+        static int depth(ByteBuffer buffer, int offset) {
+            return buffer.get(offset + 4) & 0xFF;
+        }
+
+        /**
+         * 翻转时横走（0）和竖走（1）互换
+         */
+        private static byte transpose(byte code, boolean transposed) {
+            int direction = code & 0x3;
+            if (!transposed || (code & 0xFF) == NO_MOVE || direction == 2) {
+                return code;
+            }
+            return (byte) ((code & ~0x3) | (1 - direction));
+        }
+    }
+}
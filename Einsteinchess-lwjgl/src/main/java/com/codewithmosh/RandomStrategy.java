@@ -0,0 +1,31 @@
+package com.codewithmosh;
+
+import java.util.SplittableRandom;
+
+/**
+ * 随机走棋策略，作为对比基准
+ */
+public class RandomStrategy implements MoveStrategy {
+    private SplittableRandom random;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    public RandomStrategy(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public int chooseMove(GameState state, int roll) {
+        int count = MoveGenerator.generate(state, roll, moves);
+        return count == 0 ? Move.NONE : moves[random.nextInt(count)];
+    }
+
+    @Override
+    public void newGame(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    @Override
+    public String name() {
+        return "random";
+    }
+}
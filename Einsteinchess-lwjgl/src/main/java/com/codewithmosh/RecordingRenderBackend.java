@@ -0,0 +1,158 @@
+package com.codewithmosh;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * 不需要显卡的渲染后端，只记录绘制调用，用来在没有 GPU 的机器上检查绘制次数和每帧的内存分配
+ * 最后一次绘制的实例数据复制到预先分配的数组里，记录本身不分配内存
+ */
+public class RecordingRenderBackend implements RenderBackend {
+    private final float[] lastInstances;
+    private final float[] lastGlyphs;
+    private int boardInstances;
+    private int lastInstanceCount;
+    private int lastGlyphCount;
+    private int atlasWidth;
+    private int atlasHeight;
+    private long frames;
+    private long drawCalls;
+    private long instancesDrawn;
+    private long glyphsDrawn;
+    private boolean inFrame;
+
+    /**
+     * @param maxInstances 单次绘制的最大实例数
+     */
+    public RecordingRenderBackend(int maxInstances) {
+        this(maxInstances, 0);
+    }
+
+    /**
+     * @param maxGlyphs 单次 drawGlyphs 最多记录的字形数，多出的只计数
+     */
+    public RecordingRenderBackend(int maxInstances, int maxGlyphs) {
+        lastInstances = new float[maxInstances * INSTANCE_FLOATS];
+        lastGlyphs = new float[maxGlyphs * GLYPH_FLOATS];
+    }
+
+    @Override
+    public void setBoard(FloatBuffer instances, int count) {
+        boardInstances = count;
+    }
+
+    @Override
+    public void beginFrame() {
+        if (inFrame) {
+            throw new IllegalStateException("上一帧还没有结束");
+        }
+        inFrame = true;
+    }
+
+    @Override
+    public void drawBoard() {
+        checkFrame();
+        drawCalls++;
+        instancesDrawn += boardInstances;
+    }
+
+    @Override
+    public void drawInstances(FloatBuffer instances, int count) {
+        checkFrame();
+        if (count == 0) {
+            return;
+        }
+        instances.get(0, lastInstances, 0, count * INSTANCE_FLOATS);
+        lastInstanceCount = count;
+        drawCalls++;
+        instancesDrawn += count;
+    }
+
+    @Override
+    public void setGlyphAtlas(ByteBuffer alpha, int width, int height) {
+        atlasWidth = width;
+        atlasHeight = height;
+    }
+
+    @Override
+    public void drawGlyphs(FloatBuffer glyphs, int count) {
+        checkFrame();
+        if (count == 0) {
+            return;
+        }
+        if (atlasWidth == 0) {
+            throw new IllegalStateException("还没有上传字形图集");
+        }
+        lastGlyphCount = count;
+        glyphs.get(0, lastGlyphs, 0, Math.min(count * GLYPH_FLOATS, lastGlyphs.length));
+        drawCalls++;
+        glyphsDrawn += count;
+    }
+
+    @Override
+    public void endFrame() {
+        checkFrame();
+        inFrame = false;
+        frames++;
+    }
+
+    private void checkFrame() {
+        if (!inFrame) {
+            throw new IllegalStateException("不在一帧之内");
+        }
+    }
+
+    public long getFrames() {
+        return frames;
+    }
+
+    public long getDrawCalls() {
+        return drawCalls;
+    }
+
+    public long getInstancesDrawn() {
+        return instancesDrawn;
+    }
+
+    public int getBoardInstances() {
+        return boardInstances;
+    }
+
+    public int getLastInstanceCount() {
+        return lastInstanceCount;
+    }
+
+    /**
+     * 最后一次 drawInstances 中第 index 个实例的第 field 个分量
+     */
+    public float lastInstance(int index, int field) {
+        return lastInstances[index * INSTANCE_FLOATS + field];
+    }
+
+    public long getGlyphsDrawn() {
+        return glyphsDrawn;
+    }
+
+    public int getLastGlyphCount() {
+        return lastGlyphCount;
+    }
+
+    /**
+     * 最后一次 drawGlyphs 中第 index 个字形的第 field 个分量
+     */
+    public float lastGlyph(int index, int field) {
+        return lastGlyphs[index * GLYPH_FLOATS + field];
+    }
+
+    public int getAtlasWidth() {
+        return atlasWidth;
+    }
+
+    public int getAtlasHeight() {
+        return atlasHeight;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,58 @@
+package com.codewithmosh;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * 渲染后端接口
+ *
+ * 所有图形都是轴对齐的正方形实例，每个实例 INSTANCE_FLOATS 个 float：
+ * 左上角 x、y（像素），边长，颜色 r、g、b
+ * 棋盘格子在开始时上传一次，棋子每帧用一次实例化绘制画完
+ *
+ * 文字是从字形图集采样的矩形，每个字形 GLYPH_FLOATS 个 float：
+ * 左上角 x、y，宽、高（像素），纹理坐标 u0、v0、u1、v1，颜色 r、g、b
+ */
+public interface RenderBackend extends AutoCloseable {
+    int INSTANCE_FLOATS = 6;
+    int GLYPH_FLOATS = 11;
+
+    /**
+     * 上传静态的棋盘格子，只在开始时调用一次
+     *
+     * @param instances position 为 0，limit 在第 count 个实例末尾
+     */
+    void setBoard(FloatBuffer instances, int count);
+
+    /**
+     * 开始新的一帧并清屏
+     */
+    void beginFrame();
+
+    /**
+     * 画出 setBoard 上传的棋盘
+     */
+    void drawBoard();
+
+    /**
+     * 一次绘制 count 个实例，instances 的 position 为 0，limit 在第 count 个实例末尾，调用后可以立即重用
+     */
+    void drawInstances(FloatBuffer instances, int count);
+
+    /**
+     * 上传字形图集，只在开始时调用一次
+     *
+     * @param alpha 每像素一个字节的覆盖率，position 为 0
+     */
+    void setGlyphAtlas(ByteBuffer alpha, int width, int height);
+
+    /**
+     * 一次绘制 count 个字形，glyphs 的 position 为 0，limit 在第 count 个字形末尾，调用后可以立即重用
+     */
+    void drawGlyphs(FloatBuffer glyphs, int count);
+
+    void endFrame();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,59 @@
+package com.codewithmosh;
+
+import java.util.function.LongSupplier;
+
+/**
+ * 按需渲染的主循环：内容没有变化也没有动画时不画，线程在等待事件中睡眠
+ */
+public class RenderLoop {
+    private static final Metrics.Histogram FRAME_TIME = Metrics.global().histogram("frame.time");
+
+    private final WindowSystem windowSystem;
+    private final FramePacer pacer;
+    private long lastFrameNanos;
+
+    public RenderLoop(WindowSystem windowSystem, FramePacer pacer) {
+        this.windowSystem = windowSystem;
+        this.pacer = pacer;
+    }
+
+    /**
+     * 运行到窗口关闭
+     *
+     * @param version 当前内容的版本，任何会改变画面的操作都要让它变化
+     * @param render  画一帧，不需要交换缓冲
+     */
+    public void run(LongSupplier version, Runnable render) {
+        while (!windowSystem.shouldClose()) {
+            double now = windowSystem.time();
+            long current = version.getAsLong();
+            if (pacer.shouldRender(current, now)) {
+                GameEvents.Frame event = new GameEvents.Frame();
+                event.begin();
+                long start = System.nanoTime();
+                render.run();
+                windowSystem.swapBuffers();
+                long end = System.nanoTime();
+                pacer.frameRendered(current, now);
+                FRAME_TIME.record(end - start);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.frame = pacer.getFrames();
+                    event.version = current;
+                    event.sinceLast = lastFrameNanos == 0 ? 0 : end - lastFrameNanos;
+                    event.commit();
+                }
+                lastFrameNanos = end;
+            }
+            windowSystem.waitEvents(pacer.waitTimeout(windowSystem.time()));
+        }
+    }
+
+    public FramePacer getPacer() {
+        return pacer;
+    }
+
+    public WindowSystem getWindowSystem() {
+        return windowSystem;
+    }
+}
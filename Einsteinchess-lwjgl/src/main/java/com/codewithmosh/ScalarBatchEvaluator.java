@@ -0,0 +1,53 @@
+package com.codewithmosh;
+
+/**
+ * BatchEvaluator 的标量实现，没有向量模块时使用，也是向量实现的对照
+ */
+public class ScalarBatchEvaluator implements BatchEvaluator {
+    private final float[] weights;
+
+    public ScalarBatchEvaluator(float[] weights) {
+        this.weights = weights;
+    }
+
+    @Override
+    public void evaluate(PositionBatch batch, float[] out) {
+        evaluate(batch, out, 0, batch.size());
+    }
+
+    /**
+     * 只评估第 from 到 to - 1 个局面
+     */
+    void evaluate(PositionBatch batch, float[] out, int from, int to) {
+        int capacity = batch.capacity();
+        int[] codes = batch.codes;
+        int[] pieces = batch.pieces;
+        for (int i = from; i < to; i++) {
+            if (!Float.isNaN(batch.terminal[i])) {
+                out[i] = batch.terminal[i];
+                continue;
+            }
+            float total = weights[NTupleEvaluator.BIAS];
+            for (int slot = 0; slot < PositionBatch.PIECE_SLOTS; slot++) {
+                int feature = pieces[slot * capacity + i];
+                if (feature >= 0) {
+                    total += weights[feature];
+                }
+            }
+            for (int tuple = 0; tuple < NTupleEvaluator.TUPLES; tuple++) {
+                int index = 0;
+                for (int k = 0; k < NTupleEvaluator.TUPLE_CELLS; k++) {
+                    int cell = NTupleEvaluator.TUPLE_CELL[tuple * NTupleEvaluator.TUPLE_CELLS + k];
+                    index = index * NTupleEvaluator.STATES + codes[cell * capacity + i];
+                }
+                total += weights[tuple * NTupleEvaluator.TUPLE_ENTRIES + index];
+            }
+            out[i] = (float) Math.tanh(total);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
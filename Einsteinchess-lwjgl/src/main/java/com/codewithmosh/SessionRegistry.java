@@ -0,0 +1,91 @@
+package com.codewithmosh;
+
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 分片的对局表
+ *
+ * 对局按编号散列到若干分片，每个分片是一个普通的 HashMap，用分片自己的锁保护，
+ * 不同分片上的操作互不阻塞。每个分片还有自己的 SecureRandom，用来给新对局生成骰子种子：
+ * 对局结束时种子会发给客户端用于复盘，普通的伪随机数从一个种子就能推出后面所有对局的种子
+ */
+public class SessionRegistry {
+    private final Shard[] shards;
+    private final int mask;
+    private final int maxSessions;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicInteger size = new AtomicInteger();
+
+    private static final class Shard {
+        final HashMap<Long, GameSession> sessions = new HashMap<>();
+        final SecureRandom seeds = new SecureRandom();
+    }
+
+    /**
+     * @param shards      分片数，向上取到 2 的幂
+     * @param maxSessions 同时存在的最大对局数
+     */
+    public SessionRegistry(int shards, int maxSessions) {
+        int count = Integer.highestOneBit(Math.max(1, shards - 1)) << 1;
+        this.shards = new Shard[count];
+        this.mask = count - 1;
+        this.maxSessions = maxSessions;
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard();
+        }
+    }
+
+    private Shard shard(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return shards[(int) (h >>> 32) & mask];
+    }
+
+    /**
+     * 新建一局，对局数已满时返回 null
+     */
+    public GameSession create() {
+        if (size.incrementAndGet() > maxSessions) {
+            size.decrementAndGet();
+            return null;
+        }
+        long id = nextId.getAndIncrement();
+        Shard shard = shard(id);
+        synchronized (shard) {
+            GameSession session = new GameSession(id, shard.seeds.nextLong());
+            shard.sessions.put(id, session);
+            return session;
+        }
+    }
+
+    public GameSession get(long id) {
+        Shard shard = shard(id);
+        synchronized (shard) {
+            return shard.sessions.get(id);
+        }
+    }
+
+    public boolean remove(long id) {
+        Shard shard = shard(id);
+        GameSession session;
+        synchronized (shard) {
+            session = shard.sessions.remove(id);
+            if (session == null) {
+                return false;
+            }
+        }
+        session.close();
+        size.decrementAndGet();
+        return true;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+}
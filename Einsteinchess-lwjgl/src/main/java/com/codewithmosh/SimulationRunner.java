@@ -0,0 +1,292 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无界面的批量自对弈模拟器，不需要显示器，可以直接在服务器上运行
+ *
+ * 用法：SimulationRunner --games 100000 --threads 8 --a expecti:3 --b random --seed 42
+ * 两个策略轮流执红，报告每秒对局数、胜率和 95% 置信区间
+ *
+ * 第 n 局的骰子和策略种子只由主种子和 n 决定，与线程数无关，
+ * 加上 --replay n 即可单独重放这一局并打印每一步；
+ * 加上 --record 文件 [--compression none|lz4|zstd] 把所有对局写入对局记录文件
+ */
+public class SimulationRunner {
+    private final String specA;
+    private final String specB;
+    private final long games;
+    private final int threads;
+    private final long seed;
+    private GameRecordWriter recorder;
+
+    public SimulationRunner(String specA, String specB, long games, int threads, long seed) {
+        this.specA = specA;
+        this.specB = specB;
+        this.games = games;
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    /**
+     * 把每一局写入记录文件，传 null 关闭记录；写入器由调用者负责关闭
+     */
+    public void setRecorder(GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String a = "expecti:2";
+        String b = "random";
+        long games = 10_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        long replay = -1;
+        String record = null;
+        GameRecord.Compression compression = GameRecord.Compression.NONE;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--a":
+                    a = args[i + 1];
+                    break;
+                case "--b":
+                    b = args[i + 1];
+                    break;
+                case "--games":
+                    games = Long.parseLong(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--replay":
+                    replay = Long.parseLong(args[i + 1]);
+                    break;
+                case "--record":
+                    record = args[i + 1];
+                    break;
+                case "--compression":
+                    compression = GameRecord.Compression.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        if (replay >= 0) {
+            new SimulationRunner(a, b, games, 1, seed).replay(replay);
+            return;
+        }
+        System.out.println("策略 A: " + a + "，策略 B: " + b + "，对局数: " + games + "，线程数: " + threads + "，种子: " + seed);
+        SimulationRunner runner = new SimulationRunner(a, b, games, threads, seed);
+        if (record == null) {
+            runner.run().print();
+            return;
+        }
+        try (GameRecordWriter writer = GameRecordWriter.open(Paths.get(record), compression)) {
+            runner.setRecorder(writer);
+            runner.run().print();
+        }
+    }
+
+    /**
+     * 下一局棋，返回获胜方
+     * 局面在开始时被重置为它所属变体的开局，可以在多局之间复用
+     */
+    public static int play(GameState state, MoveStrategy red, MoveStrategy blue, Dice dice) {
+        return play(state, red, blue, dice, null, false);
+    }
+
+    /**
+     * 下一局棋并记录到 record 中（record 可以为 null）
+     */
+    public static int play(GameState state, MoveStrategy red, MoveStrategy blue, Dice dice, GameRecord record) {
+        return play(state, red, blue, dice, record, false);
+    }
+
+    private static int play(GameState state, MoveStrategy red, MoveStrategy blue, Dice dice, GameRecord record, boolean verbose) {
+        state.reset();
+        if (record != null) {
+            record.begin(dice.seed());
+        }
+        while (!state.isGameOver()) {
+            int roll = dice.roll(state.variant().pieces());
+            MoveStrategy strategy = state.isRedTurn() ? red : blue;
+            int move = strategy.chooseMove(state, roll);
+            if (move == Move.NONE) {
+                state.pass();
+            } else {
+                move = state.makeMove(move);
+            }
+            if (record != null) {
+                if (move == Move.NONE) {
+                    record.addPass(roll);
+                } else {
+                    record.addMove(roll, move);
+                }
+            }
+            if (verbose) {
+                System.out.printf("%3d  点数 %d  %s%n", state.ply(), roll, move == Move.NONE ? "停一手" : Move.toString(move));
+            }
+        }
+        if (record != null) {
+            record.finish(state.winner());
+        }
+        return state.winner();
+    }
+
+    /**
+     * 开始第 game 局：两个策略按本局种子重置，返回本局的骰子
+     */
+    private Dice startGame(long game, MoveStrategy a, MoveStrategy b) {
+        long gameSeed = Dice.gameSeed(seed, game);
+        a.newGame(Dice.gameSeed(gameSeed, 0));
+        b.newGame(Dice.gameSeed(gameSeed, 1));
+        return new Dice(gameSeed);
+    }
+
+    /**
+     * 单独重放第 game 局，打印每一步
+     * 策略本身确定（或者只依赖 newGame 给的种子）时，结果与批量模拟中的那一局完全相同
+     */
+    public void replay(long game) {
+        MoveStrategy a = Strategies.create(specA, seed);
+        MoveStrategy b = Strategies.create(specB, seed);
+        try {
+            boolean aIsRed = (game & 1) == 0;
+            Dice dice = startGame(game, a, b);
+            System.out.println("第 " + game + " 局，骰子种子 " + dice.seed() + "，红方: "
+                    + (aIsRed ? a : b).name() + "，蓝方: " + (aIsRed ? b : a).name());
+            GameState state = new GameState();
+            int winner = aIsRed ? play(state, a, b, dice, null, true) : play(state, b, a, dice, null, true);
+            System.out.println((winner == GameState.RED ? "红方" : "蓝方") + "获胜");
+        } finally {
+            Strategies.close(a);
+            Strategies.close(b);
+        }
+    }
+
+    public Result run() throws Exception {
+        GameRecordWriter recorder = this.recorder;
+        AtomicLong next = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> simulate(next, recorder)));
+            }
+            Result total = new Result();
+            for (Future<Result> future : futures) {
+                total.add(future.get());
+            }
+            total.elapsedNanos = System.nanoTime() - start;
+            return total;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * 每个线程持有自己的策略和局面，不和其他线程共享任何可变状态
+     */
+    private Result simulate(AtomicLong next, GameRecordWriter recorder) throws IOException {
+        MoveStrategy a = Strategies.create(specA, seed);
+        MoveStrategy b = Strategies.create(specB, seed);
+        GameState state = new GameState();
+        GameRecord record = recorder != null ? new GameRecord() : null;
+        Result result = new Result();
+        try {
+            long game;
+            while ((game = next.getAndIncrement()) < games) {
+                boolean aIsRed = (game & 1) == 0;
+                Dice dice = startGame(game, a, b);
+                int winner = aIsRed ? play(state, a, b, dice, record) : play(state, b, a, dice, record);
+                if (recorder != null) {
+                    recorder.write(record);
+                }
+                result.games++;
+                result.plies += state.ply();
+                if (winner == GameState.RED) {
+                    result.redWins++;
+                }
+                if ((winner == GameState.RED) == aIsRed) {
+                    result.aWins++;
+                }
+            }
+        } finally {
+            Strategies.close(a);
+            Strategies.close(b);
+        }
+        return result;
+    }
+
+    /**
+     * 模拟结果统计
+     */
+    public static class Result {
+        long games;
+        long aWins;
+        long redWins;
+        long plies;
+        long elapsedNanos;
+
+        void add(Result other) {
+            games += other.games;
+            aWins += other.aWins;
+            redWins += other.redWins;
+            plies += other.plies;
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getAWins() {
+            return aWins;
+        }
+
+        public double getGamesPerSecond() {
+            return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+        }
+
+        void print() {
+            System.out.printf("对局数 %d，用时 %.2f 秒，%.0f 局/秒，平均 %.1f 步%n",
+                    games, elapsedNanos / 1e9, getGamesPerSecond(), (double) plies / Math.max(1, games));
+            printRate("策略 A 胜率", aWins, games);
+            printRate("策略 B 胜率", games - aWins, games);
+            printRate("红方（先手）胜率", redWins, games);
+            System.out.print(Metrics.global().report());
+        }
+
+        private static void printRate(String label, long wins, long total) {
+            double[] interval = wilson(wins, total);
+            System.out.printf("%s %.2f%%  95%% 置信区间 [%.2f%%, %.2f%%]%n",
+                    label, 100.0 * wins / Math.max(1, total), interval[0] * 100, interval[1] * 100);
+        }
+    }
+
+    /**
+     * Wilson 得分区间（95%）
+     */
+    static double[] wilson(long wins, long total) {
+        if (total == 0) {
+            return new double[]{0, 1};
+        }
+        double z = 1.96;
+        double p = (double) wins / total;
+        double denominator = 1 + z * z / total;
+        double center = (p + z * z / (2 * total)) / denominator;
+        double half = z * Math.sqrt(p * (1 - p) / total + z * z / (4.0 * total * total)) / denominator;
+        return new double[]{Math.max(0, center - half), Math.min(1, center + half)};
+    }
+}
@@ -0,0 +1,275 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 一局棋的观战广播
+ *
+ * 每步棋只编码一次，直接编码成观战协议里的文本（WIRE_BYTES 字节），写进这一局共享的页里。
+ * 一页能放 capacity 步，写满后换一张新页，写过的内容不再修改，所以观战者取数据时只记下页里的一段，
+ * 在锁外把它原样写到连接上，不需要各自复制或格式化。每个观战者只有一个读游标，
+ * 落后时把积压的多步合并成一批一次取走。
+ * 落后超过 maxLag 步（最多为缓冲容量）时不再补发增量，改为发送当前局面的快照，然后从最新一步继续
+ */
+public class SpectatorFeed {
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int WIRE_BYTES = 1 + PlyDelta.HEX_DIGITS; // 每步的文本：空格加十六进制增量
+
+    private final int capacity;
+    private final int maxLag;
+    private final GameState latest = new GameState(); // 最新局面，用来生成快照
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private byte[] page; // 正在写的一页
+    private byte[] previousPage; // 上一页，落后的观战者可能还要从这里取
+    private volatile long published; // 已发布的步数
+    private boolean finished;
+
+    public SpectatorFeed() {
+        this(DEFAULT_CAPACITY, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 环形缓冲能保存的步数
+     * @param maxLag   落后超过这么多步就改发快照，不能超过 capacity
+     */
+    public SpectatorFeed(int capacity, int maxLag) {
+        if (maxLag < 1 || maxLag > capacity) {
+            throw new IllegalArgumentException("maxLag 必须在 1 到 capacity 之间");
+        }
+        this.capacity = capacity;
+        this.maxLag = maxLag;
+    }
+
+    /**
+     * 发布一步棋（PlyDelta 编码），由下棋的线程调用
+     */
+    public synchronized void publish(int delta) {
+        int slot = (int) (published % capacity);
+        if (slot == 0) {
+            previousPage = page;
+            page = new byte[capacity * WIRE_BYTES];
+        }
+        int offset = slot * WIRE_BYTES;
+        page[offset] = ' ';
+        PlyDelta.writeHex(delta, page, offset + 1);
+        PlyDelta.apply(latest, delta);
+        published++;
+        notifyAll();
+    }
+
+    /**
+     * 对局结束，观战者取完剩下的数据后收到 END
+     */
+    public synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * 第 ply 步所在的页，ply 不能比最新一步落后超过 capacity 步
+     */
+    private byte[] pageOf(long ply) {
+        return ply / capacity == (published - 1) / capacity ? page : previousPage;
+    }
+
+    public long getPublished() {
+        return published;
+    }
+
+    public Subscriber subscribe() {
+        Subscriber subscriber = new Subscriber();
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public List<Subscriber> getSubscribers() {
+        return subscribers;
+    }
+
+    /**
+     * 所有观战者中最大的落后步数
+     */
+    public long getMaxLag() {
+        long max = 0;
+        for (Subscriber subscriber : subscribers) {
+            max = Math.max(max, subscriber.getLag());
+        }
+        return max;
+    }
+
+    /**
+     * 一次取到的数据，观战者各自复用一个
+     */
+    public static final class Batch {
+        public static final int NONE = 0; // 等待超时，没有新数据
+        public static final int DELTAS = 1; // 从 sequence 开始的 count 步，见 writeDeltas
+        public static final int SNAPSHOT = 2; // cells / sideToMove 是第 sequence 步之后的局面
+        public static final int END = 3; // 对局结束，不会再有数据
+
+        // 增量在共享页里的一段或两段（跨页时），只读
+        private byte[] first;
+        private int firstOffset;
+        private int firstLength;
+        private byte[] second;
+        private int secondLength;
+        private final int[] cells = new int[2 * GameState.PIECES];
+        private int kind;
+        private long sequence;
+        private int count;
+        private int sideToMove;
+        private int ply;
+
+        public int kind() {
+            return kind;
+        }
+
+        public long sequence() {
+            return sequence;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public int delta(int index) {
+            int offset = index * WIRE_BYTES + 1;
+            return offset < firstLength ? PlyDelta.readHex(first, firstOffset + offset)
+                    : PlyDelta.readHex(second, offset - firstLength);
+        }
+
+        /**
+         * 把这 count 步的文本（每步 WIRE_BYTES 字节）写入 out，直接从共享的页里写，不复制
+         */
+        public void writeDeltas(OutputStream out) throws IOException {
+            out.write(first, firstOffset, firstLength);
+            if (secondLength > 0) {
+                out.write(second, 0, secondLength);
+            }
+        }
+
+        /**
+         * 快照中第 side*6+编号 个棋子的格子，被吃掉为 -1
+         */
+        public int cell(int index) {
+            return cells[index];
+        }
+
+        public int sideToMove() {
+            return sideToMove;
+        }
+
+        public int ply() {
+            return ply;
+        }
+    }
+
+    /**
+     * 一个观战者，只能在一个线程里使用
+     */
+    public final class Subscriber {
+        private final Batch batch = new Batch();
+        private volatile long cursor;
+        private long deliveredPlies;
+        private long batches;
+        private long snapshots;
+        private long maxObservedLag;
+
+        /**
+         * 取下一批数据，没有新数据时最多等待 timeoutMillis 毫秒
+         * 返回的 Batch 在下一次调用前有效
+         */
+        public Batch poll(long timeoutMillis) throws InterruptedException {
+            synchronized (SpectatorFeed.this) {
+                long deadline = System.currentTimeMillis() + timeoutMillis;
+                long remaining = timeoutMillis;
+                while (cursor == published && !finished && remaining > 0) {
+                    SpectatorFeed.this.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+                long end = published;
+                long lag = end - cursor;
+                maxObservedLag = Math.max(maxObservedLag, lag);
+                if (lag == 0) {
+                    batch.kind = finished ? Batch.END : Batch.NONE;
+                    batch.count = 0;
+                } else if (lag > maxLag) {
+                    // 太慢了：丢掉积压的增量，发当前局面
+                    fillSnapshot();
+                } else {
+                    // 把积压的几步合并成一批，只记下它们在页里的位置
+                    batch.kind = Batch.DELTAS;
+                    batch.sequence = cursor;
+                    batch.count = (int) lag;
+                    long split = Math.min(end, (cursor / capacity + 1) * capacity);
+                    batch.first = pageOf(cursor);
+                    batch.firstOffset = (int) (cursor % capacity) * WIRE_BYTES;
+                    batch.firstLength = (int) (split - cursor) * WIRE_BYTES;
+                    batch.second = page;
+                    batch.secondLength = (int) (end - split) * WIRE_BYTES;
+                    deliveredPlies += lag;
+                }
+                cursor = end;
+                if (batch.kind != Batch.NONE) {
+                    batches++;
+                }
+                return batch;
+            }
+        }
+
+        /**
+         * 取当前局面的快照，之后从最新一步继续，开始观战时调用
+         */
+        public Batch snapshot() {
+            synchronized (SpectatorFeed.this) {
+                fillSnapshot();
+                cursor = published;
+                batches++;
+                return batch;
+            }
+        }
+
+        private void fillSnapshot() {
+            batch.kind = Batch.SNAPSHOT;
+            batch.sequence = published;
+            batch.count = 0;
+            for (int side = GameState.RED; side <= GameState.BLUE; side++) {
+                for (int piece = 0; piece < GameState.PIECES; piece++) {
+                    batch.cells[side * GameState.PIECES + piece] = latest.pieceCell(side, piece);
+                }
+            }
+            batch.sideToMove = latest.sideToMove();
+            batch.ply = latest.ply();
+            snapshots++;
+        }
+
+        /**
+         * 还没取走的步数
+         */
+        public long getLag() {
+            return published - cursor;
+        }
+
+        public long getMaxObservedLag() {
+            return maxObservedLag;
+        }
+
+        public long getDeliveredPlies() {
+            return deliveredPlies;
+        }
+
+        public long getBatches() {
+            return batches;
+        }
+
+        public long getSnapshots() {
+            return snapshots;
+        }
+
+        public void unsubscribe() {
+            subscribers.remove(this);
+        }
+    }
+}
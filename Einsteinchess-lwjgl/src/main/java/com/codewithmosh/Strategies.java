@@ -0,0 +1,77 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.function.IntFunction;
+
+/**
+ * 根据命令行里的描述创建走棋策略
+ *
+ * 支持的写法：
+ * random                      随机走棋
+ * greedy                      一层搜索
+ * expecti:深度[:毫秒]          期望极大极小搜索
+ * mcts:模拟次数[:线程数[:存储]]  蒙特卡洛树搜索（树并行），指定存储（heap、system、jemalloc、rpmalloc）时
+ *                             在相邻两步之间复用子树，heap 以外的节点放在对应分配器的堆外内存池里
+ * ntuple:权重文件[:深度]        用 n-tuple 网络评估的期望极大极小搜索，权重由 NTupleTrainer 训练，只支持标准棋盘
+ */
+public final class Strategies {
+    private Strategies() {
+    }
+
+    /**
+     * 创建一个新的策略实例，每个线程应该使用自己的实例
+     */
+    public static MoveStrategy create(String spec, long seed) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "random":
+                return new RandomStrategy(seed);
+            case "greedy":
+                return new ExpectiminimaxSearch(new HeuristicEvaluator(), 1, 0);
+            case "expecti": {
+                int depth = parts.length > 1 ? Integer.parseInt(parts[1]) : 4;
+                long millis = parts.length > 2 ? Long.parseLong(parts[2]) : 0;
+                return new ExpectiminimaxSearch(new HeuristicEvaluator(), depth, millis);
+            }
+            case "mcts": {
+                long playouts = parts.length > 1 ? Long.parseLong(parts[1]) : 10_000;
+                int threads = parts.length > 2 ? Integer.parseInt(parts[2]) : 1;
+                int capacity = (int) Math.min(playouts * MoveGenerator.MAX_MOVES * GameState.PIECES + 64, 1 << 22);
+                if (parts.length < 4) {
+                    return new MctsSearch(MctsSearch.Mode.TREE_PARALLEL, threads, playouts, 0, capacity, seed);
+                }
+                IntFunction<NodeStore> stores = parts[3].equals("heap") ? MctsTree::new
+                        : OffHeapNodeStore.factory(OffHeapArena.Backend.parse(parts[3]));
+                return new MctsSearch(MctsSearch.Mode.TREE_PARALLEL, threads, playouts, 0, capacity, seed, stores, true);
+            }
+            case "ntuple": {
+                if (parts.length < 2) {
+                    throw new IllegalArgumentException("ntuple 策略需要权重文件: " + spec);
+                }
+                int depth = parts.length > 2 ? Integer.parseInt(parts[2]) : 2;
+                try {
+                    return new ExpectiminimaxSearch(NTupleEvaluator.load(Paths.get(parts[1])), depth, 0);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("无法读取权重文件 " + parts[1], e);
+                }
+            }
+            default:
+                throw new IllegalArgumentException("未知的策略: " + spec);
+        }
+    }
+
+    /**
+     * 释放策略占用的资源（例如线程池）
+     */
+    public static void close(MoveStrategy strategy) {
+        if (strategy instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) strategy).close();
+            } catch (Exception e) {
+                throw new IllegalStateException("无法关闭策略 " + strategy.name(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 残局库
+ * 保存每方不超过 N 个棋子的全部局面在双方最优走法下的精确胜率
+ *
+ * 只存红方走棋的局面；蓝方走棋的局面旋转 180 度并交换颜色后就是红方走棋的局面。
+ * 局面下标 = 存活组合的起始偏移 + 棋子位置的排列序号，
+ * 排列序号按“红方棋子（编号从小到大），再蓝方棋子”的顺序，
+ * 每个棋子记它在剩余空格里的名次，用 25 * 24 * 23 ... 的混合进制拼起来，没有空洞
+ *
+ * 文件格式（小端）：
+ * 0  int  魔数 "EZTB"
+ * 4  int  版本
+ * 8  int  每方最多棋子数 N
+ * 12 int  保留
+ * 16 起为每个局面一个无符号 16 位胜率，65535 表示必胜
+ *
+ * 文件通过 FileChannel.map 映射，查询不占用堆内存，打开后立即可用
+ */
+public class Tablebase implements AutoCloseable {
+    public static final int MAGIC = 0x42545A45; // "EZTB"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int MAX_SUPPORTED_PIECES = 2;
+    public static final float NOT_FOUND = -1.0f;
+
+    static final int MIRROR = GameState.CELLS - 1; // 旋转 180 度：cell -> 24 - cell
+
+    private final int maxPieces;
+    private final int[] comboIndex; // [红方掩码 * 64 + 蓝方掩码] -> 组合序号，不在库中为 -1
+    private final long[] comboBase; // 组合的起始偏移，最后一项为总局面数
+    private final int[] comboRed;
+    private final int[] comboBlue;
+
+    private FileChannel channel;
+    private MappedByteBuffer data;
+
+    /**
+     * 只建立索引，不关联文件（生成器使用）
+     */
+    Tablebase(int maxPieces) {
+        if (maxPieces < 1 || maxPieces > MAX_SUPPORTED_PIECES) {
+            throw new IllegalArgumentException("每方棋子数必须在 1 到 " + MAX_SUPPORTED_PIECES + " 之间");
+        }
+        this.maxPieces = maxPieces;
+        int masks = GameState.ALL_ALIVE + 1;
+        comboIndex = new int[masks * masks];
+        int count = 0;
+        for (int red = 1; red < masks; red++) {
+            for (int blue = 1; blue < masks; blue++) {
+                comboIndex[red * masks + blue] = Integer.bitCount(red) <= maxPieces && Integer.bitCount(blue) <= maxPieces ? count++ : -1;
+            }
+        }
+        comboBase = new long[count + 1];
+        comboRed = new int[count];
+        comboBlue = new int[count];
+        for (int red = 1; red < masks; red++) {
+            for (int blue = 1; blue < masks; blue++) {
+                int combo = comboIndex[red * masks + blue];
+                if (combo >= 0) {
+                    comboRed[combo] = red;
+                    comboBlue[combo] = blue;
+                    comboBase[combo + 1] = comboBase[combo] + placements(Integer.bitCount(red) + Integer.bitCount(blue));
+                }
+            }
+        }
+    }
+
+    /**
+     * 打开残局库文件
+     */
+    public static Tablebase open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("不是残局库文件: " + path);
+            }
+            Tablebase tablebase = new Tablebase(header.getInt(8));
+            long expected = HEADER_BYTES + tablebase.size() * 2;
+            if (channel.size() != expected) {
+                throw new IOException("残局库文件大小不对: " + channel.size() + "，应为 " + expected);
+            }
+            tablebase.channel = channel;
+            tablebase.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+            tablebase.data.order(ByteOrder.LITTLE_ENDIAN);
+            return tablebase;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * k 个可区分的棋子放在 25 个格子上的方法数
+     */
+    static long placements(int k) {
+        long n = 1;
+        for (int i = 0; i < k; i++) {
+            n *= GameState.CELLS - i;
+        }
+        return n;
+    }
+
+    public int maxPieces() {
+        return maxPieces;
+    }
+
+    /**
+     * 总局面数
+     */
+    public long size() {
+        return comboBase[comboBase.length - 1];
+    }
+
+    int comboCount() {
+        return comboRed.length;
+    }
+
+    int comboRed(int combo) {
+        return comboRed[combo];
+    }
+
+    int comboBlue(int combo) {
+        return comboBlue[combo];
+    }
+
+    long comboBase(int combo) {
+        return comboBase[combo];
+    }
+
+    /**
+     * 组合序号，不在库中返回 -1
+     */
+    int combo(int redMask, int blueMask) {
+        return comboIndex[redMask * (GameState.ALL_ALIVE + 1) + blueMask];
+    }
+
+    /**
+     * 局面是否在库中
+     */
+    public boolean covers(GameState state) {
+        if (data == null || state.isGameOver() || !state.variant().isStandard()) {
+            return false;
+        }
+        int red = state.aliveMask(GameState.RED);
+        int blue = state.aliveMask(GameState.BLUE);
+        return red != 0 && blue != 0 && combo(red, blue) >= 0;
+    }
+
+    /**
+     * 计算红方走棋局面的下标
+     *
+     * @param redCells  按编号存放的红方棋子格子
+     * @param blueCells 按编号存放的蓝方棋子格子
+     */
+    long index(int redMask, int[] redCells, int blueMask, int[] blueCells) {
+        long index = 0;
+        long used = 0;
+        int placed = 0;
+        for (int piece = 0; piece < GameState.PIECES; piece++) {
+            if ((redMask & (1 << piece)) != 0) {
+                int cell = redCells[piece];
+                index = index * (GameState.CELLS - placed) + cell - Long.bitCount(used & ((1L << cell) - 1));
+                used |= 1L << cell;
+                placed++;
+            }
+        }
+        for (int piece = 0; piece < GameState.PIECES; piece++) {
+            if ((blueMask & (1 << piece)) != 0) {
+                int cell = blueCells[piece];
+                index = index * (GameState.CELLS - placed) + cell - Long.bitCount(used & ((1L << cell) - 1));
+                used |= 1L << cell;
+                placed++;
+            }
+        }
+        return comboBase[combo(redMask, blueMask)] + index;
+    }
+
+    /**
+     * 下标的逆运算，把组合内的序号还原成棋子格子
+     *
+     * @param ranks 临时缓冲，长度至少为 2 * maxPieces
+     */
+    void decode(int combo, long offset, int[] redCells, int[] blueCells, int[] ranks) {
+        int redMask = comboRed[combo];
+        int blueMask = comboBlue[combo];
+        int k = Integer.bitCount(redMask) + Integer.bitCount(blueMask);
+        for (int j = k - 1; j >= 0; j--) {
+            int radix = GameState.CELLS - j;
+            ranks[j] = (int) (offset % radix);
+            offset /= radix;
+        }
+        long used = 0;
+        int j = 0;
+        for (int piece = 0; piece < GameState.PIECES; piece++) {
+            redCells[piece] = -1;
+            if ((redMask & (1 << piece)) != 0) {
+                redCells[piece] = nthFree(used, ranks[j++]);
+                used |= 1L << redCells[piece];
+            }
+        }
+        for (int piece = 0; piece < GameState.PIECES; piece++) {
+            blueCells[piece] = -1;
+            if ((blueMask & (1 << piece)) != 0) {
+                blueCells[piece] = nthFree(used, ranks[j++]);
+                used |= 1L << blueCells[piece];
+            }
+        }
+    }
+
+    private static int nthFree(long used, int rank) {
+        for (int cell = 0; cell < GameState.CELLS; cell++) {
+            if ((used & (1L << cell)) == 0 && rank-- == 0) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("名次超出范围");
+    }
+
+    /**
+     * 查询当前走棋方的精确胜率，不在库中返回 NOT_FOUND
+     * 不分配内存，可以在搜索里频繁调用
+     */
+    public float probe(GameState state) {
+        if (!covers(state)) {
+            return NOT_FOUND;
+        }
+        // 蓝方走棋时旋转棋盘并交换颜色，变成红方走棋的局面
+        int side = state.sideToMove();
+        boolean mirror = side == GameState.BLUE;
+        long index = 0;
+        long used = 0;
+        int placed = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int owner = pass == 0 ? side : GameState.opponent(side);
+            for (int piece = 0; piece < GameState.PIECES; piece++) {
+                int cell = state.pieceCell(owner, piece);
+                if (cell >= 0) {
+                    if (mirror) {
+                        cell = MIRROR - cell;
+                    }
+                    index = index * (GameState.CELLS - placed) + cell - Long.bitCount(used & ((1L << cell) - 1));
+                    used |= 1L << cell;
+                    placed++;
+                }
+            }
+        }
+        int combo = combo(state.aliveMask(side), state.aliveMask(GameState.opponent(side)));
+        return read(comboBase[combo] + index) / 65535.0f;
+    }
+
+    int read(long index) {
+        return data.getChar((int) (HEADER_BYTES + index * 2));
+    }
+
+    @Override
+    public void close() throws IOException {
+        data = null;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.codewithmosh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * 残局库生成器（逆向求解）
+ *
+ * 爱恩斯坦棋的棋子只会朝目标前进，局面之间没有环。定义进度 P 为
+ * 红方棋子的 x + y 与蓝方棋子的 (4 - x) + (4 - y) 之和，那么：
+ * 不吃子的一步会让 P 增加，而且旋转换色后 P 不变；吃子的一步会减少棋子总数。
+ * 所以按棋子总数从少到多、同样棋子数内按 P 从大到小求解，
+ * 每个局面求解时它的所有后继都已经算好，一遍扫描即可得到精确值
+ *
+ * 用法：TablebaseGenerator [每方最多棋子数] [输出文件]
+ */
+public class TablebaseGenerator {
+    private static final int MAX_PROGRESS = 2 * (GameState.SIZE - 1);
+
+    private final Tablebase index;
+    private final float[] values; // 红方走棋时的胜率
+
+    public TablebaseGenerator(int maxPieces) {
+        index = new Tablebase(maxPieces);
+        values = new float[Math.toIntExact(index.size())];
+    }
+
+    public static void main(String[] args) throws IOException {
+        int maxPieces = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        Path output = Paths.get(args.length > 1 ? args[1] : "einstein-" + maxPieces + ".tb");
+
+        long start = System.nanoTime();
+        TablebaseGenerator generator = new TablebaseGenerator(maxPieces);
+        System.out.println("残局库局面数: " + generator.index.size());
+        generator.solve();
+        System.out.printf("求解完成，用时 %.1f 秒%n", (System.nanoTime() - start) / 1e9);
+        generator.write(output);
+        System.out.println("已写入 " + output);
+    }
+
+    /**
+     * 按棋子总数分层求解，同一层内互为镜像的两个组合放在一起，不同组合对并行求解
+     */
+    public void solve() {
+        for (int total = 2; total <= 2 * index.maxPieces(); total++) {
+            List<int[]> pairs = new ArrayList<>();
+            for (int combo = 0; combo < index.comboCount(); combo++) {
+                int red = index.comboRed(combo);
+                int blue = index.comboBlue(combo);
+                int mirror = index.combo(blue, red);
+                if (Integer.bitCount(red) + Integer.bitCount(blue) == total && combo <= mirror) {
+                    pairs.add(new int[]{combo, mirror});
+                }
+            }
+            IntStream.range(0, pairs.size()).parallel().forEach(i -> solvePair(pairs.get(i)[0], pairs.get(i)[1]));
+        }
+    }
+
+    private void solvePair(int first, int second) {
+        int[] combos = first == second ? new int[]{first} : new int[]{first, second};
+        int k = Integer.bitCount(index.comboRed(first)) + Integer.bitCount(index.comboBlue(first));
+        int span = (int) Tablebase.placements(k);
+        int entries = span * combos.length;
+        int maxProgress = MAX_PROGRESS * k;
+
+        int[] redCells = new int[GameState.PIECES];
+        int[] blueCells = new int[GameState.PIECES];
+        int[] ranks = new int[k];
+
+        // 按进度做计数排序
+        byte[] progress = new byte[entries];
+        int[] counts = new int[maxProgress + 2];
+        for (int e = 0; e < entries; e++) {
+            int combo = combos[e / span];
+            index.decode(combo, e % span, redCells, blueCells, ranks);
+            int p = progress(redCells, blueCells);
+            progress[e] = (byte) p;
+            counts[maxProgress - p + 1]++;
+        }
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+        int[] order = new int[entries];
+        for (int e = 0; e < entries; e++) {
+            order[counts[maxProgress - progress[e]]++] = e;
+        }
+
+        int[] mirrorRed = new int[GameState.PIECES];
+        int[] mirrorBlue = new int[GameState.PIECES];
+        for (int e : order) {
+            int combo = combos[e / span];
+            long offset = e % span;
+            index.decode(combo, offset, redCells, blueCells, ranks);
+            values[(int) (index.comboBase(combo) + offset)] =
+                    solvePosition(index.comboRed(combo), redCells, index.comboBlue(combo), blueCells, mirrorRed, mirrorBlue);
+        }
+    }
+
+    private static int progress(int[] redCells, int[] blueCells) {
+        int p = 0;
+        for (int piece = 0; piece < GameState.PIECES; piece++) {
+            if (redCells[piece] >= 0) {
+                p += GameState.cellX(redCells[piece]) + GameState.cellY(redCells[piece]);
+            }
+            if (blueCells[piece] >= 0) {
+                p += MAX_PROGRESS - GameState.cellX(blueCells[piece]) - GameState.cellY(blueCells[piece]);
+            }
+        }
+        return p;
+    }
+
+    /**
+     * 红方走棋局面的胜率：六个点数取平均，每个点数取最好的着法
+     */
+    private float solvePosition(int redMask, int[] redCells, int blueMask, int[] blueCells, int[] mirrorRed, int[] mirrorBlue) {
+        for (int piece = 0; piece < GameState.PIECES; piece++) {
+            if (blueCells[piece] == GameState.BLUE_GOAL) {
+                return 0; // 蓝方刚刚到达目标
+            }
+            if (redCells[piece] == GameState.RED_GOAL) {
+                return 1;
+            }
+        }
+
+        float total = 0;
+        for (int roll = 1; roll <= GameState.PIECES; roll++) {
+            float best = 0;
+            int movable = MoveGenerator.movableMask(redMask, roll);
+            for (int piece = 0; piece < GameState.PIECES && best < 1; piece++) {
+                if ((movable & (1 << piece)) == 0) {
+                    continue;
+                }
+                int from = redCells[piece];
+                for (int direction = 0; direction < MoveGenerator.DIRECTIONS; direction++) {
+                    int to = MoveGenerator.target(GameState.RED, from, direction);
+                    if (to < 0) {
+                        continue;
+                    }
+                    float value = to == GameState.RED_GOAL ? 1
+                            : successor(redMask, redCells, blueMask, blueCells, piece, to, mirrorRed, mirrorBlue);
+                    best = Math.max(best, value);
+                }
+            }
+            total += best;
+        }
+        return total / GameState.PIECES;
+    }
+
+    /**
+     * 走完一步后轮到蓝方，旋转换色后查表，返回红方的胜率
+     */
+    private float successor(int redMask, int[] redCells, int blueMask, int[] blueCells, int piece, int to,
+                            int[] mirrorRed, int[] mirrorBlue) {
+        int nextRed = redMask;
+        int nextBlue = blueMask;
+        for (int q = 0; q < GameState.PIECES; q++) {
+            if (q != piece && redCells[q] == to) {
+                nextRed &= ~(1 << q); // 吃掉自己的棋子
+            }
+            if (blueCells[q] == to) {
+                nextBlue &= ~(1 << q);
+            }
+        }
+        if (nextBlue == 0) {
+            return 1;
+        }
+        for (int q = 0; q < GameState.PIECES; q++) {
+            mirrorRed[q] = (nextBlue & (1 << q)) != 0 ? Tablebase.MIRROR - blueCells[q] : -1;
+            int cell = q == piece ? to : redCells[q];
+            mirrorBlue[q] = (nextRed & (1 << q)) != 0 ? Tablebase.MIRROR - cell : -1;
+        }
+        return 1 - values[(int) index.index(nextBlue, mirrorRed, nextRed, mirrorBlue)];
+    }
+
+    /**
+     * 量化成 16 位并写入文件
+     */
+    public void write(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(Tablebase.MAGIC).putInt(Tablebase.VERSION).putInt(index.maxPieces()).putInt(0);
+            for (float value : values) {
+                if (buffer.remaining() < 2) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    buffer.clear();
+                }
+                buffer.putChar((char) Math.round(value * 65535.0f));
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
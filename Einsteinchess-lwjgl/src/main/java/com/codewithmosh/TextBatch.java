@@ -0,0 +1,90 @@
+package com.codewithmosh;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * 文字排版：把一帧里所有要画的文字按图集排成字形实例，写进同一个缓冲，交给后端一次绘制
+ *
+ * 每个实例 RenderBackend.GLYPH_FLOATS 个 float，缓冲满了以后多出的字形丢弃；
+ * 排版只用图集的 Java 数组，不分配内存，也不需要显卡
+ */
+public class TextBatch {
+    private final GlyphAtlas atlas;
+    private final int capacity;
+    private final FloatBuffer glyphs;
+    private final float[] quad = new float[8];
+    private int count;
+
+    /**
+     * @param capacity 一帧最多的字形数
+     */
+    public TextBatch(GlyphAtlas atlas, int capacity) {
+        this.atlas = atlas;
+        this.capacity = capacity;
+        glyphs = ByteBuffer.allocateDirect(capacity * RenderBackend.GLYPH_FLOATS * Float.BYTES)
+                .order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * 清空，开始排新的一帧
+     */
+    public void clear() {
+        count = 0;
+    }
+
+    /**
+     * 从左上角 (x, y) 开始排一段文字，'\n' 换行
+     *
+     * @return 写入的字形数
+     */
+    public int add(CharSequence text, float x, float y, float r, float g, float b) {
+        glyphs.limit(glyphs.capacity());
+        int added = 0;
+        float penX = x;
+        float baseline = y + atlas.ascent();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                penX = x;
+                baseline += atlas.lineHeight();
+                continue;
+            }
+            if (count < capacity && atlas.quad(c, penX, baseline, quad)) {
+                int base = count * RenderBackend.GLYPH_FLOATS;
+                glyphs.put(base, quad).put(base + 8, r).put(base + 9, g).put(base + 10, b);
+                count++;
+                added++;
+            }
+            penX += atlas.advance(c);
+        }
+        return added;
+    }
+
+    /**
+     * 排好的字形，position 为 0，limit 在最后一个字形末尾；字形用绝对位置写入，取出后还可以继续 add
+     */
+    public FloatBuffer glyphs() {
+        return glyphs.limit(count * RenderBackend.GLYPH_FLOATS).position(0);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public GlyphAtlas atlas() {
+        return atlas;
+    }
+
+    /**
+     * 第 index 个字形的第 field 个分量
+     */
+    public float glyph(int index, int field) {
+        return glyphs.get(index * RenderBackend.GLYPH_FLOATS + field);
+    }
+}
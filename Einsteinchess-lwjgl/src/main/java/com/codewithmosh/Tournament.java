@@ -0,0 +1,394 @@
+package com.codewithmosh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 策略对战锦标赛，用序贯概率比检验（SPRT）提前结束
+ *
+ * 对局成对进行：同一对的两局用同一个骰子种子，双方交换先后手，骰子运气基本抵消，
+ * 每对的得分（0、0.5、1）比单局得分的方差小得多。按对统计平均得分、Elo 和 95% 置信区间，
+ * 每完成一对就用正态近似的广义 SPRT 检验 H0: Elo = elo0 和 H1: Elo = elo1，
+ * 对数似然比越过边界就停止，通常只需要固定局数的一小部分
+ *
+ * 多于两个策略时做循环赛，每两个策略之间各打一场带 SPRT 的比赛，最后拟合出所有策略的 Elo 排名
+ *
+ * 用法：Tournament --players expecti:3,mcts:2000 [--elo0 0] [--elo1 20] [--alpha 0.05] [--beta 0.05]
+ *       [--max-pairs 20000] [--threads 4] [--seed 1] [--variant 6x6/8]
+ */
+public class Tournament {
+    private static final int REPORT_INTERVAL = 200; // 每多少对打印一次进度
+    private static final int MIN_PAIRS = 16; // 少于这么多对时不做判断
+    private static final double MIN_VARIANCE = 1e-3; // 全胜或全负时方差为 0，给一个下限
+
+    private final int threads;
+    private final long maxPairs;
+    private final long seed;
+    private final Variant variant;
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound; // 对数似然比低于它时接受 H0
+    private final double upperBound; // 高于它时接受 H1
+
+    /**
+     * 构造函数
+     *
+     * @param elo0  原假设：A 比 B 强 elo0
+     * @param elo1  备择假设：A 比 B 强 elo1
+     * @param alpha 第一类错误率（H0 成立却接受 H1）
+     * @param beta  第二类错误率（H1 成立却接受 H0）
+     */
+    public Tournament(int threads, long maxPairs, long seed, Variant variant,
+                      double elo0, double elo1, double alpha, double beta) {
+        if (elo1 <= elo0) {
+            throw new IllegalArgumentException("elo1 必须大于 elo0");
+        }
+        this.threads = threads;
+        this.maxPairs = maxPairs;
+        this.seed = seed;
+        this.variant = variant;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String players = "expecti:2,random";
+        double elo0 = 0;
+        double elo1 = 20;
+        double alpha = 0.05;
+        double beta = 0.05;
+        long maxPairs = 20_000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        Variant variant = Variant.STANDARD;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--players":
+                    players = args[i + 1];
+                    break;
+                case "--elo0":
+                    elo0 = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--elo1":
+                    elo1 = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--alpha":
+                    alpha = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--beta":
+                    beta = Double.parseDouble(args[i + 1]);
+                    break;
+                case "--max-pairs":
+                    maxPairs = Long.parseLong(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[i + 1]);
+                    break;
+                case "--variant":
+                    variant = Variant.parse(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        String[] specs = players.split(",");
+        if (specs.length < 2) {
+            throw new IllegalArgumentException("至少需要两个策略: " + players);
+        }
+        for (String spec : specs) {
+            if (!variant.isStandard() && spec.startsWith("ntuple")) {
+                throw new IllegalArgumentException("ntuple 策略只支持标准棋盘，不能和 --variant " + variant + " 一起使用");
+            }
+        }
+        System.out.printf("SPRT elo0 %.1f elo1 %.1f alpha %.3f beta %.3f，最多 %d 对，线程数 %d，种子 %d，棋盘 %s%n",
+                elo0, elo1, alpha, beta, maxPairs, threads, seed, variant);
+        Tournament tournament = new Tournament(threads, maxPairs, seed, variant, elo0, elo1, alpha, beta);
+        if (specs.length == 2) {
+            tournament.play(specs[0], specs[1], true).print();
+        } else {
+            tournament.roundRobin(specs);
+        }
+    }
+
+    /**
+     * 循环赛：每两个策略打一场比赛，打印每场结果和排名
+     * 各场比赛被 SPRT 停在不同的局数，直接比总得分会偏向打得少的一方，
+     * 因此用 Bradley-Terry 模型拟合全部对局得到每个策略的 Elo（平均为 0）
+     */
+    public List<Match> roundRobin(String[] specs) throws Exception {
+        int n = specs.length;
+        List<Match> matches = new ArrayList<>();
+        double[] wins = new double[n];
+        double[][] games = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                Match match = play(specs[i], specs[j], false);
+                match.print();
+                matches.add(match);
+                // 每对选手先加一胜一负的先验，全胜或全负时拟合值仍然有限
+                long aWins = match.outcomes[1] + 2 * match.outcomes[2];
+                long total = 2 * match.pairs;
+                wins[i] += aWins + 0.5;
+                wins[j] += total - aWins + 0.5;
+                games[i][j] = total + 1;
+                games[j][i] = total + 1;
+            }
+        }
+        double[] ratings = bradleyTerry(wins, games);
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(ratings[y], ratings[x]));
+        System.out.println("排名（Bradley-Terry 拟合）：");
+        for (int rank = 0; rank < n; rank++) {
+            int i = order[rank];
+            double played = 0;
+            for (int j = 0; j < n; j++) {
+                played += games[i][j];
+            }
+            System.out.printf("%2d  %-28s Elo %+7.1f  （%.0f 局）%n", rank + 1, specs[i], ratings[i], played - (n - 1));
+        }
+        return matches;
+    }
+
+    /**
+     * 用 MM 迭代拟合 Bradley-Terry 强度，返回 Elo 刻度的评分
+     *
+     * @param wins  [i] -> i 赢的局数
+     * @param games [i][j] -> i 和 j 之间的局数
+     */
+    static double[] bradleyTerry(double[] wins, double[][] games) {
+        int n = wins.length;
+        double[] strength = new double[n];
+        Arrays.fill(strength, 1);
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            double[] next = new double[n];
+            double logSum = 0;
+            for (int i = 0; i < n; i++) {
+                double denominator = 0;
+                for (int j = 0; j < n; j++) {
+                    if (j != i) {
+                        denominator += games[i][j] / (strength[i] + strength[j]);
+                    }
+                }
+                next[i] = wins[i] / denominator;
+                logSum += Math.log(next[i]);
+            }
+            double scale = Math.exp(logSum / n); // 几何平均归一
+            double change = 0;
+            for (int i = 0; i < n; i++) {
+                next[i] /= scale;
+                change = Math.max(change, Math.abs(next[i] - strength[i]) / strength[i]);
+            }
+            strength = next;
+            if (change < 1e-9) {
+                break;
+            }
+        }
+        double[] ratings = new double[n];
+        for (int i = 0; i < n; i++) {
+            ratings[i] = 400 * Math.log10(strength[i]);
+        }
+        return ratings;
+    }
+
+    /**
+     * A 和 B 对战直到 SPRT 得出结论或达到最多对数
+     * 第 n 对的骰子和策略种子只由主种子和 n 决定，与线程数无关
+     */
+    public Match play(String specA, String specB, boolean verbose) throws Exception {
+        Match match = new Match(specA, specB);
+        AtomicLong next = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    playPairs(match, next, verbose);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        match.elapsedNanos = System.nanoTime() - start;
+        return match;
+    }
+
+    /**
+     * 每个线程持有自己的策略和局面，和其他线程只共享比赛统计
+     */
+    private void playPairs(Match match, AtomicLong next, boolean verbose) {
+        MoveStrategy a = Strategies.create(match.specA, seed);
+        MoveStrategy b = Strategies.create(match.specB, seed);
+        GameState state = new GameState(variant);
+        try {
+            long pair;
+            while (!match.isFinished() && (pair = next.getAndIncrement()) < maxPairs) {
+                long pairSeed = Dice.gameSeed(seed, pair);
+                int wins = 0;
+                long plies = 0;
+                for (int game = 0; game < 2; game++) {
+                    // 两局用同一个骰子序列，策略的种子也相同，只交换先后手
+                    a.newGame(Dice.gameSeed(pairSeed, 0));
+                    b.newGame(Dice.gameSeed(pairSeed, 1));
+                    boolean aIsRed = game == 0;
+                    int winner = aIsRed ? SimulationRunner.play(state, a, b, new Dice(pairSeed))
+                            : SimulationRunner.play(state, b, a, new Dice(pairSeed));
+                    plies += state.ply();
+                    if ((winner == GameState.RED) == aIsRed) {
+                        wins++;
+                    }
+                }
+                if (match.record(wins, plies) && verbose) {
+                    match.printProgress();
+                }
+            }
+        } finally {
+            Strategies.close(a);
+            Strategies.close(b);
+        }
+    }
+
+    /**
+     * 得分期望对应的 Elo 差
+     */
+    static double elo(double score) {
+        double s = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / s - 1);
+    }
+
+    /**
+     * Elo 差对应的得分期望
+     */
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * 一场比赛的统计，多个线程并发更新
+     */
+    public final class Match {
+        final String specA;
+        final String specB;
+        final long[] outcomes = new long[3]; // [A 在一对里赢的局数] -> 对数
+        long pairs;
+        long plies;
+        long elapsedNanos;
+        private int decision; // 1 接受 H1，-1 接受 H0，0 尚未判断
+
+        Match(String specA, String specB) {
+            this.specA = specA;
+            this.specB = specB;
+        }
+
+        /**
+         * 记录一对的结果，需要打印进度时返回 true
+         */
+        synchronized boolean record(int wins, long plies) {
+            outcomes[wins]++;
+            pairs++;
+            this.plies += plies;
+            if (decision == 0 && pairs >= MIN_PAIRS) {
+                double llr = llr();
+                if (llr >= upperBound) {
+                    decision = 1;
+                } else if (llr <= lowerBound) {
+                    decision = -1;
+                }
+            }
+            return pairs % REPORT_INTERVAL == 0;
+        }
+
+        synchronized boolean isFinished() {
+            return decision != 0;
+        }
+
+        /**
+         * 1 表示接受 H1（A 至少强 elo1），-1 表示接受 H0，0 表示达到最多对数仍没有结论
+         */
+        public synchronized int getDecision() {
+            return decision;
+        }
+
+        public synchronized long getPairs() {
+            return pairs;
+        }
+
+        /**
+         * A 的平均每对得分
+         */
+        public synchronized double score() {
+            return pairs == 0 ? 0.5 : (outcomes[1] * 0.5 + outcomes[2]) / pairs;
+        }
+
+        /**
+         * 每对得分的方差
+         */
+        synchronized double variance() {
+            if (pairs == 0) {
+                return 0.25;
+            }
+            double mean = score();
+            double sum = outcomes[0] * mean * mean
+                    + outcomes[1] * (0.5 - mean) * (0.5 - mean)
+                    + outcomes[2] * (1 - mean) * (1 - mean);
+            return Math.max(sum / pairs, MIN_VARIANCE);
+        }
+
+        /**
+         * 对数似然比，得分按正态分布近似
+         */
+        public synchronized double llr() {
+            double s0 = expectedScore(elo0);
+            double s1 = expectedScore(elo1);
+            return pairs * (s1 - s0) * (2 * score() - s0 - s1) / (2 * variance());
+        }
+
+        public synchronized double elo() {
+            return Tournament.elo(score());
+        }
+
+        /**
+         * Elo 的 95% 置信区间
+         */
+        public synchronized double[] eloInterval() {
+            double margin = 1.96 * Math.sqrt(variance() / Math.max(1, pairs));
+            return new double[]{Tournament.elo(score() - margin), Tournament.elo(score() + margin)};
+        }
+
+        synchronized void printProgress() {
+            double[] interval = eloInterval();
+            System.out.printf("%6d 对  得分 %5.1f%%  Elo %+6.1f [%+6.1f, %+6.1f]  LLR %+5.2f [%.2f, %.2f]%n",
+                    pairs, score() * 100, elo(), interval[0], interval[1], llr(), lowerBound, upperBound);
+        }
+
+        synchronized void print() {
+            double[] interval = eloInterval();
+            String verdict = decision > 0 ? "接受 H1：A 更强"
+                    : decision < 0 ? "接受 H0：A 没有强 " + elo1 + " Elo"
+                    : "达到最多对数，没有结论";
+            System.out.printf("%s 对 %s：%d 对（%d 局），用时 %.1f 秒，平均 %.1f 步%n", specA, specB, pairs, pairs * 2,
+                    elapsedNanos / 1e9, (double) plies / Math.max(1, pairs * 2));
+            System.out.printf("  一对里 A 赢 0/1/2 局：%d / %d / %d，得分 %.1f%%%n",
+                    outcomes[0], outcomes[1], outcomes[2], score() * 100);
+            System.out.printf("  Elo %+.1f  95%% 置信区间 [%+.1f, %+.1f]%n", elo(), interval[0], interval[1]);
+            System.out.printf("  LLR %+.2f [%.2f, %.2f]，%s%n", llr(), lowerBound, upperBound, verdict);
+        }
+    }
+}
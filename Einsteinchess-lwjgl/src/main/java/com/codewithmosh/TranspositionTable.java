@@ -0,0 +1,163 @@
+package com.codewithmosh;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定大小的无锁置换表，可以在多个搜索线程之间共享
+ *
+ * 每个桶有两个槽位：第一个按深度优先替换，第二个总是替换。
+ * 每个槽位占两个 long：第一个存 key ^ data，第二个存 data，
+ * 读到被其他线程写了一半的槽位时异或校验不通过，按未命中处理，因此不需要加锁
+ *
+ * data 的位布局：
+ * 0-31  评估值（float 的位）
+ * 32-53 最佳着法（22 位，没有时为 0x3FFFFF）
+ * 54-60 剩余深度
+ * 61-62 值的类型（EXACT / LOWER / UPPER）
+ */
+public class TranspositionTable {
+    public static final int EXACT = 1; // 精确值
+    public static final int LOWER = 2; // 下界（搜索高出 beta）
+    public static final int UPPER = 3; // 上界（搜索低于 alpha）
+
+    private static final long MOVE_MASK = 0x3FFFFFL;
+    private static final int MAX_DEPTH = 0x7F;
+
+    private final long[] table;
+    private final int bucketMask;
+
+    // 所有置换表合计的命中情况，见 Metrics
+    private static final Metrics.Counter TOTAL_HITS = Metrics.global().counter("tt.hits");
+    private static final Metrics.Counter TOTAL_MISSES = Metrics.global().counter("tt.misses");
+
+    static {
+        Metrics.global().gauge("tt.hitRate", () -> {
+            long hits = TOTAL_HITS.get();
+            return (double) hits / Math.max(1, hits + TOTAL_MISSES.get());
+        });
+    }
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param megabytes 表的大小，向下取到 2 的幂个桶
+     */
+    public TranspositionTable(int megabytes) {
+        long bytes = (long) megabytes << 20;
+        long buckets = Long.highestOneBit(Math.max(1, bytes / 32));
+        if (buckets * 4 > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("置换表过大: " + megabytes + "MB");
+        }
+        table = new long[(int) buckets * 4];
+        bucketMask = (int) buckets - 1;
+    }
+
+    /**
+     * 查找局面，命中返回打包的 data（总是非 0），未命中返回 0
+     */
+    public long probe(long key) {
+        int base = ((int) key & bucketMask) << 2;
+        for (int slot = base; slot < base + 4; slot += 2) {
+            long data = table[slot + 1];
+            long check = table[slot];
+            if ((check ^ data) == key && data != 0) {
+                hits.increment();
+                TOTAL_HITS.increment();
+                return data;
+            }
+        }
+        if (table[base + 1] != 0 || table[base + 3] != 0) {
+            collisions.increment();
+        }
+        misses.increment();
+        TOTAL_MISSES.increment();
+        return 0;
+    }
+
+    /**
+     * 保存搜索结果
+     *
+     * @param move 最佳着法，没有时传 Move.NONE
+     */
+    public void store(long key, int depth, int type, float value, int move) {
+        long data = (Float.floatToRawIntBits(value) & 0xFFFFFFFFL)
+                | ((move == Move.NONE ? MOVE_MASK : move & MOVE_MASK) << 32)
+                | ((long) Math.min(depth, MAX_DEPTH) << 54)
+                | ((long) type << 61);
+        int base = ((int) key & bucketMask) << 2;
+
+        // 同一局面或者更深的结果进深度优先槽，否则进总是替换槽
+        long oldData = table[base + 1];
+        boolean sameKey = (table[base] ^ oldData) == key;
+        int slot = oldData == 0 || sameKey || depth >= depth(oldData) ? base : base + 2;
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+        stores.increment();
+    }
+
+    public static float value(long data) {
+        return Float.intBitsToFloat((int) data);
+    }
+
+    /**
+     * 保存的最佳着法，没有时返回 Move.NONE
+     */
+    public static int move(long data) {
+        long move = (data >>> 32) & MOVE_MASK;
+        return move == MOVE_MASK ? Move.NONE : (int) move;
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> 54) & MAX_DEPTH;
+    }
+
+    public static int type(long data) {
+        return (int) (data >>> 61) & 0x3;
+    }
+
+    /**
+     * 清空表和计数器
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+        stores.reset();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 桶里有其他局面占着、但没有找到目标局面的次数
+     */
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getStores() {
+        return stores.sum();
+    }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public int getBuckets() {
+        return bucketMask + 1;
+    }
+}
@@ -0,0 +1,305 @@
+package com.codewithmosh;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 棋盘变体：棋盘边长和每方棋子数
+ *
+ * 规则本身不变，和棋盘大小有关的一切都在构造时算成查找表（可走棋子、目标格子、Zobrist 键、
+ * 评估用的距离和掷中次数、期望节点的点数分组），GameState 和 MoveGenerator 只查当前变体的表，
+ * 因此任何变体都用同样的 long 位图和着法编码，没有对象图
+ *
+ * 边长 3 到 8（位图最多 64 格），棋子 1 到 8 个（编号占 3 位），骰子的面数等于棋子数。
+ * 开局时棋子从角上按斜线依次摆放，标准棋盘使用传统布局
+ *
+ * 残局库、n-tuple 网络和局面库只支持标准棋盘
+ */
+public final class Variant {
+    public static final int MIN_SIZE = 3;
+    public static final int MAX_SIZE = 8;
+    public static final int MAX_PIECES = 8;
+
+    /** 标准的 5x5 棋盘，每方 6 个棋子 */
+    public static final Variant STANDARD = new Variant(5, 6, new int[]{0, 1, 5, 6, 10, 2});
+
+    private static final ConcurrentHashMap<Integer, Variant> CACHE = new ConcurrentHashMap<>();
+
+    static {
+        CACHE.put(STANDARD.size * 16 + STANDARD.pieces, STANDARD);
+    }
+
+    final int size;
+    final int cells;
+    final int pieces;
+    final int allAlive;
+    final int[] start; // [走棋方 * 棋子数 + 编号] -> 开局格子
+
+    // [存活掩码 * 棋子数 + 点数 - 1] -> 可走棋子的数量和编号，打包为 count | p0 << 2 | p1 << 5
+    final byte[] movable;
+    // [(走棋方 * 格子数 + 格子) * 3 + 方向] -> 目标格子，越界为 -1
+    final byte[] targets;
+    // [(走棋方 * 棋子数 + 编号) * 格子数 + 格子] -> Zobrist 键
+    final long[] zobrist;
+    // [存活掩码 * 棋子数 + 编号] -> 能走这个棋子的点数个数
+    final byte[] coverage;
+    // [走棋方 * 格子数 + 格子] -> 到目标的步数（斜走一步算一步）
+    final byte[] distance;
+    // 掷出不同点数但可走棋子相同的情况合并成一个分支
+    // [存活掩码] -> 分支数；[存活掩码 * 棋子数 + i] -> 分支的代表点数和概率
+    final byte[] branches;
+    final byte[] branchRolls;
+    final float[] branchWeights;
+
+    private Variant(int size, int pieces, int[] redStart) {
+        this.size = size;
+        this.cells = size * size;
+        this.pieces = pieces;
+        this.allAlive = (1 << pieces) - 1;
+
+        start = new int[2 * pieces];
+        for (int i = 0; i < pieces; i++) {
+            start[i] = redStart[i];
+            start[pieces + i] = cells - 1 - redStart[i]; // 蓝方与红方中心对称
+        }
+
+        movable = new byte[(allAlive + 1) * pieces];
+        for (int mask = 0; mask <= allAlive; mask++) {
+            for (int roll = 1; roll <= pieces; roll++) {
+                movable[mask * pieces + roll - 1] = (byte) resolveMovable(mask, roll - 1);
+            }
+        }
+
+        targets = new byte[2 * cells * MoveGenerator.DIRECTIONS];
+        for (int side = 0; side < 2; side++) {
+            for (int cell = 0; cell < cells; cell++) {
+                for (int direction = 0; direction < MoveGenerator.DIRECTIONS; direction++) {
+                    targets[(side * cells + cell) * MoveGenerator.DIRECTIONS + direction] = (byte) target(side, cell, direction);
+                }
+            }
+        }
+
+        if (size == GameState.SIZE && pieces == GameState.PIECES) {
+            zobrist = Zobrist.standardPieceKeys();
+        } else {
+            SplittableRandom random = new SplittableRandom(0x45494E5354454E4CL + size * 31L + pieces);
+            zobrist = new long[2 * pieces * cells];
+            for (int i = 0; i < zobrist.length; i++) {
+                zobrist[i] = random.nextLong();
+            }
+        }
+
+        coverage = new byte[(allAlive + 1) * pieces];
+        for (int mask = 0; mask <= allAlive; mask++) {
+            for (int roll = 1; roll <= pieces; roll++) {
+                int movableMask = movableMask(mask, roll);
+                for (int piece = 0; piece < pieces; piece++) {
+                    if ((movableMask & (1 << piece)) != 0) {
+                        coverage[mask * pieces + piece]++;
+                    }
+                }
+            }
+        }
+        distance = new byte[2 * cells];
+        for (int cell = 0; cell < cells; cell++) {
+            int x = cellX(cell);
+            int y = cellY(cell);
+            distance[cell] = (byte) Math.max(size - 1 - x, size - 1 - y);
+            distance[cells + cell] = (byte) Math.max(x, y);
+        }
+
+        branches = new byte[allAlive + 1];
+        branchRolls = new byte[(allAlive + 1) * pieces];
+        branchWeights = new float[(allAlive + 1) * pieces];
+        for (int mask = 1; mask <= allAlive; mask++) {
+            int base = mask * pieces;
+            int count = 0;
+            for (int roll = 1; roll <= pieces; roll++) {
+                int movableMask = movableMask(mask, roll);
+                int i = 0;
+                while (i < count && movableMask(mask, branchRolls[base + i]) != movableMask) {
+                    i++;
+                }
+                if (i == count) {
+                    branchRolls[base + count++] = (byte) roll;
+                }
+                branchWeights[base + i] += 1.0f / pieces;
+            }
+            branches[mask] = (byte) count;
+        }
+    }
+
+    /**
+     * 取得指定大小的变体，同样的参数总是返回同一个实例
+     */
+    public static Variant of(int size, int pieces) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("棋盘边长必须在 " + MIN_SIZE + " 到 " + MAX_SIZE + " 之间: " + size);
+        }
+        if (pieces < 1 || pieces > MAX_PIECES || pieces > layoutCapacity(size)) {
+            throw new IllegalArgumentException(size + "x" + size + " 棋盘放不下 " + pieces + " 个棋子");
+        }
+        return CACHE.computeIfAbsent(size * 16 + pieces, key -> new Variant(size, pieces, diagonalLayout(size, pieces)));
+    }
+
+    /**
+     * 解析 "6x6/8" 这样的写法，省略棋子数时为 6 个，"standard" 为标准棋盘
+     */
+    public static Variant parse(String spec) {
+        if (spec.equals("standard")) {
+            return STANDARD;
+        }
+        String[] parts = spec.split("/");
+        String[] dims = parts[0].split("x");
+        int size = Integer.parseInt(dims[0]);
+        if (dims.length > 1 && Integer.parseInt(dims[1]) != size) {
+            throw new IllegalArgumentException("只支持正方形棋盘: " + spec);
+        }
+        return of(size, parts.length > 1 ? Integer.parseInt(parts[1]) : GameState.PIECES);
+    }
+
+    /**
+     * 开局区域最多能放的棋子数：红方最多摆到第 size - 2 条斜线，和蓝方的三角区域不重叠
+     */
+    private static int layoutCapacity(int size) {
+        return (size - 1) * size / 2;
+    }
+
+    /**
+     * 从左上角开始按斜线摆放，同一条斜线上从两边向中间交替
+     */
+    private static int[] diagonalLayout(int size, int pieces) {
+        int[] cells = new int[pieces];
+        int n = 0;
+        for (int d = 0; n < pieces; d++) {
+            for (int i = 0; i <= d && n < pieces; i++) {
+                // 0, d, 1, d-1, ... 即 (0,d), (d,0), (1,d-1), ...
+                int x = (i % 2 == 0) ? i / 2 : d - i / 2;
+                cells[n++] = (d - x) * size + x;
+            }
+        }
+        return cells;
+    }
+
+    private int resolveMovable(int mask, int piece) {
+        if ((mask & (1 << piece)) != 0) {
+            return 1 | piece << 2;
+        }
+        int count = 0;
+        int packed = 0;
+        // 比它小的最近的棋子
+        for (int lower = piece - 1; lower >= 0; lower--) {
+            if ((mask & (1 << lower)) != 0) {
+                packed |= lower << (2 + 3 * count++);
+                break;
+            }
+        }
+        // 比它大的最近的棋子
+        for (int higher = piece + 1; higher < pieces; higher++) {
+            if ((mask & (1 << higher)) != 0) {
+                packed |= higher << (2 + 3 * count++);
+                break;
+            }
+        }
+        return count | packed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int cells() {
+        return cells;
+    }
+
+    public int pieces() {
+        return pieces;
+    }
+
+    /**
+     * 所有棋子都在时的存活掩码
+     */
+    public int allAlive() {
+        return allAlive;
+    }
+
+    public boolean isStandard() {
+        return this == STANDARD;
+    }
+
+    public int cell(int x, int y) {
+        return y * size + x;
+    }
+
+    public int cellX(int cell) {
+        return cell % size;
+    }
+
+    public int cellY(int cell) {
+        return cell / size;
+    }
+
+    public String cellName(int cell) {
+        return "(" + cellX(cell) + ", " + cellY(cell) + ")";
+    }
+
+    /**
+     * 红方目标是右下角，蓝方目标是左上角
+     */
+    public int goal(int side) {
+        return side == GameState.RED ? cells - 1 : 0;
+    }
+
+    /**
+     * 开局时棋子所在的格子
+     */
+    public int startCell(int side, int piece) {
+        return start[side * pieces + piece];
+    }
+
+    /**
+     * 计算沿指定方向走一步后的格子，越界返回 -1
+     * 红方：0 右，1 下，2 右下；蓝方：0 左，1 上，2 左上
+     */
+    public int target(int side, int from, int direction) {
+        int step = side == GameState.RED ? 1 : -1;
+        int x = cellX(from) + (direction == 1 ? 0 : step);
+        int y = cellY(from) + (direction == 0 ? 0 : step);
+        if (x < 0 || x >= size || y < 0 || y >= size) {
+            return -1;
+        }
+        return cell(x, y);
+    }
+
+    /**
+     * 给定存活掩码和点数，返回可走棋子的位掩码
+     */
+    public int movableMask(int aliveMask, int roll) {
+        int packed = movable[aliveMask * pieces + roll - 1];
+        int count = packed & 0x3;
+        int mask = 0;
+        for (int i = 0; i < count; i++) {
+            mask |= 1 << ((packed >>> (2 + 3 * i)) & 0x7);
+        }
+        return mask;
+    }
+
+    /**
+     * 可走棋子的数量（0、1 或 2）
+     */
+    public int movableCount(int aliveMask, int roll) {
+        return movable[aliveMask * pieces + roll - 1] & 0x3;
+    }
+
+    /**
+     * 第 index 个可走棋子的编号
+     */
+    public int movablePiece(int aliveMask, int roll, int index) {
+        return (movable[aliveMask * pieces + roll - 1] >>> (2 + 3 * index)) & 0x7;
+    }
+
+    @Override
+    public String toString() {
+        return size + "x" + size + "/" + pieces;
+    }
+}
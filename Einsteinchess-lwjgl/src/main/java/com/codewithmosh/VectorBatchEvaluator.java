@@ -0,0 +1,74 @@
+package com.codewithmosh;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BatchEvaluator 的向量实现（jdk.incubator.vector）
+ *
+ * 每次处理一组局面（AVX2 上 8 个，AVX-512 上 16 个）：用整数向量同时算出这一组局面
+ * 在某个方块上的表下标，再按下标收集（gather）权重并累加，最后逐个通道做 tanh。
+ * 不满一组的尾部交给标量实现：只有几个局面时整组计算反而更慢。
+ * 每个通道的累加顺序和标量实现一样，tanh 也是同一个 Math.tanh，结果逐位相同。
+ * 循环里只用无掩码的向量操作，C2 能把向量对象全部标量化，-prof gc 下每次调用不分配内存
+ *
+ * 不要直接引用这个类，通过 BatchEvaluator.create 获取，否则没有向量模块时会加载失败
+ */
+final class VectorBatchEvaluator implements BatchEvaluator {
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+    private static final int LANES = FLOATS.length();
+
+    private final float[] weights;
+    private final ScalarBatchEvaluator scalar;
+    private final int[] indices = new int[LANES]; // gather 用的下标
+    private final float[] sums = new float[LANES];
+
+    VectorBatchEvaluator(float[] weights) {
+        this.weights = weights;
+        scalar = new ScalarBatchEvaluator(weights);
+    }
+
+    @Override
+    public void evaluate(PositionBatch batch, float[] out) {
+        int capacity = batch.capacity();
+        int end = batch.size() / LANES * LANES;
+        int[] codes = batch.codes;
+        int[] pieces = batch.pieces;
+        for (int base = 0; base < end; base += LANES) {
+            FloatVector total = FloatVector.broadcast(FLOATS, weights[NTupleEvaluator.BIAS]);
+            for (int slot = 0; slot < PositionBatch.PIECE_SLOTS; slot++) {
+                // 被吃掉的棋子特征为 -1：keep 在这些通道为 0，下标换成 0，收集到的权重清零，
+                // 全部是整数位运算，不用 VectorMask（JDK 17 里带掩码的 gather 和掩码转换会退回逐个通道的实现并分配内存）
+                IntVector feature = IntVector.fromArray(INTS, pieces, slot * capacity + base);
+                IntVector keep = feature.lanewise(VectorOperators.ASHR, 31).not();
+                feature.and(keep).intoArray(indices, 0);
+                FloatVector weight = FloatVector.fromArray(FLOATS, weights, 0, indices, 0);
+                total = total.add(weight.reinterpretAsInts().and(keep).reinterpretAsFloats());
+            }
+            for (int tuple = 0; tuple < NTupleEvaluator.TUPLES; tuple++) {
+                IntVector index = IntVector.zero(INTS);
+                for (int k = 0; k < NTupleEvaluator.TUPLE_CELLS; k++) {
+                    int cell = NTupleEvaluator.TUPLE_CELL[tuple * NTupleEvaluator.TUPLE_CELLS + k];
+                    index = index.mul(NTupleEvaluator.STATES).add(IntVector.fromArray(INTS, codes, cell * capacity + base));
+                }
+                index.add(tuple * NTupleEvaluator.TUPLE_ENTRIES).intoArray(indices, 0);
+                total = total.add(FloatVector.fromArray(FLOATS, weights, 0, indices, 0));
+            }
+            // tanh 逐个通道用标量算：lanewise(TANH) 没有向量数学库时同样逐个通道计算，还要分配数组
+            total.intoArray(sums, 0);
+            for (int lane = 0; lane < LANES; lane++) {
+                float terminal = batch.terminal[base + lane];
+                out[base + lane] = Float.isNaN(terminal) ? (float) Math.tanh(sums[lane]) : terminal;
+            }
+        }
+        scalar.evaluate(batch, out, end, batch.size());
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + LANES;
+    }
+}
@@ -0,0 +1,30 @@
+package com.codewithmosh;
+
+/**
+ * 窗口系统接口，把渲染循环和 GLFW 分开，没有显示器时可以换成 HeadlessWindowSystem
+ */
+public interface WindowSystem {
+    boolean shouldClose();
+
+    /**
+     * 处理已经到达的事件，不等待
+     */
+    void pollEvents();
+
+    /**
+     * 等待事件，最多 timeoutSeconds 秒；timeoutSeconds 小于 0 时一直等到有事件为止
+     */
+    void waitEvents(double timeoutSeconds);
+
+    void swapBuffers();
+
+    /**
+     * 让正在 waitEvents 的渲染线程醒来，可以从任何线程调用
+     */
+    void wakeUp();
+
+    /**
+     * 单调递增的时间（秒）
+     */
+    double time();
+}
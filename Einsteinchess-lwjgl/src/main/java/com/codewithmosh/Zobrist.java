@@ -0,0 +1,69 @@
+package com.codewithmosh;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist 哈希键
+ * 用固定种子生成，保证不同进程、不同机器上同一局面的哈希值一致
+ */
+public final class Zobrist {
+    private static final long[] PIECE_KEYS = new long[2 * GameState.PIECES * GameState.CELLS];
+    private static final long[] ROLL_KEYS = new long[Variant.MAX_PIECES + 1];
+    static final long SIDE_KEY; // 蓝方走棋时异或进哈希
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x45494E5354454E4CL);
+        for (int i = 0; i < PIECE_KEYS.length; i++) {
+            PIECE_KEYS[i] = random.nextLong();
+        }
+        for (int i = 1; i <= GameState.PIECES; i++) {
+            ROLL_KEYS[i] = random.nextLong();
+        }
+        SIDE_KEY = random.nextLong();
+        // 多于 6 面的骰子放在最后生成，标准棋盘的键保持不变
+        for (int i = GameState.PIECES + 1; i < ROLL_KEYS.length; i++) {
+            ROLL_KEYS[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * 标准棋盘的棋子键，Variant.STANDARD 直接使用
+     */
+    static long[] standardPieceKeys() {
+        return PIECE_KEYS;
+    }
+
+    /**
+     * 标准棋盘上棋子在某个格子上的键，index 为走棋方*6+编号，其他变体的键见 Variant
+     */
+    public static long piece(int index, int cell) {
+        return PIECE_KEYS[index * GameState.CELLS + cell];
+    }
+
+    /**
+     * 掷出点数的键，用来区分同一局面下不同点数的决策节点
+     */
+    public static long roll(int roll) {
+        return ROLL_KEYS[roll];
+    }
+
+    /**
+     * 从头计算局面的哈希值，正常走棋时由 GameState 增量维护
+     */
+    public static long compute(GameState state) {
+        Variant variant = state.variant();
+        long hash = state.sideToMove() == GameState.BLUE ? SIDE_KEY : 0;
+        for (int side = 0; side < 2; side++) {
+            for (int piece = 0; piece < variant.pieces; piece++) {
+                int cell = state.pieceCell(side, piece);
+                if (cell >= 0) {
+                    hash ^= variant.zobrist[(side * variant.pieces + piece) * variant.cells + cell];
+                }
+            }
+        }
+        return hash;
+    }
+}
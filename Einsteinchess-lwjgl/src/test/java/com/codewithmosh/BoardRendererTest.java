@@ -0,0 +1,94 @@
+package com.codewithmosh;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 用 RecordingRenderBackend 检查棋盘渲染的绘制次数和内存分配，不需要显卡
+ */
+class BoardRendererTest {
+    private static final float CELL_SIZE = 100;
+    private static final float MARGIN = 50;
+
+    @Test
+    void boardIsUploadedOnce() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES);
+        new BoardRenderer(backend, CELL_SIZE, MARGIN);
+        assertEquals(GameState.CELLS, backend.getBoardInstances());
+        assertEquals(0, backend.getDrawCalls());
+    }
+
+    @Test
+    void frameIsTwoDrawCalls() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES);
+        BoardRenderer renderer = new BoardRenderer(backend, CELL_SIZE, MARGIN);
+        GameState state = new GameState();
+        for (int i = 1; i <= 3; i++) {
+            renderer.render(state, -1);
+            assertEquals(i, backend.getFrames());
+            assertEquals(2 * i, backend.getDrawCalls());
+        }
+        assertEquals(2 * GameState.PIECES, backend.getLastInstanceCount());
+        assertEquals(3 * (GameState.CELLS + 2 * GameState.PIECES), backend.getInstancesDrawn());
+    }
+
+    @Test
+    void capturedPiecesAreNotDrawn() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES);
+        BoardRenderer renderer = new BoardRenderer(backend, CELL_SIZE, MARGIN);
+        GameState state = new GameState();
+        state.setPosition(new int[]{0, -1, -1, -1, -1, -1}, new int[]{-1, -1, -1, -1, -1, 24}, GameState.RED);
+        renderer.render(state, -1);
+
+        assertEquals(2, backend.getLastInstanceCount());
+        // 红方 1 号在 (0, 0)，蓝方 6 号在 (4, 4)
+        assertEquals(MARGIN + 10, backend.lastInstance(0, 0));
+        assertEquals(MARGIN + 10, backend.lastInstance(0, 1));
+        assertEquals(1.0f, backend.lastInstance(0, 3));
+        assertEquals(4 * CELL_SIZE + MARGIN + 10, backend.lastInstance(1, 0));
+        assertEquals(1.0f, backend.lastInstance(1, 5));
+    }
+
+    @Test
+    void movingPieceIsInterpolated() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES);
+        BoardRenderer renderer = new BoardRenderer(backend, CELL_SIZE, MARGIN);
+        GameState state = new GameState();
+        state.setPosition(new int[]{0, -1, -1, -1, -1, -1}, new int[]{-1, -1, -1, -1, -1, 24}, GameState.RED);
+        int move = state.makeMove(state.move(0, 0)); // 向右走到 (1, 0)
+
+        renderer.render(state, -1, move, 0.5f);
+        assertEquals(0.5f * CELL_SIZE + MARGIN + 10, backend.lastInstance(0, 0));
+        renderer.render(state, -1, move, 1);
+        assertEquals(CELL_SIZE + MARGIN + 10, backend.lastInstance(0, 0));
+    }
+
+    @Test
+    void renderingDoesNotAllocate() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES);
+        BoardRenderer renderer = new BoardRenderer(backend, CELL_SIZE, MARGIN);
+        GameState state = new GameState();
+        for (int i = 0; i < 20_000; i++) {
+            renderer.render(state, i % GameState.PIECES);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            renderer.render(state, i % GameState.PIECES);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertEquals(0, allocated, "一万帧分配了 " + allocated + " 字节");
+    }
+
+    @Test
+    void drawingOutsideFrameFails() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES);
+        assertThrows(IllegalStateException.class, backend::drawBoard);
+        backend.beginFrame();
+        assertThrows(IllegalStateException.class, backend::beginFrame);
+    }
+}
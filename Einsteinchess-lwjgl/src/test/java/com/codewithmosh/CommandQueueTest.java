@@ -0,0 +1,69 @@
+package com.codewithmosh;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandQueueTest {
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(64, new CommandQueue(64).capacity());
+        assertEquals(128, new CommandQueue(65).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new CommandQueue(0));
+    }
+
+    @Test
+    void fifoAcrossWrapAround() {
+        CommandQueue queue = new CommandQueue(4);
+        int next = 0;
+        int expected = 0;
+        for (int round = 0; round < 10; round++) {
+            while (queue.offer(next)) {
+                next++;
+            }
+            assertEquals(4, queue.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected++, queue.poll());
+            }
+        }
+        while (expected < next) {
+            assertEquals(expected++, queue.poll());
+        }
+        assertEquals(CommandQueue.EMPTY, queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void negativeCommandsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CommandQueue(4).offer(-1));
+    }
+
+    @Test
+    void concurrentProducerKeepsOrder() throws InterruptedException {
+        int total = 200_000;
+        CommandQueue queue = new CommandQueue(64);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < total; i++) {
+                while (!queue.offer(i)) {
+                    Thread.yield(); // 单核机器上自旋要等满一个时间片
+                }
+            }
+        });
+        producer.start();
+        boolean inOrder = true;
+        for (int expected = 0; expected < total; ) {
+            int command = queue.poll();
+            if (command == CommandQueue.EMPTY) {
+                Thread.yield();
+                continue;
+            }
+            inOrder &= command == expected;
+            expected++;
+        }
+        producer.join();
+        assertTrue(inOrder);
+        assertEquals(CommandQueue.EMPTY, queue.poll());
+    }
+}
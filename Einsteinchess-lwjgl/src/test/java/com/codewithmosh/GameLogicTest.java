@@ -0,0 +1,129 @@
+package com.codewithmosh;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * 不开窗口测试逻辑线程：提交命令，读发布出来的快照
+ */
+class GameLogicTest {
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * 像渲染线程一样反复读快照，直到满足条件
+     */
+    private static GameSnapshot await(GameLogic logic, Predicate<GameSnapshot> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (System.nanoTime() < deadline) {
+            GameSnapshot snapshot = logic.snapshot();
+            if (condition.test(snapshot)) {
+                return snapshot;
+            }
+            Thread.sleep(1);
+        }
+        fail("等待快照超时，最后的快照版本 " + logic.snapshot().version());
+        return null;
+    }
+
+    @Test
+    void openingSnapshot() {
+        try (GameLogic logic = new GameLogic(new Dice(1), () -> { })) {
+            logic.start();
+            GameSnapshot snapshot = logic.snapshot();
+            assertEquals(0, snapshot.dice());
+            assertEquals(-1, snapshot.selectedPiece());
+            assertEquals(Move.NONE, snapshot.lastMove());
+            assertEquals(0, snapshot.state().ply());
+            assertTrue(snapshot.state().isRedTurn());
+        }
+    }
+
+    @Test
+    void rollThenMove() throws InterruptedException {
+        try (GameLogic logic = new GameLogic(new Dice(1), () -> { })) {
+            logic.start();
+            GameSnapshot opening = logic.snapshot();
+
+            assertTrue(logic.submit(GameCommand.roll()));
+            GameSnapshot rolled = await(logic, s -> s.dice() > 0);
+            assertTrue(rolled.version() > opening.version());
+            assertTrue(rolled.selectedPiece() >= 0);
+
+            // 红方开局的棋子朝三个方向都不会出界
+            assertTrue(logic.submit(GameCommand.move(2)));
+            GameSnapshot moved = await(logic, s -> s.moveCount() == 1);
+            assertEquals(0, moved.dice());
+            assertEquals(rolled.selectedPiece(), Move.piece(moved.lastMove()));
+            assertEquals(1, moved.state().ply());
+            assertEquals(GameState.BLUE, moved.state().sideToMove());
+
+            // 已经发布的快照不会再变
+            assertEquals(0, opening.state().ply());
+            assertEquals(0, opening.dice());
+            assertEquals(0, rolled.state().ply());
+        }
+    }
+
+    @Test
+    void commandsBeforeRollAreIgnored() throws InterruptedException {
+        try (GameLogic logic = new GameLogic(new Dice(1), () -> { })) {
+            logic.start();
+            logic.submit(GameCommand.move(0));
+            logic.submit(GameCommand.select(3));
+            logic.submit(GameCommand.roll());
+            GameSnapshot rolled = await(logic, s -> s.dice() > 0);
+            assertEquals(0, rolled.moveCount());
+            assertEquals(0, rolled.state().ply());
+        }
+    }
+
+    @Test
+    void snapshotsKeepComingWhileAiThinks() throws InterruptedException {
+        ExpectiminimaxSearch search = new ExpectiminimaxSearch(new HeuristicEvaluator(), new TranspositionTable(1), 64, 300);
+        try (PonderingService ponder = new PonderingService(search, 0, 300);
+             GameLogic logic = new GameLogic(new Dice(1), () -> { })) {
+            logic.setAi(GameState.RED, ponder, false);
+            logic.start();
+            logic.submit(GameCommand.roll());
+
+            // 搜索在逻辑线程里进行，这个线程一直能读到快照，并且看到"思考中"
+            boolean sawThinking = false;
+            long reads = 0;
+            long deadline = System.nanoTime() + TIMEOUT_NANOS;
+            GameSnapshot snapshot = logic.snapshot();
+            while (snapshot.moveCount() == 0 && System.nanoTime() < deadline) {
+                if (snapshot.aiThinking()) {
+                    sawThinking = true;
+                    reads++;
+                }
+                Thread.sleep(1);
+                snapshot = logic.snapshot();
+            }
+            assertEquals(1, snapshot.moveCount());
+            assertFalse(snapshot.aiThinking());
+            assertTrue(sawThinking);
+            assertTrue(reads > 10, "搜索期间只读到 " + reads + " 次快照");
+            assertTrue(snapshot.aiAnswerNanos() >= 0);
+            assertEquals(GameState.BLUE, snapshot.state().sideToMove());
+        }
+    }
+
+    @Test
+    void fullQueueDropsCommands() {
+        try (GameLogic logic = new GameLogic(new Dice(1), () -> { })) {
+            // 没有启动逻辑线程，命令只进不出
+            for (int i = 0; i < GameLogic.QUEUE_CAPACITY; i++) {
+                assertTrue(logic.submit(GameCommand.roll()));
+            }
+            assertFalse(logic.submit(GameCommand.roll()));
+            assertEquals(1, logic.getDroppedCommands());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.codewithmosh;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 状态栏的排版和绘制次数，用等宽图集和 RecordingRenderBackend
+ */
+class HudTest {
+    private static int visibleChars(String... lines) {
+        int count = 0;
+        for (String line : lines) {
+            count += line.replace(" ", "").length();
+        }
+        return count;
+    }
+
+    @Test
+    void openingLayout() {
+        Hud hud = new Hud(TextBatchTest.monospaceAtlas(0), 50, 600);
+        int count = hud.layout(new GameState());
+
+        assertEquals(visibleChars("Red to move", "Dice: -   press Space to roll", "Captured: red 0   blue 0"), count);
+        TextBatch batch = hud.getBatch();
+        assertEquals(51, batch.glyph(0, 0));
+        assertEquals(601, batch.glyph(0, 1));
+        assertEquals(1.0f, batch.glyph(0, 8)); // 红方的行用红色
+        assertEquals(601 + TextBatchTest.LINE_HEIGHT, batch.glyph(visibleChars("Red to move"), 1));
+    }
+
+    @Test
+    void aiLine() {
+        Hud hud = new Hud(TextBatchTest.monospaceAtlas(0), 0, 0);
+        GameState state = new GameState();
+        state.setPosition(new int[]{0, -1, 2, 3, 4, 5}, new int[]{19, 20, 21, 22, 23, -1}, GameState.BLUE);
+        hud.setDice(4);
+        hud.setAiSide(GameState.BLUE);
+        hud.setAiStats(12_345_678, 3, 1);
+
+        int count = hud.layout(state);
+        assertEquals(visibleChars("Blue to move", "Dice: 4", "Captured: red 1   blue 1",
+                "AI (blue): last move 12.3 ms   ponder hits 3/4"), count);
+        hud.setAiThinking(true);
+        assertEquals(visibleChars("Blue to move", "Dice: 4", "Captured: red 1   blue 1",
+                "AI (blue): thinking...   ponder hits 3/4"), hud.layout(state));
+    }
+
+    @Test
+    void hudIsOneMoreDrawCall() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES, Hud.MAX_GLYPHS);
+        BoardRenderer renderer = new BoardRenderer(backend, 100, 50);
+        Hud hud = new Hud(TextBatchTest.monospaceAtlas(0), 50, 600);
+        renderer.setHud(hud);
+        assertEquals(1024, backend.getAtlasWidth());
+
+        GameState state = new GameState();
+        renderer.render(state, -1);
+        assertEquals(3, backend.getDrawCalls());
+        assertEquals(hud.getBatch().count(), backend.getLastGlyphCount());
+        assertEquals(51, backend.lastGlyph(0, 0));
+    }
+
+    @Test
+    void hudDoesNotAllocate() {
+        RecordingRenderBackend backend = new RecordingRenderBackend(2 * GameState.PIECES, Hud.MAX_GLYPHS);
+        BoardRenderer renderer = new BoardRenderer(backend, 100, 50);
+        Hud hud = new Hud(TextBatchTest.monospaceAtlas(0), 50, 600);
+        hud.setAiSide(GameState.BLUE);
+        renderer.setHud(hud);
+        GameState state = new GameState();
+        for (int i = 0; i < 20_000; i++) {
+            hud.setDice(i % 7);
+            hud.setAiStats(i * 1000L, i, i / 2);
+            renderer.render(state, -1);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            hud.setDice(i % 7);
+            hud.setAiStats(i * 1000L, i, i / 2);
+            renderer.render(state, -1);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertEquals(0, allocated, "一万帧分配了 " + allocated + " 字节");
+    }
+}
@@ -0,0 +1,76 @@
+package com.codewithmosh;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用 HeadlessWindowSystem 的虚拟时钟检查按需渲染：空闲时不画，走棋时只画动画那几帧
+ */
+class RenderLoopTest {
+    private static final double HOUR = 3600;
+
+    @Test
+    void idleWindowDrawsOneFrame() {
+        HeadlessWindowSystem windowSystem = new HeadlessWindowSystem();
+        FramePacer pacer = new FramePacer(60, -1);
+        windowSystem.closeAt(HOUR);
+        new RenderLoop(windowSystem, pacer).run(() -> 0, () -> { });
+
+        assertEquals(1, windowSystem.getFrames());
+        assertEquals(1, pacer.getFrames());
+        assertEquals(1, windowSystem.getWakeups());
+    }
+
+    @Test
+    void hourWithMoveEveryTenMinutes() {
+        HeadlessWindowSystem windowSystem = new HeadlessWindowSystem();
+        FramePacer pacer = new FramePacer(60, -1);
+        GameState state = new GameState();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long[] refreshes = {0};
+        for (int t = 600; t < HOUR; t += 600) {
+            int roll = 1 + t % 6;
+            windowSystem.schedule(t, () -> {
+                if (MoveGenerator.generate(state, roll, moves) > 0) {
+                    state.makeMove(moves[0]);
+                }
+                pacer.requestAnimation(windowSystem.time(), 0.2);
+            });
+        }
+        windowSystem.schedule(1800.5, () -> refreshes[0]++); // 窗口被遮住后要求重画
+        windowSystem.closeAt(HOUR);
+        new RenderLoop(windowSystem, pacer).run(() -> state.version() + refreshes[0], () -> { });
+
+        // 开局 1 帧，重画 1 帧，5 步棋各 13 或 14 帧：0.2 秒按 60 帧画 13 帧，
+        // 第 13 帧的时刻因为浮点舍入略早于动画结束时，还会再补一帧
+        assertEquals(70, windowSystem.getFrames());
+        assertEquals(70, pacer.getFrames());
+        assertTrue(windowSystem.getWakeups() < 100, "醒来 " + windowSystem.getWakeups() + " 次");
+    }
+
+    @Test
+    void pacerFinishesAnimationWithOneMoreFrame() {
+        FramePacer pacer = new FramePacer(10, 5);
+        pacer.frameRendered(1, 0);
+        assertFalse(pacer.shouldRender(1, 0.05));
+        assertEquals(5, pacer.waitTimeout(0.05));
+
+        pacer.requestAnimation(1, 0.25);
+        assertTrue(pacer.isAnimating(1));
+        assertTrue(pacer.shouldRender(1, 1));
+        pacer.frameRendered(1, 1);
+        assertEquals(0.1, pacer.waitTimeout(1), 1e-9);
+        assertFalse(pacer.shouldRender(1, 1.05));
+        pacer.frameRendered(1, 1.1);
+        pacer.frameRendered(1, 1.2);
+        // 动画到 1.25 结束，1.3 还要画最后一帧，之后回到空闲
+        assertFalse(pacer.isAnimating(1.3));
+        assertTrue(pacer.shouldRender(1, 1.3));
+        pacer.frameRendered(1, 1.3);
+        assertFalse(pacer.shouldRender(1, 1.4));
+        assertEquals(5, pacer.waitTimeout(1.4));
+    }
+}
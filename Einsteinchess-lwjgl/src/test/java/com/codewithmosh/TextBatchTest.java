@@ -0,0 +1,148 @@
+package com.codewithmosh;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 文字排版和图集缓存，用手工构造的等宽图集，不需要本地库和显卡
+ */
+class TextBatchTest {
+    static final int CELL = 8; // 每个字形在图集里占 8 像素宽
+    static final float ASCENT = 10;
+    static final float LINE_HEIGHT = 14;
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 16;
+
+    /**
+     * 等宽图集：字形 6x10，画在笔位置右边 1 像素、基线上方 9 像素，每个字符前进 8 像素，空格没有字形
+     */
+    static GlyphAtlas monospaceAtlas(int fontCrc) {
+        float[] glyphs = new float[GlyphAtlas.GLYPHS * 7];
+        for (int i = 0; i < GlyphAtlas.GLYPHS; i++) {
+            int base = i * 7;
+            glyphs[base] = i * CELL;
+            glyphs[base + 1] = 2;
+            glyphs[base + 2] = i == 0 ? i * CELL : i * CELL + 6;
+            glyphs[base + 3] = 12;
+            glyphs[base + 4] = 1;
+            glyphs[base + 5] = -9;
+            glyphs[base + 6] = CELL;
+        }
+        ByteBuffer bitmap = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        for (int i = 0; i < bitmap.capacity(); i++) {
+            bitmap.put(i, (byte) i);
+        }
+        return new GlyphAtlas(WIDTH, HEIGHT, 12, ASCENT, LINE_HEIGHT, glyphs, bitmap, fontCrc);
+    }
+
+    private static float u0(char c) {
+        return (float) (c - GlyphAtlas.FIRST_CHAR) * CELL / WIDTH;
+    }
+
+    @Test
+    void glyphsArePlacedOnTheBaseline() {
+        TextBatch batch = new TextBatch(monospaceAtlas(0), 16);
+        assertEquals(2, batch.add("AB", 10, 20, 0.1f, 0.2f, 0.3f));
+
+        assertEquals(11, batch.glyph(0, 0));
+        assertEquals(21, batch.glyph(0, 1));
+        assertEquals(6, batch.glyph(0, 2));
+        assertEquals(10, batch.glyph(0, 3));
+        assertEquals(u0('A'), batch.glyph(0, 4));
+        assertEquals(2f / HEIGHT, batch.glyph(0, 5));
+        assertEquals(12f / HEIGHT, batch.glyph(0, 7));
+        assertEquals(0.1f, batch.glyph(0, 8));
+        assertEquals(0.3f, batch.glyph(0, 10));
+        assertEquals(19, batch.glyph(1, 0));
+        assertEquals(u0('B'), batch.glyph(1, 4));
+    }
+
+    @Test
+    void spacesAdvanceWithoutGlyphs() {
+        TextBatch batch = new TextBatch(monospaceAtlas(0), 16);
+        assertEquals(2, batch.add("A B", 0, 0, 1, 1, 1));
+        assertEquals(1 + 2 * CELL, batch.glyph(1, 0));
+    }
+
+    @Test
+    void newlineStartsNextLine() {
+        TextBatch batch = new TextBatch(monospaceAtlas(0), 16);
+        batch.add("AB\nC", 10, 20, 1, 1, 1);
+        assertEquals(11, batch.glyph(2, 0));
+        assertEquals(21 + LINE_HEIGHT, batch.glyph(2, 1));
+    }
+
+    @Test
+    void unknownCharactersUseFallback() {
+        TextBatch batch = new TextBatch(monospaceAtlas(0), 16);
+        batch.add("é", 0, 0, 1, 1, 1);
+        assertEquals(u0(GlyphAtlas.FALLBACK), batch.glyph(0, 4));
+    }
+
+    @Test
+    void stringsShareOneBuffer() {
+        TextBatch batch = new TextBatch(monospaceAtlas(0), 4);
+        batch.add("AB", 0, 0, 1, 1, 1);
+        assertEquals(2 * RenderBackend.GLYPH_FLOATS, batch.glyphs().limit());
+        // 取出缓冲后还可以继续排，超出容量的字形丢弃
+        assertEquals(2, batch.add("CDE", 0, 20, 1, 1, 1));
+        assertEquals(4, batch.count());
+        assertEquals(4 * RenderBackend.GLYPH_FLOATS, batch.glyphs().limit());
+        assertEquals(0, batch.glyphs().position());
+
+        batch.clear();
+        assertEquals(0, batch.count());
+        assertEquals(0, batch.glyphs().limit());
+    }
+
+    @Test
+    void measureSumsAdvances() {
+        assertEquals(5 * CELL, monospaceAtlas(0).measure("Dice:"));
+    }
+
+    @Test
+    void cacheRoundTrip(@TempDir Path dir) throws IOException {
+        GlyphAtlas atlas = monospaceAtlas(42);
+        Path cache = dir.resolve("atlas.bin");
+        atlas.save(cache);
+        GlyphAtlas loaded = GlyphAtlas.load(cache);
+
+        assertEquals(atlas.width(), loaded.width());
+        assertEquals(atlas.height(), loaded.height());
+        assertEquals(atlas.pixelHeight(), loaded.pixelHeight());
+        assertEquals(atlas.ascent(), loaded.ascent());
+        assertEquals(atlas.lineHeight(), loaded.lineHeight());
+        assertEquals(atlas.measure("Hello, world"), loaded.measure("Hello, world"));
+        assertEquals(atlas.bitmap(), loaded.bitmap());
+        float[] expected = new float[8];
+        float[] actual = new float[8];
+        atlas.quad('Q', 3, 17, expected);
+        loaded.quad('Q', 3, 17, actual);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void cachedAtlasSkipsBaking(@TempDir Path dir) throws IOException {
+        // 字体文件不是真正的字体，也没有 stb 的本地库：只要读到了缓存就不会去烘焙
+        byte[] font = "not really a font".getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(font);
+        Path fontPath = Files.write(dir.resolve("font.ttf"), font);
+        Path cache = dir.resolve("atlas.bin");
+        monospaceAtlas((int) crc.getValue()).save(cache);
+
+        GlyphAtlas atlas = GlyphAtlas.loadOrBake(fontPath, 12, cache);
+        assertEquals(WIDTH, atlas.width());
+        assertEquals(LINE_HEIGHT, atlas.lineHeight());
+    }
+}